@@ -55,8 +55,14 @@ public class CommandMappernew {
     commandTypes.put("rgb-combine", "model");
     commandTypes.put("histogram", "model");
     commandTypes.put("color-correct", "model");
+    commandTypes.put("auto-levels", "model");
     commandTypes.put("level-adjust", "model");
     commandTypes.put("compress", "model");
+    commandTypes.put("crop", "model");
+    commandTypes.put("storage", "model");
+    commandTypes.put("bit-depth", "model");
+    commandTypes.put("lazy", "model");
+    commandTypes.put("histogram-mode", "model");
   }
 
   /**
@@ -7,7 +7,6 @@ import java.io.IOException;
 import model.IImageModel;
 import model.commands.ModelCommandHandler;
 import model.database.Image;
-import model.database.Pixel;
 import view.IView;
 
 /**
@@ -65,14 +64,12 @@ public class GuiController implements Features {
     if (cm == null) {
       throw new FileNotFoundException("Image not found");
     }
-    BufferedImage bf = new BufferedImage(cm.getWidth(), cm.getHeight(), BufferedImage.TYPE_INT_RGB);
-    for (int i = 0; i < cm.getWidth(); i++) {
-      for (int j = 0; j < cm.getHeight(); j++) {
-        Pixel rgb = cm.getPixel(i, j);
-        bf.setRGB(i, j,
-                ((int) rgb.getRed() << 16) | ((int) rgb.getGreen() << 8)
-                        | (int) rgb.getBlue());
-      }
+    int width = cm.getWidth();
+    BufferedImage bf = new BufferedImage(width, cm.getHeight(), BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
+    for (int j = 0; j < cm.getHeight(); j++) {
+      cm.getRowSpan(0, j, width, row, 0);
+      bf.setRGB(0, j, width, 1, row, 0, width);
     }
     return bf;
   }
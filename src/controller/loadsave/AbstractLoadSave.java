@@ -11,7 +11,7 @@ import javax.imageio.ImageIO;
 
 import model.IImageModel;
 import model.database.Image;
-import model.database.Pixel;
+import model.database.ImageStorage;
 
 /**
  * Abstract base class for loading and saving image files. Implements the ILoad_Save interface and
@@ -35,21 +35,21 @@ public abstract class AbstractLoadSave implements ILoadSave {
   public void loadImg(String path, String destFileName, IImageModel imageModel) throws IOException {
 
     BufferedImage bf = ImageIO.read(new File(path));
-    Image cm = new Image(bf.getWidth(), bf.getHeight());
-    System.out.println("width: " + bf.getWidth());
-    System.out.println("height: " + bf.getHeight());
     if (bf == null) {
       throw new FileNotFoundException("Image not found");
     }
+    int width = bf.getWidth();
+    Image cm = ImageStorage.createInput(width, bf.getHeight());
+    System.out.println("width: " + bf.getWidth());
+    System.out.println("height: " + bf.getHeight());
 
-    for (int i = 0; i < bf.getWidth(); i++) {
-      for (int j = 0; j < bf.getHeight(); j++) {
-        int rgb = bf.getRGB(i, j);
-        int r = (rgb >> 16) & 0xff;
-        int g = (rgb >> 8) & 0xff;
-        int b = rgb & 0xff;
-        cm.setPixel(i, j, r, g, b);
+    int[] row = new int[width];
+    for (int j = 0; j < bf.getHeight(); j++) {
+      bf.getRGB(0, j, width, 1, row, 0, width);
+      for (int i = 0; i < width; i++) {
+        row[i] &= 0xFFFFFF;
       }
+      cm.setRowSpan(0, j, width, row, 0);
     }
 
     System.out.println("load command executed successfully!");
@@ -75,13 +75,12 @@ public abstract class AbstractLoadSave implements ILoadSave {
     if (cm == null) {
       throw new FileNotFoundException("Image not found");
     }
-    BufferedImage bf = new BufferedImage(cm.getWidth(), cm.getHeight(), BufferedImage.TYPE_INT_RGB);
-    for (int i = 0; i < cm.getWidth(); i++) {
-      for (int j = 0; j < cm.getHeight(); j++) {
-        Pixel rgb = cm.getPixel(i, j);
-        bf.setRGB(i, j,
-                ((int) rgb.getRed() << 16) | ((int) rgb.getGreen() << 8) | (int) rgb.getBlue());
-      }
+    int width = cm.getWidth();
+    BufferedImage bf = new BufferedImage(width, cm.getHeight(), BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
+    for (int j = 0; j < cm.getHeight(); j++) {
+      cm.getRowSpan(0, j, width, row, 0);
+      bf.setRGB(0, j, width, 1, row, 0, width);
     }
 
     Path outputPath = Paths.get(path);
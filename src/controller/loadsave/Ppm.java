@@ -8,6 +8,7 @@ import java.util.Scanner;
 
 import model.IImageModel;
 import model.database.Image;
+import model.database.ImageStorage;
 import model.database.Pixel;
 
 /**
@@ -48,15 +49,17 @@ public class Ppm implements ILoadSave {
 
         int width = ppmScanner.nextInt();
         int height = ppmScanner.nextInt();
-        Image customImage = new Image(width, height);
+        Image customImage = ImageStorage.createInput(width, height);
+        int[] row = new int[width];
 
         for (int i = 0; i < height; i++) {
           for (int j = 0; j < width; j++) {
             int r = ppmScanner.nextInt();
             int g = ppmScanner.nextInt();
             int b = ppmScanner.nextInt();
-            customImage.setPixel(j, i, r, g, b);
+            row[j] = Pixel.pack(r, g, b);
           }
+          customImage.setRowSpan(0, i, width, row, 0);
         }
         imageModel.storeImage(destFileName, customImage);
 
@@ -82,10 +85,13 @@ public class Ppm implements ILoadSave {
       writer.println(customImage.getWidth() + " " + customImage.getHeight());
       writer.println(255); // Max color value
 
+      int width = customImage.getWidth();
+      int[] row = new int[width];
       for (int y = 0; y < customImage.getHeight(); y++) {
-        for (int x = 0; x < customImage.getWidth(); x++) {
-          Pixel rgb = customImage.getPixel(x, y);
-          writer.println(rgb.getRed() + " " + rgb.getGreen() + " " + rgb.getBlue());
+        customImage.getRowSpan(0, y, width, row, 0);
+        for (int x = 0; x < width; x++) {
+          int rgb = row[x];
+          writer.println(Pixel.red(rgb) + " " + Pixel.green(rgb) + " " + Pixel.blue(rgb));
         }
       }
     }
@@ -0,0 +1,126 @@
+package model;
+
+import java.io.FileNotFoundException;
+
+import model.commands.ModelCommand;
+import model.database.ImageStorage;
+
+/**
+ * The BitDepthCommand class selects the number of bits per color channel. Without an image name it
+ * sets the bit depth of images loaded from then on; with an image name it converts that image to
+ * the requested bit depth and saves it under a new name.
+ */
+public class BitDepthCommand implements ModelCommand {
+
+  private boolean highBitDepth;
+  private String imageName;
+  private String destinationName;
+  private IImageModel model;
+
+  /**
+   * Constructs a BitDepthCommand with the specified bit depth, image name and destination name.
+   *
+   * @param highBitDepth    true for 16 bits per channel, false for 8 bits
+   * @param imageName       the name of the image to convert, or null to set the default bit depth
+   * @param destinationName the name under which the converted image will be saved, or null
+   * @param model           the image model holding the images
+   */
+  public BitDepthCommand(boolean highBitDepth, String imageName, String destinationName,
+                         IImageModel model) {
+    this.highBitDepth = highBitDepth;
+    this.imageName = imageName;
+    this.destinationName = destinationName;
+    this.model = model;
+  }
+
+  /**
+   * Creates and returns a builder for constructing a BitDepthCommand instance.
+   *
+   * @return a new instance of BitDepthBuilderClass for building a BitDepthCommand
+   */
+  public static BitDepthBuilderClass createBuilder() {
+    return new BitDepthBuilderClass();
+  }
+
+  /**
+   * Executes the bit-depth command by setting the default bit depth or converting the image.
+   *
+   * @return true if the bit depth was changed successfully
+   * @throws FileNotFoundException if the image to be converted cannot be found
+   */
+  @Override
+  public boolean execute() throws FileNotFoundException {
+    this.model.bitDepthMethod(highBitDepth, imageName, destinationName);
+    return true;
+  }
+
+  /**
+   * Builder class for constructing instances of BitDepthCommand.
+   */
+  public static class BitDepthBuilderClass {
+
+    private Boolean highBitDepth;
+    private String imageName;
+    private String destinationName;
+    private IImageModel model;
+
+    /**
+     * Sets the bit depth to use.
+     *
+     * @param bits the number of bits per channel, "8" or "16"
+     * @return the current builder instance for chaining
+     * @throws IllegalArgumentException if the bit depth is not "8" or "16"
+     */
+    public BitDepthBuilderClass setBitDepth(String bits) {
+      this.highBitDepth = ImageStorage.parseBitDepth(bits);
+      return this;
+    }
+
+    /**
+     * Sets the name of the image to be converted.
+     *
+     * @param imageName the name of the image
+     * @return the current builder instance for chaining
+     */
+    public BitDepthBuilderClass setImageName(String imageName) {
+      this.imageName = imageName;
+      return this;
+    }
+
+    /**
+     * Sets the destination name for the converted image.
+     *
+     * @param destinationName the name under which the converted image will be saved
+     * @return the current builder instance for chaining
+     */
+    public BitDepthBuilderClass setDestinationName(String destinationName) {
+      this.destinationName = destinationName;
+      return this;
+    }
+
+    /**
+     * Sets the image model holding the images.
+     *
+     * @param model the image model instance
+     * @return the current builder instance for chaining
+     */
+    public BitDepthBuilderClass setModel(IImageModel model) {
+      this.model = model;
+      return this;
+    }
+
+    /**
+     * Builds and returns a BitDepthCommand instance.
+     *
+     * @return a new BitDepthCommand instance
+     * @throws IllegalStateException if any required field is missing
+     */
+    public BitDepthCommand build() {
+      if (highBitDepth == null || model == null
+              || (imageName == null) != (destinationName == null)) {
+        throw new IllegalStateException("Missing required fields for BitDepthCommand");
+      }
+      return new BitDepthCommand(highBitDepth, imageName, destinationName, model);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package model;
+
+import java.io.FileNotFoundException;
+
+import model.commands.ModelCommand;
+
+/**
+ * The CropCommand class is responsible for cropping an image to a rectangular region and saving
+ * the cropped image under a new name.
+ */
+public class CropCommand implements ModelCommand {
+
+  private Integer x;
+  private Integer y;
+  private Integer width;
+  private Integer height;
+  private String imageName;
+  private String destinationName;
+  private IImageModel model;
+
+  /**
+   * Constructs a CropCommand with the specified region, image name and destination name.
+   *
+   * @param x               the x-coordinate of the top left corner of the region
+   * @param y               the y-coordinate of the top left corner of the region
+   * @param width           the width of the region
+   * @param height          the height of the region
+   * @param imageName       the name of the image to be cropped
+   * @param destinationName the name under which the cropped image will be saved
+   * @param model           the image model containing the cropping logic
+   */
+  public CropCommand(Integer x, Integer y, Integer width, Integer height, String imageName,
+                     String destinationName, IImageModel model) {
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+    this.imageName = imageName;
+    this.destinationName = destinationName;
+    this.model = model;
+  }
+
+  /**
+   * Creates and returns a builder for constructing a CropCommand instance.
+   *
+   * @return a new instance of CropBuilderClass for building a CropCommand
+   */
+  public static CropBuilderClass createBuilder() {
+    return new CropBuilderClass();
+  }
+
+  /**
+   * Executes the crop command by cropping the specified image to the region and storing the
+   * result under the destination name.
+   *
+   * @return true if the crop is successful
+   * @throws FileNotFoundException if the image to be cropped cannot be found
+   */
+  @Override
+  public boolean execute() throws FileNotFoundException {
+    this.model.cropMethod(imageName, destinationName, x, y, width, height);
+    return true;
+  }
+
+  /**
+   * Builder class for constructing instances of CropCommand.
+   */
+  public static class CropBuilderClass {
+
+    private Integer x;
+    private Integer y;
+    private Integer width;
+    private Integer height;
+    private String imageName;
+    private String destinationName;
+    private IImageModel model;
+
+    /**
+     * Sets the top left corner of the region.
+     *
+     * @param x the x-coordinate of the corner (as a string)
+     * @param y the y-coordinate of the corner (as a string)
+     * @return the current builder instance for chaining
+     * @throws IllegalArgumentException if a coordinate is negative
+     */
+    public CropBuilderClass setOrigin(String x, String y) {
+      int xValue = Integer.valueOf(x);
+      int yValue = Integer.valueOf(y);
+      if (xValue < 0 || yValue < 0) {
+        throw new IllegalArgumentException("Crop coordinates cannot be negative");
+      }
+      this.x = xValue;
+      this.y = yValue;
+      return this;
+    }
+
+    /**
+     * Sets the size of the region.
+     *
+     * @param width  the width of the region (as a string)
+     * @param height the height of the region (as a string)
+     * @return the current builder instance for chaining
+     * @throws IllegalArgumentException if the width or height is not positive
+     */
+    public CropBuilderClass setSize(String width, String height) {
+      int widthValue = Integer.valueOf(width);
+      int heightValue = Integer.valueOf(height);
+      if (widthValue <= 0 || heightValue <= 0) {
+        throw new IllegalArgumentException("Crop width and height must be positive");
+      }
+      this.width = widthValue;
+      this.height = heightValue;
+      return this;
+    }
+
+    /**
+     * Sets the name of the image to be cropped.
+     *
+     * @param imageName the name of the image
+     * @return the current builder instance for chaining
+     */
+    public CropBuilderClass setImageName(String imageName) {
+      this.imageName = imageName;
+      return this;
+    }
+
+    /**
+     * Sets the destination name for the cropped image.
+     *
+     * @param destinationName the name under which the cropped image will be saved
+     * @return the current builder instance for chaining
+     */
+    public CropBuilderClass setDestinationName(String destinationName) {
+      this.destinationName = destinationName;
+      return this;
+    }
+
+    /**
+     * Sets the image model containing the logic for image cropping.
+     *
+     * @param model the image model instance
+     * @return the current builder instance for chaining
+     */
+    public CropBuilderClass setModel(IImageModel model) {
+      this.model = model;
+      return this;
+    }
+
+    /**
+     * Builds and returns a CropCommand instance.
+     *
+     * @return a new CropCommand instance
+     * @throws IllegalStateException if any required field is missing
+     */
+    public CropCommand build() {
+      if (x == null || width == null || imageName == null || destinationName == null
+              || model == null) {
+        throw new IllegalStateException("Missing required fields for CropCommand");
+      }
+      return new CropCommand(x, y, width, height, imageName, destinationName, model);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package model;
+
+import model.commands.ModelCommand;
+
+/**
+ * The HistogramModeCommand class selects whether the histogram command and the split preview of
+ * color-correct count every pixel of an image or a stratified sample of them. With "approximate"
+ * the sample is used while the peaks it finds are certain to within a few levels, and every pixel
+ * is counted otherwise; with "exact" every pixel is always counted.
+ */
+public class HistogramModeCommand implements ModelCommand {
+
+  private boolean approximate;
+  private IImageModel model;
+
+  /**
+   * Constructs a HistogramModeCommand that turns approximate histograms on or off.
+   *
+   * @param approximate true to sample histograms for previews, false to count every pixel
+   * @param model       the image model holding the images
+   */
+  public HistogramModeCommand(boolean approximate, IImageModel model) {
+    this.approximate = approximate;
+    this.model = model;
+  }
+
+  /**
+   * Creates and returns a builder for constructing a HistogramModeCommand instance.
+   *
+   * @return a new instance of HistogramModeBuilderClass for building a HistogramModeCommand
+   */
+  public static HistogramModeBuilderClass createBuilder() {
+    return new HistogramModeBuilderClass();
+  }
+
+  /**
+   * Executes the histogram mode command by switching the way previews count histograms.
+   *
+   * @return true if the command was executed successfully
+   */
+  @Override
+  public boolean execute() {
+    this.model.histogramModeMethod(approximate);
+    return true;
+  }
+
+  /**
+   * Builder class for constructing instances of HistogramModeCommand.
+   */
+  public static class HistogramModeBuilderClass {
+
+    private String mode;
+    private IImageModel model;
+
+    /**
+     * Sets how histograms for previews are counted.
+     *
+     * @param mode "exact" to count every pixel, "approximate" to count a sample
+     * @return the current builder instance for chaining
+     * @throws IllegalArgumentException if the mode is not "exact" or "approximate"
+     */
+    public HistogramModeBuilderClass setMode(String mode) {
+      if (!"exact".equals(mode) && !"approximate".equals(mode)) {
+        throw new IllegalArgumentException("Histogram mode must be exact or approximate: "
+                + mode);
+      }
+      this.mode = mode;
+      return this;
+    }
+
+    /**
+     * Sets the image model holding the images.
+     *
+     * @param model the image model instance
+     * @return the current builder instance for chaining
+     */
+    public HistogramModeBuilderClass setModel(IImageModel model) {
+      this.model = model;
+      return this;
+    }
+
+    /**
+     * Builds and returns a HistogramModeCommand instance.
+     *
+     * @return a new HistogramModeCommand instance
+     * @throws IllegalStateException if any required field is missing
+     */
+    public HistogramModeCommand build() {
+      if (mode == null || model == null) {
+        throw new IllegalStateException("Missing required fields for HistogramModeCommand");
+      }
+      return new HistogramModeCommand("approximate".equals(mode), model);
+    }
+  }
+}
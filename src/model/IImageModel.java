@@ -3,6 +3,7 @@ package model;
 import java.io.FileNotFoundException;
 
 import model.database.Image;
+import model.database.ImageStorage;
 
 /**
  * Interface representing the operations for image processing.
@@ -10,7 +11,9 @@ import model.database.Image;
 public interface IImageModel {
 
   /**
-   * Stores an image in the model with a specified name.
+   * Stores an image in the model with a specified name. An image this replaces is recycled if no
+   * other name refers to it, after which it throws an IllegalStateException when its pixels are
+   * used.
    *
    * @param name  the name to associate with the image.
    * @param image the image to be stored.
@@ -18,7 +21,8 @@ public interface IImageModel {
   void storeImage(String name, Image image);
 
   /**
-   * Retrieves an image stored in the model by name.
+   * Retrieves an image stored in the model by name. The image belongs to the model: once another
+   * image is stored under its name it may be recycled, so it should not be kept beyond that.
    *
    * @param name the name of the image to retrieve.
    * @return the image associated with the given name.
@@ -100,6 +104,19 @@ public interface IImageModel {
                      String mask, String maskImage)
           throws FileNotFoundException;
 
+  /**
+   * Sharpens an image by an amount against the mean of a box of the given radius and stores the
+   * result.
+   *
+   * @param sourceFileName the name of the source image.
+   * @param destFileName   the name for the sharpened image.
+   * @param radius         the radius of the box.
+   * @param amount         the amount of sharpening.
+   * @throws FileNotFoundException if the source file is not found.
+   */
+  void sharpenRadiusMethod(String sourceFileName, String destFileName, int radius, double amount)
+          throws FileNotFoundException;
+
   /**
    * Adjusts the value (brightness or darkness) of an image and stores the result.
    *
@@ -145,6 +162,19 @@ public interface IImageModel {
   void colorCorrectMethod(String sourceFileName, String destFileName, String cmand, String p)
           throws FileNotFoundException;
 
+  /**
+   * Stretches the levels of an image so that its darkest samples become black and its brightest
+   * white, and stores the result.
+   *
+   * @param sourceFileName the name of the source image.
+   * @param destFileName   the name for the adjusted image.
+   * @param cmand          additional command parameters (if any).
+   * @param p              parameter for processing.
+   * @throws FileNotFoundException if the source file is not found.
+   */
+  void autoLevelsMethod(String sourceFileName, String destFileName, String cmand, String p)
+          throws FileNotFoundException;
+
   /**
    * Generates a histogram for an image and stores the result.
    *
@@ -282,5 +312,71 @@ public interface IImageModel {
                          int newWidth)
           throws FileNotFoundException;
 
+  /**
+   * Crops an image to a rectangular region and stores the result.
+   *
+   * @param imageName       the name of the source image.
+   * @param destinationName the name for the cropped image.
+   * @param x               the x-coordinate of the top left corner of the region.
+   * @param y               the y-coordinate of the top left corner of the region.
+   * @param width           the width of the region.
+   * @param height          the height of the region.
+   * @throws FileNotFoundException if the source image is not found.
+   */
+  void cropMethod(String imageName, String destinationName, int x, int y, int width, int height)
+          throws FileNotFoundException;
+
+  /**
+   * Selects where image pixels are kept. Without an image name the default storage for new images
+   * is set; otherwise the image is copied into the given storage and stored under a new name.
+   *
+   * @param mode            the storage, on the heap or in a memory-mapped scratch file.
+   * @param imageName       the name of the source image, or null to set the default storage.
+   * @param destinationName the name for the converted image, or null.
+   * @throws FileNotFoundException if the source image is not found.
+   */
+  void storageMethod(ImageStorage.Mode mode, String imageName, String destinationName)
+          throws FileNotFoundException;
+
+  /**
+   * Selects the number of bits per color channel. Without an image name the bit depth of images
+   * loaded from then on is set; otherwise the image is converted and stored under a new name.
+   *
+   * @param highBitDepth    true for 16 bits per channel, false for 8 bits.
+   * @param imageName       the name of the source image, or null to set the default bit depth.
+   * @param destinationName the name for the converted image, or null.
+   * @throws FileNotFoundException if the source image is not found.
+   */
+  void bitDepthMethod(boolean highBitDepth, String imageName, String destinationName)
+          throws FileNotFoundException;
+
+  /**
+   * Turns lazy evaluation on or off. While it is on, pointwise commands on 8-bit images store a
+   * pending expression instead of computing their result; a chain of them is computed in one pass
+   * when its result is first read. Turning it off computes every pending image.
+   *
+   * @param lazy          true to defer pointwise commands, false to compute them straight away.
+   * @param exactClamping true to keep the truncation and clamping of every command, false to
+   *                      collapse consecutive color transforms into one.
+   * @throws FileNotFoundException if a pending image cannot be computed.
+   */
+  void lazyMethod(boolean lazy, boolean exactClamping) throws FileNotFoundException;
+
+  /**
+   * Computes an image now if it is a pending expression, and stores it under its name.
+   *
+   * @param imageName the name of the image.
+   * @throws FileNotFoundException if the image is not found.
+   */
+  void materializeMethod(String imageName) throws FileNotFoundException;
+
+  /**
+   * Selects whether the histogram command and the split preview of color-correct count every
+   * pixel or a stratified sample of the pixels. A sample is only used while the peaks it finds
+   * are certain to within a few levels; otherwise every pixel is counted.
+   *
+   * @param approximate true to sample histograms for previews, false to count every pixel.
+   */
+  void histogramModeMethod(boolean approximate);
 
 }
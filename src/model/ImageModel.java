@@ -1,17 +1,32 @@
 package model;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.FileNotFoundException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 
+import model.database.ApproximateHistogram;
+import model.database.BinaryMask;
+import model.database.ColorKernels;
+import model.database.Convolution;
 import model.database.CustomImage;
 import model.database.CustomImage2;
 import model.database.CustomImage3;
+import model.database.GrayImage;
+import model.database.Histogram;
 import model.database.ICustomImage;
 import model.database.ICustomImage2;
 import model.database.ICustomImage3;
 import model.database.Image;
+import model.database.ImageStorage;
+import model.database.ImageView;
+import model.database.LazyImage;
+import model.database.PlanarImage;
+import model.database.RowOperator;
+import model.database.TiledImage;
 
 /**
  * This is the image model class that has all functionalities for image manipulation.
@@ -20,6 +35,16 @@ public class ImageModel implements IImageModel {
 
   private static Map<String, Image> ImageManger = new HashMap<>();
 
+  private final Map<String, LazyImage> pending = new HashMap<>();
+  // The masks and histograms computed from stored images, by the names of the images
+  private final Map<String, BinaryMask> masks = new HashMap<>();
+  private final Map<String, Histogram> histograms = new HashMap<>();
+  // The sampled histograms of stored images, for previews while approximate histograms are on
+  private final Map<String, Histogram> previewHistograms = new HashMap<>();
+  private boolean lazy;
+  private boolean approximateHistograms;
+  private boolean exactClamping;
+
   private ICustomImage customImage;
   private ICustomImage2 customImage2;
   private ICustomImage3 customImage3;
@@ -32,23 +57,332 @@ public class ImageModel implements IImageModel {
   }
 
   /**
-   * Stores a CustomImage object in the image storage under a specified name.
+   * Stores a CustomImage object in the image storage under a specified name. If this replaces an
+   * image that is not stored under any other name, views over the replaced image are given their
+   * own copy of its pixels and the replaced image is recycled, so its pixel array is reused by the
+   * next image of the same size. A replaced image must therefore not be used afterwards. A tiled
+   * image that reads the image it replaces is computed before it is stored, so that it no longer
+   * pins the replaced image, and is recycled.
    *
    * @param name  The name to associate with the image
    * @param image The CustomImage object to store
    */
   public void storeImage(String name, Image image) {
-    ImageManger.put(name, image);
+    pending.remove(name);
+    forgetDerived(name);
+    Image current = ImageManger.get(name);
+    if (image instanceof TiledImage && current != null && ((TiledImage) image).reads(current)) {
+      Image tiled = image;
+      image = ImageStorage.convert(tiled, ImageStorage.modeOf(current));
+      tiled.recycle();
+    }
+    Image replaced = ImageManger.put(name, image);
+    if (replaced != null && replaced != image) {
+      recycleIfUnused(replaced);
+    }
+  }
+
+  /**
+   * Recycles an image that is no longer stored under any name and that no pending expression
+   * reads.
+   */
+  private void recycleIfUnused(Image image) {
+    if (!ImageManger.containsValue(image) && !isPendingSource(image)) {
+      image.recycle();
+    }
+  }
+
+  /**
+   * Returns whether a pending expression reads the image, which must then keep its pixels.
+   */
+  private boolean isPendingSource(Image image) {
+    for (LazyImage expression : pending.values()) {
+      if (expression.getSource() == image) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stores a pointwise operation on an image as a pending expression instead of computing it, if
+   * lazy evaluation is on and the source is an 8-bit image or itself pending. The operation is
+   * appended to the expression of the source, so a chain of such commands is computed in one pass
+   * when its result is first read.
+   *
+   * @param sourceName      The name of the source image.
+   * @param destinationName The name the result is stored under.
+   * @param step            Appends the operation to the expression of the source, given the
+   *                        operations of a CustomImage2 over the source image.
+   * @return true if the operation was deferred, false if it must be computed now.
+   */
+  private boolean defer(String sourceName, String destinationName,
+                        BiFunction<LazyImage, ICustomImage2, LazyImage> step) {
+    if (!lazy) {
+      return false;
+    }
+    LazyImage expression = pending.get(sourceName);
+    if (expression == null) {
+      Image image = ImageManger.get(sourceName);
+      if (image == null || image.isHighBitDepth()) {
+        return false;
+      }
+      expression = LazyImage.of(image, exactClamping);
+    }
+    expression = step.apply(expression, new CustomImage2(expression.getSource()));
+    Image replaced = ImageManger.remove(destinationName);
+    forgetDerived(destinationName);
+    pending.put(destinationName, expression);
+    if (replaced != null) {
+      recycleIfUnused(replaced);
+    }
+    return true;
+  }
+
+  /**
+   * Stores a pointwise operation given as a row operator as a pending expression, if lazy
+   * evaluation is on and the source allows it.
+   *
+   * @param sourceName      The name of the source image.
+   * @param destinationName The name the result is stored under.
+   * @param step            The operation, transforming spans of packed pixels.
+   * @param greyResult      Whether the operation gives equal channels.
+   * @return true if the operation was deferred, false if it must be computed now.
+   */
+  private boolean defer(String sourceName, String destinationName, RowOperator step,
+                        boolean greyResult) {
+    return defer(sourceName, destinationName,
+            (expression, ops) -> expression.then(step, greyResult));
+  }
+
+  /**
+   * Returns whether a command should overwrite the pixels of its source image instead of creating
+   * a new one. That is the case when the result replaces the source under the same name, no other
+   * name refers to the source and the source can be edited in place.
+   *
+   * @param sourceName      The name of the source image.
+   * @param destinationName The name the result is stored under.
+   * @param image           The source image, or null if it does not exist.
+   * @return true if the command should edit the image in place.
+   */
+  private boolean editsInPlace(String sourceName, String destinationName, Image image) {
+    if (image == null || !sourceName.equals(destinationName)
+            || !ImageStorage.isEditableInPlace(image) || isPendingSource(image)) {
+      return false;
+    }
+    int names = 0;
+    for (Image stored : ImageManger.values()) {
+      if (stored == image) {
+        names++;
+      }
+    }
+    if (names != 1) {
+      return false;
+    }
+    forgetDerived(sourceName);
+    return true;
+  }
+
+  /**
+   * Returns the result of a step that read an intermediate image, recycling the intermediate since
+   * it is superseded by the result. An intermediate that is stored is kept.
+   *
+   * @param intermediate The image the step read.
+   * @param result       The result of the step.
+   * @return The result.
+   */
+  private Image supersede(Image intermediate, Image result) {
+    if (intermediate != result && !ImageManger.containsValue(intermediate)) {
+      intermediate.recycle();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the part of the image that a split preview shows processed: a view of the columns left
+   * of the split, widened by the apron of columns that a filter reads right of a pixel, so that
+   * the filter computes only what the preview shows and still gives those columns their exact
+   * values. The whole image is returned when the command is not a split, for a greyscale image,
+   * which keeps its own kind of result, and for a percentage that splitImg would reject.
+   *
+   * @param image      The source image.
+   * @param cmand      The command, the region is only taken for "split".
+   * @param percentage The percentage of the width that is shown processed.
+   * @param apron      The number of columns right of a pixel that the filter reads.
+   * @return The image or the view of its left part.
+   */
+  private Image splitRegion(Image image, String cmand, String percentage, int apron) {
+    if (!"split".equals(cmand) || image == null || image instanceof GrayImage) {
+      return image;
+    }
+    int percent;
+    try {
+      percent = Integer.parseInt(percentage);
+    } catch (NumberFormatException e) {
+      return image;
+    }
+    if (percent < 0 || percent > 100) {
+      return image;
+    }
+    int width = Math.min(image.getWidth(), image.getWidth() * percent / 100 + apron);
+    if (width <= 0 || width == image.getWidth() || image.getHeight() == 0) {
+      return image;
+    }
+    return ImageView.crop(image, 0, 0, width, image.getHeight());
+  }
+
+  /**
+   * Applies a filter under a mask. The filter is applied to a view of the smallest rectangle that
+   * holds the pixels the mask takes from it, widened by the apron of pixels that the filter reads
+   * around a pixel, so a small mask on a large image filters only a small region. A greyscale
+   * image is filtered whole, which keeps its own kind of result.
+   *
+   * @param image  The source image.
+   * @param mask   The mask image.
+   * @param apron  The number of pixels around a pixel that the filter reads.
+   * @param filter The filter.
+   * @return The masked result.
+   */
+  private Image maskFiltered(Image image, BinaryMask mask, int apron,
+                             UnaryOperator<Image> filter) {
+    customImage3 = new CustomImage3(image);
+    Image region = image;
+    int[] bounds = {0, 0};
+    if (!(image instanceof GrayImage)) {
+      bounds = mask.getBounds(apron);
+      if (bounds == null) {
+        // The mask keeps every original pixel, so a single pixel stands in for the filtered image
+        bounds = new int[]{0, 0, 1, 1};
+      }
+      if (bounds[2] != image.getWidth() || bounds[3] != image.getHeight()) {
+        region = ImageView.crop(image, bounds[0], bounds[1], bounds[2], bounds[3]);
+      }
+    }
+    Image processedImage = filter.apply(region);
+    return supersede(processedImage,
+            customImage3.maskImg(processedImage, bounds[0], bounds[1], mask, image));
+  }
+
+  /**
+   * Applies a pointwise operation under a mask and stores the result, computing the operation
+   * only for the pixels the mask takes from it. An image with 16 bits per channel or a greyscale
+   * image, which keeps its own kind of result, is left to the command to compute whole.
+   *
+   * @param image           The source image.
+   * @param destinationName The name the result is stored under.
+   * @param maskImage       The name of the mask image.
+   * @param operator        The operation, transforming spans of packed pixels.
+   * @return true if the result was stored, false if the command must compute it.
+   * @throws FileNotFoundException if the mask is not found.
+   */
+  private boolean maskPointwise(Image image, String destinationName, String maskImage,
+                                RowOperator operator) throws FileNotFoundException {
+    if (image == null || image.isHighBitDepth() || image instanceof GrayImage) {
+      return false;
+    }
+    BinaryMask maskOfImage = getMask(maskImage);
+    customImage3 = new CustomImage3(image);
+    storeImage(destinationName, customImage3.maskImg(operator, maskOfImage, image));
+    return true;
+  }
+
+  /**
+   * Forgets the mask and the histogram computed from the image stored under a name, because the
+   * image under the name is replaced or about to change.
+   */
+  private void forgetDerived(String name) {
+    masks.remove(name);
+    histograms.remove(name);
+    previewHistograms.remove(name);
+  }
+
+  /**
+   * Returns the histogram of the image stored under a name. The histogram is computed the first
+   * time it is needed and kept until the image under the name is replaced or edited in place.
+   *
+   * @param name The name of the image.
+   * @return The histogram.
+   * @throws FileNotFoundException if the image does not exist in storage.
+   */
+  private Histogram getHistogram(String name) throws FileNotFoundException {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      Image image = getImage(name);
+      if (image == null) {
+        throw new FileNotFoundException("Image not found: " + name);
+      }
+      histogram = Histogram.of(image);
+      histograms.put(name, histogram);
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns the histogram of the image stored under a name for a preview. While approximate
+   * histograms are on, it is counted on a sample of the pixels unless the peaks of the sample are
+   * too uncertain or the exact histogram is already known; otherwise it is the exact histogram.
+   *
+   * @param name The name of the image.
+   * @return The sampled or the exact histogram.
+   * @throws FileNotFoundException if the image does not exist in storage.
+   */
+  private Histogram getPreviewHistogram(String name) throws FileNotFoundException {
+    if (!approximateHistograms || histograms.containsKey(name)) {
+      return getHistogram(name);
+    }
+    Histogram histogram = previewHistograms.get(name);
+    if (histogram == null) {
+      Image image = getImage(name);
+      if (image == null) {
+        throw new FileNotFoundException("Image not found: " + name);
+      }
+      histogram = customImage2.previewHistogram(image, ApproximateHistogram.DEFAULT_SAMPLES,
+              ApproximateHistogram.DEFAULT_TOLERANCE);
+      // A histogram that fell back to counting every pixel is the exact one
+      if (histogram.getPixelCount() == (long) image.getWidth() * image.getHeight()) {
+        histograms.put(name, histogram);
+      } else {
+        previewHistograms.put(name, histogram);
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns the mask built from the image stored under a name. The mask is built the first time
+   * the image is used as a mask and kept until the image under the name is replaced or edited in
+   * place.
+   *
+   * @param name The name of the mask image.
+   * @return The mask.
+   * @throws FileNotFoundException if the mask image does not exist in storage.
+   */
+  private BinaryMask getMask(String name) throws FileNotFoundException {
+    BinaryMask mask = masks.get(name);
+    if (mask == null) {
+      Image image = getImage(name);
+      if (image == null) {
+        throw new FileNotFoundException("Image not found: " + name);
+      }
+      mask = BinaryMask.of(image);
+      masks.put(name, mask);
+    }
+    return mask;
   }
 
   /**
-   * Retrieves a CustomImage object from the storage by its name.
+   * Retrieves a CustomImage object from the storage by its name. An image that is still a pending
+   * expression is computed first, in one pass, and stored under its name.
    *
    * @param name The name of the image to retrieve
    * @return The CustomImage associated with the specified name, or null if not found
    * @throws FileNotFoundException if the image does not exist in storage
    */
   public Image getImage(String name) throws FileNotFoundException {
+    LazyImage expression = pending.remove(name);
+    if (expression != null) {
+      ImageManger.put(name, expression.materialize());
+    }
     if (!ImageManger.containsKey(name)) {
       return null;
     }
@@ -60,7 +394,7 @@ public class ImageModel implements IImageModel {
    *
    * @param sourceFileName The name of the source image.
    * @param destFileName   The name to save the processed image.
-   * @param cmand          Optional command (e.g., "split").
+   * @param cmand          Optional command, "split" or "radius".
    * @param p              Parameter for the command (if applicable).
    * @param mask           Optional mask parameter.
    * @param maskImage      Name of the mask image to apply.
@@ -72,20 +406,37 @@ public class ImageModel implements IImageModel {
 
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.blurInPlace(originalImage);
+      return;
+    }
+    if (mask != null && (cmand == null || "radius".equals(cmand))) {
+      int radius = cmand == null ? 1 : Integer.parseInt(p);
+      // Every pass of a box blur reads the radius around the result of the pass before
+      int apron = cmand == null ? 1 : Convolution.BOX_PASSES * radius;
+      storeImage(destFileName, maskFiltered(originalImage, getMask(maskImage), apron,
+              image -> cmand == null ? customImage.blur(image) : customImage.blur(radius, image)));
+      return;
+    }
 
-    Image processedImage = customImage.blur(originalImage);
+    Image processedImage = "radius".equals(cmand)
+            ? customImage.blur(Integer.parseInt(p), originalImage)
+            : customImage.blur(splitRegion(originalImage, cmand, p, 1));
     customImage2 = new CustomImage2(processedImage);
 
     if ("split".equals(cmand)) {
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
-    } else if (cmand != null) {
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
+    } else if (cmand != null && !"radius".equals(cmand)) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
     }
 
     storeImage(destFileName, processedImage);
@@ -106,20 +457,37 @@ public class ImageModel implements IImageModel {
   public void intensityMethod(String sourceFileName, String destFileName, String cmand, String p,
                               String mask, String maskImage)
           throws FileNotFoundException {
+    if (cmand == null && mask == null && defer(sourceFileName, destFileName,
+            (expression, ops) -> expression.then(ops.intensityTransform()))) {
+      return;
+    }
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
-    Image processedImage = customImage.calculateIntensity(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.calculateIntensityInPlace(originalImage);
+      return;
+    }
+    if (cmand == null && mask != null
+            && maskPointwise(originalImage, destFileName, maskImage,
+                    ColorKernels.toGrey(ColorKernels.intensity()))) {
+      return;
+    }
+    Image processedImage = customImage.calculateIntensity(
+            splitRegion(originalImage, cmand, p, 0));
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
     }
 
     storeImage(destFileName, processedImage);
@@ -141,21 +509,37 @@ public class ImageModel implements IImageModel {
                          String mask, String maskImage)
           throws FileNotFoundException {
 
+    if (cmand == null && mask == null && defer(sourceFileName, destFileName,
+            (expression, ops) -> expression.then(ops.lumaTransform()))) {
+      return;
+    }
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
-    Image processedImage = customImage.calculateLuma(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.calculateLumaInPlace(originalImage);
+      return;
+    }
+    if (cmand == null && mask != null
+            && maskPointwise(originalImage, destFileName, maskImage,
+                    ColorKernels.toGrey(ColorKernels.luma()))) {
+      return;
+    }
+    Image processedImage = customImage.calculateLuma(splitRegion(originalImage, cmand, p, 0));
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
     }
 
     storeImage(destFileName, processedImage);
@@ -176,22 +560,37 @@ public class ImageModel implements IImageModel {
   public void sepiaMethod(String sourceFileName, String destFileName, String cmand, String p,
                           String mask, String maskImage)
           throws FileNotFoundException {
+    if (cmand == null && mask == null && defer(sourceFileName, destFileName,
+            (expression, ops) -> expression.then(ops.sepiaTransform()))) {
+      return;
+    }
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
-    Image processedImage = customImage.sepia(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.sepiaInPlace(originalImage);
+      return;
+    }
+    if (cmand == null && mask != null
+            && maskPointwise(originalImage, destFileName, maskImage, ColorKernels.sepia())) {
+      return;
+    }
+    Image processedImage = customImage.sepia(splitRegion(originalImage, cmand, p, 0));
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
 
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
 
     }
 
@@ -215,25 +614,58 @@ public class ImageModel implements IImageModel {
           throws FileNotFoundException {
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
-    Image processedImage = customImage.sharpen(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.sharpenInPlace(originalImage);
+      return;
+    }
+    if (cmand == null && mask != null) {
+      storeImage(destFileName, maskFiltered(originalImage, getMask(maskImage), 2,
+              customImage::sharpen));
+      return;
+    }
+    Image processedImage = customImage.sharpen(splitRegion(originalImage, cmand, p, 2));
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
 
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
     }
 
     storeImage(destFileName, processedImage);
   }
 
+  /**
+   * Sharpens an image by an amount against the mean of a box of the given radius and stores the
+   * result.
+   *
+   * @param sourceFileName The name of the source image.
+   * @param destFileName   The name to save the processed image.
+   * @param radius         The radius of the box.
+   * @param amount         The amount of sharpening.
+   * @throws FileNotFoundException if the source image is not found.
+   */
+  @Override
+  public void sharpenRadiusMethod(String sourceFileName, String destFileName, int radius,
+                                  double amount) throws FileNotFoundException {
+    Image originalImage = getImage(sourceFileName);
+    if (originalImage == null) {
+      throw new FileNotFoundException("Image not found");
+    }
+    customImage = new CustomImage(originalImage);
+    storeImage(destFileName, customImage.sharpen(radius, amount, originalImage));
+  }
+
   /**
    * Processes an image to calculate its value and optionally applies split and mask commands.
    *
@@ -249,23 +681,39 @@ public class ImageModel implements IImageModel {
   public void valueMethod(String sourceFileName, String destFileName, String cmand, String p,
                           String mask, String maskImage)
           throws FileNotFoundException {
+    if (cmand == null && mask == null && defer(sourceFileName, destFileName,
+            ColorKernels.toGrey(ColorKernels.value()), true)) {
+      return;
+    }
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.calculateValueInPlace(originalImage);
+      return;
+    }
+    if (cmand == null && mask != null
+            && maskPointwise(originalImage, destFileName, maskImage,
+                    ColorKernels.toGrey(ColorKernels.value()))) {
+      return;
+    }
 
-    Image processedImage = customImage.calculateValue(originalImage);
+    Image processedImage = customImage.calculateValue(splitRegion(originalImage, cmand, p, 0));
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
 
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
 
     }
 
@@ -286,6 +734,10 @@ public class ImageModel implements IImageModel {
       return;
     }
     customImage = new CustomImage(img);
+    if (editsInPlace(sourceFileName, destFileName, img)) {
+      customImage.fliphInPlace(img);
+      return;
+    }
     Image flippedImage = customImage.fliph(img);
     storeImage(destFileName, flippedImage);
   }
@@ -306,6 +758,10 @@ public class ImageModel implements IImageModel {
     }
 
     customImage = new CustomImage(img);
+    if (editsInPlace(sourceFileName, destFileName, img)) {
+      customImage.flipvInPlace(img);
+      return;
+    }
     Image flippedImage = customImage.flipv(img);
 
     storeImage(destFileName, flippedImage);
@@ -324,16 +780,27 @@ public class ImageModel implements IImageModel {
   public void colorCorrectMethod(String sourceFileName, String destFileName, String cmand, String p)
           throws FileNotFoundException {
     Image originalImage = getImage(sourceFileName);
+    if (originalImage == null) {
+      throw new FileNotFoundException("Image not found");
+    }
     customImage2 = new CustomImage2(originalImage);
-    Image proccessedImage = customImage2.colorCorrectionCommand(originalImage);
     if (cmand == null) {
-      storeImage(destFileName, proccessedImage);
+      // The histogram is taken before an edit in place forgets it
+      Histogram histogram = getHistogram(sourceFileName);
+      if (editsInPlace(sourceFileName, destFileName, originalImage)) {
+        customImage2.colorCorrectionLut(histogram).applyInPlace(originalImage);
+        return;
+      }
+      storeImage(destFileName, customImage2.colorCorrectionCommand(originalImage, histogram));
     } else {
       if (!cmand.equals("split")) {
         throw new IllegalArgumentException("Wrong command");
       }
 
-      storeImage(destFileName, customImage2.splitImg(proccessedImage, originalImage, p));
+      Image proccessedImage = customImage2.colorCorrectionCommand(
+              splitRegion(originalImage, cmand, p, 0), getPreviewHistogram(sourceFileName));
+      storeImage(destFileName, supersede(proccessedImage,
+              customImage2.splitImg(proccessedImage, originalImage, p)));
     }
   }
 
@@ -353,20 +820,47 @@ public class ImageModel implements IImageModel {
     if (originalImage == null) {
       throw new FileNotFoundException("File not found");
     }
-    BufferedImage bfImage = customImage2.createHistogram(originalImage);
+    BufferedImage bfImage = customImage2.createHistogram(getPreviewHistogram(sourceFileName));
 
+    // The pixels of an INT_RGB image are packed 0xRRGGBB values, so each row is one span copy
+    int[] pixels = ((DataBufferInt) bfImage.getRaster().getDataBuffer()).getData();
     Image cm = new Image(256, 256);
+    for (int j = 0; j < 256; j++) {
+      cm.setRowSpan(0, j, 256, pixels, j * 256);
+    }
+    storeImage(destFileName, cm);
+  }
 
-    for (int i = 0; i < 256; i++) {
-      for (int j = 0; j < 256; j++) {
-        int rgb = bfImage.getRGB(i, j);
-        int r = (rgb >> 16) & 0xff;
-        int g = (rgb >> 8) & 0xff;
-        int b = rgb & 0xff;
-        cm.setPixel(i, j, r, g, b);
+  /**
+   * Stretches the levels of an image so that its darkest samples become black and its brightest
+   * white, and optionally splits it.
+   *
+   * @param sourceFileName the name of the source image file
+   * @param destFileName   the name of the destination image file
+   * @param cmand          the command to execute (e.g., "split")
+   * @param p              parameter used for the "split" command
+   * @throws FileNotFoundException if the source file is not found
+   */
+  @Override
+  public void autoLevelsMethod(String sourceFileName, String destFileName, String cmand,
+                               String p) throws FileNotFoundException {
+    Image originalImage = getImage(sourceFileName);
+    if (originalImage == null) {
+      throw new FileNotFoundException("Image not found");
+    }
+    customImage2 = new CustomImage2(originalImage);
+    Histogram histogram = getHistogram(sourceFileName);
+    if (cmand == null) {
+      storeImage(destFileName, customImage2.autoLevels(originalImage, histogram));
+    } else {
+      if (!cmand.equals("split")) {
+        throw new IllegalArgumentException("Wrong command");
       }
+      Image proccessedImage = customImage2.autoLevels(
+              splitRegion(originalImage, cmand, p, 0), histogram);
+      storeImage(destFileName, supersede(proccessedImage,
+              customImage2.splitImg(proccessedImage, originalImage, p)));
     }
-    storeImage(destFileName, cm);
   }
 
   /**
@@ -387,22 +881,38 @@ public class ImageModel implements IImageModel {
                                  String maskImage)
           throws FileNotFoundException {
 
+    if (cmand == null && mask == null && defer(sourceFileName, destFileName,
+            (expression, ops) -> expression.then(ops.componentTransform(PlanarImage.BLUE)))) {
+      return;
+    }
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.getComponentInPlace(originalImage, PlanarImage.BLUE);
+      return;
+    }
+    if (cmand == null && mask != null
+            && maskPointwise(originalImage, destFileName, maskImage,
+                    ColorKernels.component(PlanarImage.BLUE))) {
+      return;
+    }
     Image processedImage = customImage.getBlueImage(originalImage);
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
 
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
     }
 
     storeImage(destFileName, processedImage);
@@ -426,21 +936,37 @@ public class ImageModel implements IImageModel {
                                     String maskImage)
           throws FileNotFoundException {
 
+    if (cmand == null && mask == null && defer(sourceFileName, destFileName,
+            (expression, ops) -> expression.then(ops.componentTransform(PlanarImage.RED)))) {
+      return;
+    }
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.getComponentInPlace(originalImage, PlanarImage.RED);
+      return;
+    }
+    if (cmand == null && mask != null
+            && maskPointwise(originalImage, destFileName, maskImage,
+                    ColorKernels.component(PlanarImage.RED))) {
+      return;
+    }
     Image processedImage = customImage.getRedImage(originalImage);
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
     }
 
     storeImage(destFileName, processedImage);
@@ -464,21 +990,37 @@ public class ImageModel implements IImageModel {
                                      String maskImage)
           throws FileNotFoundException {
 
+    if (cmand == null && mask == null && defer(sourceFileName, destFileName,
+            (expression, ops) -> expression.then(ops.componentTransform(PlanarImage.GREEN)))) {
+      return;
+    }
     Image originalImage = getImage(sourceFileName);
     customImage = new CustomImage(originalImage);
+    if (cmand == null && mask == null
+            && editsInPlace(sourceFileName, destFileName, originalImage)) {
+      customImage.getComponentInPlace(originalImage, PlanarImage.GREEN);
+      return;
+    }
+    if (cmand == null && mask != null
+            && maskPointwise(originalImage, destFileName, maskImage,
+                    ColorKernels.component(PlanarImage.GREEN))) {
+      return;
+    }
     Image processedImage = customImage.getGreenImage(originalImage);
 
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(processedImage);
-      processedImage = customImage2.splitImg(processedImage, originalImage, p);
+      processedImage = supersede(processedImage,
+              customImage2.splitImg(processedImage, originalImage, p));
     } else if (cmand != null) {
       throw new IllegalArgumentException("Invalid command: " + cmand);
     }
 
     if (mask != null) {
-      Image maskOfImage = getImage(maskImage);
+      BinaryMask maskOfImage = getMask(maskImage);
       customImage3 = new CustomImage3(processedImage);
-      processedImage = customImage3.maskImg(processedImage, maskOfImage, originalImage);
+      processedImage = supersede(processedImage,
+              customImage3.maskImg(processedImage, 0, 0, maskOfImage, originalImage));
     }
 
     storeImage(destFileName, processedImage);
@@ -538,6 +1080,10 @@ public class ImageModel implements IImageModel {
   @Override
   public void brightenMethod(Integer brightness, String imageName, String destinationName)
           throws FileNotFoundException {
+    if (defer(imageName, destinationName,
+            (expression, ops) -> expression.then(ops.brightenTransform(brightness)))) {
+      return;
+    }
     Image img;
     try {
       img = getImage(imageName);
@@ -551,6 +1097,10 @@ public class ImageModel implements IImageModel {
     }
 
     customImage = new CustomImage(img);
+    if (editsInPlace(imageName, destinationName, img)) {
+      customImage.brightenInPlace(brightness, img);
+      return;
+    }
     Image image = customImage.brighten(brightness, img);
     storeImage(destinationName, image);
   }
@@ -571,6 +1121,10 @@ public class ImageModel implements IImageModel {
   public void levelAdjustMethod(int b, int m, int w, String imageName, String destinationName,
                                 int p, String cmand)
           throws FileNotFoundException {
+    if (!"split".equals(cmand) && defer(imageName, destinationName,
+            (expression, ops) -> expression.then(ops.levelsLut(b, m, w)))) {
+      return;
+    }
     Image originalImage = getImage(imageName);
     if (originalImage == null) {
       throw new FileNotFoundException("Image not found: " + imageName);
@@ -578,11 +1132,16 @@ public class ImageModel implements IImageModel {
 
     customImage2 = new CustomImage2(originalImage);
 
-    Image proccesssedImage = customImage2.adjustColorCommand(originalImage, b, m, w);
+    if (!"split".equals(cmand) && editsInPlace(imageName, destinationName, originalImage)) {
+      customImage2.adjustColorInPlace(originalImage, b, m, w);
+      return;
+    }
+    Image proccesssedImage = customImage2.adjustColorCommand(
+            splitRegion(originalImage, cmand, Integer.toString(p), 0), b, m, w);
     if ("split".equals(cmand)) {
       customImage2 = new CustomImage2(proccesssedImage);
-      storeImage(destinationName,
-              customImage2.splitImg(proccesssedImage, originalImage, Integer.toString(p)));
+      storeImage(destinationName, supersede(proccesssedImage,
+              customImage2.splitImg(proccesssedImage, originalImage, Integer.toString(p))));
     } else {
       storeImage(destinationName, proccesssedImage);
     }
@@ -635,4 +1194,130 @@ public class ImageModel implements IImageModel {
 
     storeImage(destinationName, downScalledImage);
   }
+
+  /**
+   * Crops an image to a rectangular region and stores the result. The cropped image is a view that
+   * shares the pixels of the source image until either of them is written to.
+   *
+   * @param imageName       the name of the source image
+   * @param destinationName the name for the cropped image
+   * @param x               the x-coordinate of the top left corner of the region
+   * @param y               the y-coordinate of the top left corner of the region
+   * @param width           the width of the region
+   * @param height          the height of the region
+   * @throws FileNotFoundException if the source image is not found
+   */
+  @Override
+  public void cropMethod(String imageName, String destinationName, int x, int y, int width,
+                         int height) throws FileNotFoundException {
+    Image originalImage = getImage(imageName);
+
+    if (originalImage == null) {
+      throw new FileNotFoundException("Image not found");
+    }
+
+    customImage3 = new CustomImage3(originalImage);
+    storeImage(destinationName, customImage3.crop(originalImage, x, y, width, height));
+  }
+
+  /**
+   * Selects where image pixels are kept. Without an image name the default storage for new images
+   * is set; otherwise the image is copied into the given storage and stored under a new name.
+   *
+   * @param mode            the storage, on the heap or in a memory-mapped scratch file
+   * @param imageName       the name of the source image, or null to set the default storage
+   * @param destinationName the name for the converted image, or null
+   * @throws FileNotFoundException if the source image is not found
+   */
+  @Override
+  public void storageMethod(ImageStorage.Mode mode, String imageName, String destinationName)
+          throws FileNotFoundException {
+    if (imageName == null) {
+      ImageStorage.setDefaultMode(mode);
+      return;
+    }
+    Image originalImage = getImage(imageName);
+
+    if (originalImage == null) {
+      throw new FileNotFoundException("Image not found");
+    }
+
+    storeImage(destinationName, ImageStorage.convert(originalImage, mode));
+  }
+
+  /**
+   * Selects the number of bits per color channel. Without an image name the bit depth of images
+   * loaded from then on is set; otherwise the image is converted and stored under a new name.
+   *
+   * @param highBitDepth    true for 16 bits per channel, false for 8 bits
+   * @param imageName       the name of the source image, or null to set the default bit depth
+   * @param destinationName the name for the converted image, or null
+   * @throws FileNotFoundException if the source image is not found
+   */
+  @Override
+  public void bitDepthMethod(boolean highBitDepth, String imageName, String destinationName)
+          throws FileNotFoundException {
+    if (imageName == null) {
+      ImageStorage.setHighBitDepth(highBitDepth);
+      return;
+    }
+    Image originalImage = getImage(imageName);
+
+    if (originalImage == null) {
+      throw new FileNotFoundException("Image not found");
+    }
+
+    storeImage(destinationName, ImageStorage.convertDepth(originalImage, highBitDepth));
+  }
+
+  /**
+   * Turns lazy evaluation of pointwise commands on or off. Brighten, level-adjust, sepia, and the
+   * red, green, blue, luma, intensity and value component commands without split or mask are then
+   * deferred; every other command, and save, reads its source through getImage, which computes a
+   * pending source in one pass. Consecutive sepia, luma, intensity, component and brighten commands
+   * are collapsed into one color transform unless exact clamping is asked for. Turning lazy
+   * evaluation off computes every pending image.
+   *
+   * @param lazy          true to defer pointwise commands, false to compute them straight away
+   * @param exactClamping true to keep the truncation and clamping of every command
+   * @throws FileNotFoundException if a pending image cannot be computed
+   */
+  @Override
+  public void lazyMethod(boolean lazy, boolean exactClamping) throws FileNotFoundException {
+    this.lazy = lazy;
+    this.exactClamping = exactClamping;
+    if (!lazy) {
+      for (String name : pending.keySet().toArray(new String[0])) {
+        getImage(name);
+      }
+    }
+  }
+
+  /**
+   * Computes an image now if it is a pending expression, and stores it under its name.
+   *
+   * @param imageName the name of the image
+   * @throws FileNotFoundException if the image is not found
+   */
+  @Override
+  public void materializeMethod(String imageName) throws FileNotFoundException {
+    if (getImage(imageName) == null) {
+      throw new FileNotFoundException("Image not found");
+    }
+  }
+
+  /**
+   * Selects whether the histogram command and the split preview of color-correct count every
+   * pixel or a stratified sample of ApproximateHistogram.DEFAULT_SAMPLES pixels. The sample is used
+   * while the confidence bound of every channel peak spans at most
+   * ApproximateHistogram.DEFAULT_TOLERANCE levels, so a preview takes the same time whatever the
+   * size of the image; otherwise every pixel is counted. Color correction without split always
+   * counts every pixel.
+   *
+   * @param approximate true to sample histograms for previews, false to count every pixel
+   */
+  @Override
+  public void histogramModeMethod(boolean approximate) {
+    this.approximateHistograms = approximate;
+  }
 }
@@ -0,0 +1,123 @@
+package model;
+
+import java.io.FileNotFoundException;
+
+import model.commands.ModelCommand;
+
+/**
+ * The LazyCommand class selects whether pointwise commands are computed straight away or kept as
+ * pending expressions that are computed in one pass when their result is read. With "on" the
+ * color transforms of consecutive commands are collapsed into one; with "exact" every command
+ * keeps its own truncation and clamping. With "force" it computes a pending image now.
+ */
+public class LazyCommand implements ModelCommand {
+
+  private Boolean lazy;
+  private boolean exactClamping;
+  private String imageName;
+  private IImageModel model;
+
+  /**
+   * Constructs a LazyCommand that turns lazy evaluation on or off, or that computes an image.
+   *
+   * @param lazy          true or false to turn lazy evaluation on or off, or null to compute the
+   *                      image
+   * @param exactClamping true to keep the truncation and clamping of every command
+   * @param imageName     the name of the image to compute, or null
+   * @param model         the image model holding the images
+   */
+  public LazyCommand(Boolean lazy, boolean exactClamping, String imageName, IImageModel model) {
+    this.lazy = lazy;
+    this.exactClamping = exactClamping;
+    this.imageName = imageName;
+    this.model = model;
+  }
+
+  /**
+   * Creates and returns a builder for constructing a LazyCommand instance.
+   *
+   * @return a new instance of LazyBuilderClass for building a LazyCommand
+   */
+  public static LazyBuilderClass createBuilder() {
+    return new LazyBuilderClass();
+  }
+
+  /**
+   * Executes the lazy command by switching lazy evaluation or computing the image.
+   *
+   * @return true if the command was executed successfully
+   * @throws FileNotFoundException if the image to be computed cannot be found
+   */
+  @Override
+  public boolean execute() throws FileNotFoundException {
+    if (lazy == null) {
+      this.model.materializeMethod(imageName);
+    } else {
+      this.model.lazyMethod(lazy, exactClamping);
+    }
+    return true;
+  }
+
+  /**
+   * Builder class for constructing instances of LazyCommand.
+   */
+  public static class LazyBuilderClass {
+
+    private String mode;
+    private String imageName;
+    private IImageModel model;
+
+    /**
+     * Sets what the command does.
+     *
+     * @param mode "on", "exact" or "off" to turn lazy evaluation on, on with exact clamping or
+     *             off, "force" to compute an image
+     * @return the current builder instance for chaining
+     * @throws IllegalArgumentException if the mode is not "on", "exact", "off" or "force"
+     */
+    public LazyBuilderClass setMode(String mode) {
+      if (!"on".equals(mode) && !"exact".equals(mode) && !"off".equals(mode)
+              && !"force".equals(mode)) {
+        throw new IllegalArgumentException("Lazy mode must be on, exact, off or force: " + mode);
+      }
+      this.mode = mode;
+      return this;
+    }
+
+    /**
+     * Sets the name of the image to be computed.
+     *
+     * @param imageName the name of the image
+     * @return the current builder instance for chaining
+     */
+    public LazyBuilderClass setImageName(String imageName) {
+      this.imageName = imageName;
+      return this;
+    }
+
+    /**
+     * Sets the image model holding the images.
+     *
+     * @param model the image model instance
+     * @return the current builder instance for chaining
+     */
+    public LazyBuilderClass setModel(IImageModel model) {
+      this.model = model;
+      return this;
+    }
+
+    /**
+     * Builds and returns a LazyCommand instance.
+     *
+     * @return a new LazyCommand instance
+     * @throws IllegalStateException if any required field is missing
+     */
+    public LazyCommand build() {
+      if (mode == null || model == null || "force".equals(mode) != (imageName != null)) {
+        throw new IllegalStateException("Missing required fields for LazyCommand");
+      }
+      return new LazyCommand("force".equals(mode) ? null : !"off".equals(mode),
+              "exact".equals(mode), imageName, model);
+    }
+  }
+}
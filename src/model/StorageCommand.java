@@ -0,0 +1,125 @@
+package model;
+
+import java.io.FileNotFoundException;
+
+import model.commands.ModelCommand;
+import model.database.ImageStorage;
+
+/**
+ * The StorageCommand class selects where image pixels are kept. Without an image name it sets the
+ * default storage for images created from then on; with an image name it copies that image into
+ * the requested storage and saves it under a new name.
+ */
+public class StorageCommand implements ModelCommand {
+
+  private ImageStorage.Mode mode;
+  private String imageName;
+  private String destinationName;
+  private IImageModel model;
+
+  /**
+   * Constructs a StorageCommand with the specified storage mode, image name and destination name.
+   *
+   * @param mode            the storage to use
+   * @param imageName       the name of the image to convert, or null to set the default storage
+   * @param destinationName the name under which the converted image will be saved, or null
+   * @param model           the image model holding the images
+   */
+  public StorageCommand(ImageStorage.Mode mode, String imageName, String destinationName,
+                        IImageModel model) {
+    this.mode = mode;
+    this.imageName = imageName;
+    this.destinationName = destinationName;
+    this.model = model;
+  }
+
+  /**
+   * Creates and returns a builder for constructing a StorageCommand instance.
+   *
+   * @return a new instance of StorageBuilderClass for building a StorageCommand
+   */
+  public static StorageBuilderClass createBuilder() {
+    return new StorageBuilderClass();
+  }
+
+  /**
+   * Executes the storage command by setting the default storage or converting the image.
+   *
+   * @return true if the storage was changed successfully
+   * @throws FileNotFoundException if the image to be converted cannot be found
+   */
+  @Override
+  public boolean execute() throws FileNotFoundException {
+    this.model.storageMethod(mode, imageName, destinationName);
+    return true;
+  }
+
+  /**
+   * Builder class for constructing instances of StorageCommand.
+   */
+  public static class StorageBuilderClass {
+
+    private ImageStorage.Mode mode;
+    private String imageName;
+    private String destinationName;
+    private IImageModel model;
+
+    /**
+     * Sets the storage to use.
+     *
+     * @param mode the storage, "heap" or "mapped"
+     * @return the current builder instance for chaining
+     * @throws IllegalArgumentException if the storage is not "heap" or "mapped"
+     */
+    public StorageBuilderClass setMode(String mode) {
+      this.mode = ImageStorage.parseMode(mode);
+      return this;
+    }
+
+    /**
+     * Sets the name of the image to be converted.
+     *
+     * @param imageName the name of the image
+     * @return the current builder instance for chaining
+     */
+    public StorageBuilderClass setImageName(String imageName) {
+      this.imageName = imageName;
+      return this;
+    }
+
+    /**
+     * Sets the destination name for the converted image.
+     *
+     * @param destinationName the name under which the converted image will be saved
+     * @return the current builder instance for chaining
+     */
+    public StorageBuilderClass setDestinationName(String destinationName) {
+      this.destinationName = destinationName;
+      return this;
+    }
+
+    /**
+     * Sets the image model holding the images.
+     *
+     * @param model the image model instance
+     * @return the current builder instance for chaining
+     */
+    public StorageBuilderClass setModel(IImageModel model) {
+      this.model = model;
+      return this;
+    }
+
+    /**
+     * Builds and returns a StorageCommand instance.
+     *
+     * @return a new StorageCommand instance
+     * @throws IllegalStateException if any required field is missing
+     */
+    public StorageCommand build() {
+      if (mode == null || model == null || (imageName == null) != (destinationName == null)) {
+        throw new IllegalStateException("Missing required fields for StorageCommand");
+      }
+      return new StorageCommand(mode, imageName, destinationName, model);
+    }
+  }
+}
@@ -5,15 +5,20 @@ import java.util.Map;
 import java.util.function.BiConsumer;
 
 import model.IImageModel;
+import model.commands.commandexecutors.AutoLevelsCommandExecutor;
+import model.commands.commandexecutors.BitDepthCommandExecutor;
 import model.commands.commandexecutors.BlueComponentCommandExecutor;
 import model.commands.commandexecutors.BlurCommandExecutor;
 import model.commands.commandexecutors.BrightenCommandExecutor;
 import model.commands.commandexecutors.ColorCorrectCommandExecutor;
 import model.commands.commandexecutors.CompressCommandExecutor;
+import model.commands.commandexecutors.CropCommandExecutor;
 import model.commands.commandexecutors.GreenComponentCommandExecutor;
 import model.commands.commandexecutors.HistogramCommandExecutor;
+import model.commands.commandexecutors.HistogramModeCommandExecutor;
 import model.commands.commandexecutors.HorizontalFlipCommandExecutor;
 import model.commands.commandexecutors.IntensityComponentComamandExecutor;
+import model.commands.commandexecutors.LazyCommandExecutor;
 import model.commands.commandexecutors.LevelAbjustCommandExecutor;
 import model.commands.commandexecutors.LumaComponentCommandExecutor;
 import model.commands.commandexecutors.RGBCombineCommandExecutor;
@@ -21,6 +26,7 @@ import model.commands.commandexecutors.RGBSplitCommandExecutor;
 import model.commands.commandexecutors.RedComponentCommandExecutor;
 import model.commands.commandexecutors.SepiaCommandExecutor;
 import model.commands.commandexecutors.SharpenCommandExecutor;
+import model.commands.commandexecutors.StorageCommandExecutor;
 import model.commands.commandexecutors.ValueComponentCommandExecutor;
 import model.commands.commandexecutors.VerticalFlipCommandExecutor;
 
@@ -148,6 +154,13 @@ public class ModelCommandHandler {
         throw new RuntimeException(e);
       }
     });
+    commandMap.put("auto-levels", (args, model) -> {
+      try {
+        new AutoLevelsCommandExecutor(null, args, model).createCommands();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
     commandMap.put("level-adjust", (args, model) -> {
       try {
         new LevelAbjustCommandExecutor(null, args, model).createCommands();
@@ -169,6 +182,41 @@ public class ModelCommandHandler {
         throw new RuntimeException(e);
       }
     });
+    commandMap.put("crop", (args, model) -> {
+      try {
+        new CropCommandExecutor(null, args, model).createCommands();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    commandMap.put("storage", (args, model) -> {
+      try {
+        new StorageCommandExecutor(null, args, model).createCommands();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    commandMap.put("bit-depth", (args, model) -> {
+      try {
+        new BitDepthCommandExecutor(null, args, model).createCommands();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    commandMap.put("lazy", (args, model) -> {
+      try {
+        new LazyCommandExecutor(null, args, model).createCommands();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    commandMap.put("histogram-mode", (args, model) -> {
+      try {
+        new HistogramModeCommandExecutor(null, args, model).createCommands();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
   }
 
   /**
@@ -0,0 +1,46 @@
+package model.commands.commandexecutors;
+
+import model.BitDepthCommand;
+import model.IImageModel;
+import model.commands.ModelCommand;
+
+/**
+ * Executes the bit-depth command, which selects whether images have 8 or 16 bits per color
+ * channel. This class constructs BitDepthCommand with specified arguments and executes it using
+ * associated image model.
+ */
+public class BitDepthCommandExecutor extends AbstractCommandExecutor {
+
+  /**
+   * Constructs a BitDepthCommandExecutor with specified model command, arguments, and image model.
+   *
+   * @param m     The model command to be executed
+   * @param args  The arguments required for the command execution
+   * @param model The image model to be operated upon
+   */
+  public BitDepthCommandExecutor(ModelCommand m, String[] args, IImageModel model) {
+    super(m, args, model);
+  }
+
+  /**
+   * Creates and executes the storage command based on the provided arguments. With one argument
+   * the default bit depth is set; with three arguments the named image is converted and saved under
+   * the destination name.
+   *
+   * @throws Exception if any error occurs during the command creation or execution
+   */
+  @Override
+  public void createCommands() throws Exception {
+    boolean status;
+    BitDepthCommand.BitDepthBuilderClass builder = BitDepthCommand.createBuilder()
+            .setBitDepth(args[0])
+            .setModel(model);
+    if (args.length > 1) {
+      builder.setImageName(args[1])
+              .setDestinationName(args[2]);
+    }
+    m = builder.build();
+    status = m.execute();
+    System.out.println("bit-depth command executed " + status + "!");
+  }
+}
@@ -0,0 +1,45 @@
+package model.commands.commandexecutors;
+
+import model.CropCommand;
+import model.IImageModel;
+import model.commands.ModelCommand;
+
+/**
+ * Executes the crop command on an image by cutting out a rectangular region. This class constructs
+ * CropCommand with specified arguments and executes it using associated image model.
+ */
+public class CropCommandExecutor extends AbstractCommandExecutor {
+
+  /**
+   * Constructs a CropCommandExecutor with specified model command, arguments, and image model.
+   *
+   * @param m     The model command to be executed
+   * @param args  The arguments required for the command execution
+   * @param model The image model to be operated upon
+   */
+  public CropCommandExecutor(ModelCommand m, String[] args, IImageModel model) {
+    super(m, args, model);
+  }
+
+  /**
+   * Creates and executes the crop command based on the provided arguments.
+   * The command is created with the x and y coordinates of the top left corner, the width and
+   * height of the region, the image name, and the destination name to save the cropped image.
+   * The method then executes the constructed command and prints the execution status.
+   *
+   * @throws Exception if any error occurs during the command creation or execution
+   */
+  @Override
+  public void createCommands() throws Exception {
+    boolean status;
+    m = CropCommand.createBuilder()
+            .setOrigin(args[0], args[1])
+            .setSize(args[2], args[3])
+            .setImageName(args[4])
+            .setDestinationName(args[5])
+            .setModel(model)
+            .build();
+    status = m.execute();
+    System.out.println("crop command executed " + status + "!");
+  }
+}
@@ -0,0 +1,42 @@
+package model.commands.commandexecutors;
+
+import model.HistogramModeCommand;
+import model.IImageModel;
+import model.commands.ModelCommand;
+
+/**
+ * Executes the histogram-mode command, which selects whether histograms for previews are counted
+ * on every pixel or on a sample. This class constructs HistogramModeCommand with specified
+ * arguments and executes it using associated image model.
+ */
+public class HistogramModeCommandExecutor extends AbstractCommandExecutor {
+
+  /**
+   * Constructs a HistogramModeCommandExecutor with specified model command, arguments, and image
+   * model.
+   *
+   * @param m     The model command to be executed
+   * @param args  The arguments required for the command execution
+   * @param model The image model to be operated upon
+   */
+  public HistogramModeCommandExecutor(ModelCommand m, String[] args, IImageModel model) {
+    super(m, args, model);
+  }
+
+  /**
+   * Creates and executes the histogram mode command with "exact" or "approximate" as its
+   * argument.
+   *
+   * @throws Exception if any error occurs during the command creation or execution
+   */
+  @Override
+  public void createCommands() throws Exception {
+    boolean status;
+    m = HistogramModeCommand.createBuilder()
+            .setMode(args[0])
+            .setModel(model)
+            .build();
+    status = m.execute();
+    System.out.println("histogram-mode command executed " + status + "!");
+  }
+}
@@ -0,0 +1,45 @@
+package model.commands.commandexecutors;
+
+import model.IImageModel;
+import model.LazyCommand;
+import model.commands.ModelCommand;
+
+/**
+ * Executes the lazy command, which turns lazy evaluation of pointwise commands on or off, or
+ * computes a pending image. This class constructs LazyCommand with specified arguments and
+ * executes it using associated image model.
+ */
+public class LazyCommandExecutor extends AbstractCommandExecutor {
+
+  /**
+   * Constructs a LazyCommandExecutor with specified model command, arguments, and image model.
+   *
+   * @param m     The model command to be executed
+   * @param args  The arguments required for the command execution
+   * @param model The image model to be operated upon
+   */
+  public LazyCommandExecutor(ModelCommand m, String[] args, IImageModel model) {
+    super(m, args, model);
+  }
+
+  /**
+   * Creates and executes the lazy command based on the provided arguments. With one argument lazy
+   * evaluation is turned on, on with exact clamping, or off; with "force" and an image name the
+   * image is computed.
+   *
+   * @throws Exception if any error occurs during the command creation or execution
+   */
+  @Override
+  public void createCommands() throws Exception {
+    boolean status;
+    LazyCommand.LazyBuilderClass builder = LazyCommand.createBuilder()
+            .setMode(args[0])
+            .setModel(model);
+    if (args.length > 1) {
+      builder.setImageName(args[1]);
+    }
+    m = builder.build();
+    status = m.execute();
+    System.out.println("lazy command executed " + status + "!");
+  }
+}
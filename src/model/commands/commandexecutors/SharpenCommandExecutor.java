@@ -36,8 +36,21 @@ public class SharpenCommandExecutor extends AbstractCommandExecutor {
   public void createCommands() throws Exception {
     boolean status;
 
+    // Create and execute the Sharpen command with a radius and an amount
+    if (args.length == 5) {
+      m = SharpenCommand.createBuilder()
+              .setAmount(args[4])
+              .setSourceFileName(args[0])
+              .setDestFileName(args[1])
+              .setCommand(args[2])
+              .setParam(args[3])
+              .setModel(model)
+              .build();
+      status = m.execute();
+      System.out.println("sharpen command executed " + status + "!");
+    }
     // Create and execute the Sharpen command with four arguments
-    if (args.length == 4) {
+    else if (args.length == 4) {
       m = SharpenCommand.createBuilder()
               .setSourceFileName(args[0])
               .setDestFileName(args[1])
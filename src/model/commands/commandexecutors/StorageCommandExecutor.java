@@ -0,0 +1,46 @@
+package model.commands.commandexecutors;
+
+import model.IImageModel;
+import model.StorageCommand;
+import model.commands.ModelCommand;
+
+/**
+ * Executes the storage command, which selects whether image pixels are kept on the heap or in a
+ * memory-mapped scratch file. This class constructs StorageCommand with specified arguments and
+ * executes it using associated image model.
+ */
+public class StorageCommandExecutor extends AbstractCommandExecutor {
+
+  /**
+   * Constructs a StorageCommandExecutor with specified model command, arguments, and image model.
+   *
+   * @param m     The model command to be executed
+   * @param args  The arguments required for the command execution
+   * @param model The image model to be operated upon
+   */
+  public StorageCommandExecutor(ModelCommand m, String[] args, IImageModel model) {
+    super(m, args, model);
+  }
+
+  /**
+   * Creates and executes the storage command based on the provided arguments. With one argument
+   * the default storage is set; with three arguments the named image is converted and saved under
+   * the destination name.
+   *
+   * @throws Exception if any error occurs during the command creation or execution
+   */
+  @Override
+  public void createCommands() throws Exception {
+    boolean status;
+    StorageCommand.StorageBuilderClass builder = StorageCommand.createBuilder()
+            .setMode(args[0])
+            .setModel(model);
+    if (args.length > 1) {
+      builder.setImageName(args[1])
+              .setDestinationName(args[2]);
+    }
+    m = builder.build();
+    status = m.execute();
+    System.out.println("storage command executed " + status + "!");
+  }
+}
@@ -0,0 +1,217 @@
+package model.database;
+
+/**
+ * AffineColorTransform is a color operation that computes each channel of the result as a
+ * weighted sum of the red, green and blue channels plus an offset: a 3x4 matrix whose rows give
+ * the new red, green and blue and whose columns hold the weights of red, green and blue and the
+ * offset. Sepia, luma, intensity, the channel components and brighten are all of this kind, so a
+ * chain of them can be collapsed into one matrix by multiplying their matrices, and applied in one
+ * pass. A collapsed transform truncates and clamps only its final values, so its result can differ
+ * from applying the operations one after another, which truncate and clamp after every step.
+ * A transform of a single operation computes exactly what the operation computes.
+ */
+public final class AffineColorTransform {
+
+  private static final int COLUMNS = 4;
+
+  private final double[] matrix;
+  private final RowOperator kernel;
+
+  private AffineColorTransform(double[] matrix, RowOperator kernel) {
+    this.matrix = matrix;
+    this.kernel = kernel;
+  }
+
+  /**
+   * Returns the transform with the given matrix.
+   *
+   * @param matrix The 3x4 matrix; row i gives channel i of the result as the weights of red, green
+   *               and blue followed by the offset.
+   * @return The transform.
+   * @throws IllegalArgumentException If the matrix is not 3x4.
+   */
+  public static AffineColorTransform of(double[][] matrix) {
+    if (matrix.length != 3) {
+      throw new IllegalArgumentException("A color transform has 3 rows.");
+    }
+    double[] entries = new double[3 * COLUMNS];
+    for (int row = 0; row < 3; row++) {
+      if (matrix[row].length != COLUMNS) {
+        throw new IllegalArgumentException("A color transform has 4 columns.");
+      }
+      System.arraycopy(matrix[row], 0, entries, row * COLUMNS, COLUMNS);
+    }
+    return new AffineColorTransform(entries, null);
+  }
+
+  /**
+   * Returns the sepia transform.
+   *
+   * @return The transform of sepia.
+   */
+  public static AffineColorTransform sepia() {
+    return new AffineColorTransform(new double[]{
+        0.393, 0.769, 0.189, 0,
+        0.349, 0.686, 0.168, 0,
+        0.272, 0.534, 0.131, 0}, ColorKernels.sepia());
+  }
+
+  /**
+   * Returns the transform writing the luma of a pixel into all three channels.
+   *
+   * @return The transform of luma.
+   */
+  public static AffineColorTransform luma() {
+    return grey(0.2126, 0.7152, 0.0722, ColorKernels.toGrey(ColorKernels.luma()));
+  }
+
+  /**
+   * Returns the transform writing the intensity of a pixel into all three channels.
+   *
+   * @return The transform of intensity.
+   */
+  public static AffineColorTransform intensity() {
+    return grey(1.0 / 3, 1.0 / 3, 1.0 / 3, ColorKernels.toGrey(ColorKernels.intensity()));
+  }
+
+  /**
+   * Returns the transform writing one channel of a pixel into all three channels.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @return The transform of the component.
+   */
+  public static AffineColorTransform component(int channel) {
+    return grey(channel == PlanarImage.RED ? 1 : 0, channel == PlanarImage.GREEN ? 1 : 0,
+            channel == PlanarImage.BLUE ? 1 : 0, ColorKernels.component(channel));
+  }
+
+  /**
+   * Returns the transform adding an increment to every channel, as brighten does.
+   *
+   * @param inc The increment.
+   * @return The transform of brighten.
+   */
+  public static AffineColorTransform offset(int inc) {
+    return new AffineColorTransform(new double[]{
+        1, 0, 0, inc,
+        0, 1, 0, inc,
+        0, 0, 1, inc}, ToneLut.offsets(inc, inc, inc).rowOperator());
+  }
+
+  private static AffineColorTransform grey(double red, double green, double blue,
+                                           RowOperator kernel) {
+    return new AffineColorTransform(new double[]{
+        red, green, blue, 0,
+        red, green, blue, 0,
+        red, green, blue, 0}, kernel);
+  }
+
+  /**
+   * Returns the transform that applies this transform and then the next one, as one matrix. The
+   * values in between are neither truncated nor clamped.
+   *
+   * @param next The transform applied to the results of this one.
+   * @return The collapsed transform.
+   */
+  public AffineColorTransform andThen(AffineColorTransform next) {
+    double[] product = new double[3 * COLUMNS];
+    for (int row = 0; row < 3; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        double sum = column == COLUMNS - 1 ? next.get(row, COLUMNS - 1) : 0;
+        for (int k = 0; k < 3; k++) {
+          sum += next.get(row, k) * get(k, column);
+        }
+        product[row * COLUMNS + column] = sum;
+      }
+    }
+    return new AffineColorTransform(product, null);
+  }
+
+  /**
+   * Returns an entry of the matrix.
+   *
+   * @param row    The channel of the result, 0-2.
+   * @param column The channel weighted, 0-2, or 3 for the offset.
+   * @return The entry.
+   */
+  public double get(int row, int column) {
+    return matrix[row * COLUMNS + column];
+  }
+
+  /**
+   * Returns whether the three channels of the result are always equal.
+   *
+   * @return true if the result is greyscale.
+   */
+  public boolean isGrey() {
+    for (int column = 0; column < COLUMNS; column++) {
+      if (get(0, column) != get(1, column) || get(0, column) != get(2, column)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the tone table of the transform if every channel of the result depends on the same
+   * channel of the pixel alone, as for brighten, and null otherwise.
+   *
+   * @return The tone table, or null.
+   */
+  public ToneLut toToneLut() {
+    for (int row = 0; row < 3; row++) {
+      for (int column = 0; column < 3; column++) {
+        if (row != column && get(row, column) != 0) {
+          return null;
+        }
+      }
+    }
+    return ToneLut.of(level -> channel(0, level, 0, 0), level -> channel(1, 0, level, 0),
+            level -> channel(2, 0, 0, level));
+  }
+
+  /**
+   * Returns the kernel replacing each packed pixel of a span by its transformed pixel. A
+   * transform of a single operation uses the kernel of the operation; any other transform
+   * truncates and clamps its three sums.
+   *
+   * @return The row operator of the transform.
+   */
+  public RowOperator rowOperator() {
+    if (kernel != null) {
+      return kernel;
+    }
+    return (pixels, offset, length) -> {
+      for (int i = offset; i < offset + length; i++) {
+        int rgb = pixels[i];
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        pixels[i] = (Pixel.clamp(channel(0, red, green, blue)) << 16)
+                | (Pixel.clamp(channel(1, red, green, blue)) << 8)
+                | Pixel.clamp(channel(2, red, green, blue));
+      }
+    };
+  }
+
+  private int channel(int row, int red, int green, int blue) {
+    int base = row * COLUMNS;
+    return (int) (matrix[base] * red + matrix[base + 1] * green + matrix[base + 2] * blue
+            + matrix[base + 3]);
+  }
+
+  /**
+   * Returns the image with the transform applied to every pixel, in one pass over its rows,
+   * lazily if the result is large.
+   *
+   * @param image The 8-bit image to transform.
+   * @return The transformed image.
+   * @throws IllegalArgumentException If the image is a 16-bit image.
+   */
+  public Image apply(Image image) {
+    if (image.isHighBitDepth()) {
+      throw new IllegalArgumentException("A color transform only maps 8-bit images.");
+    }
+    return ImageStorage.mapRows(image, rowOperator());
+  }
+}
@@ -0,0 +1,144 @@
+package model.database;
+
+import java.util.Random;
+
+/**
+ * ApproximateHistogram is a histogram counted on a stratified sample of the pixels of an image,
+ * for previews that need the shape and the peaks of a histogram but not its exact counts. The
+ * image is divided into a grid of cells and one pixel at a random position is counted in every
+ * cell, so the cost depends on the number of samples and not on the size of the image, and every
+ * part of the image is represented. The positions are drawn from a fixed seed, so the same image
+ * always gives the same histogram.
+ *
+ * <p>Each peak comes with a confidence bound: the range of levels whose sampled count is too close
+ * to that of the peak, at CONFIDENCE_Z standard errors, to rule out that the level is the true
+ * peak. An image with no more pixels than samples is counted exactly, and its bounds are the peaks
+ * themselves.
+ */
+public final class ApproximateHistogram {
+
+  /**
+   * The default number of pixels sampled.
+   */
+  public static final int DEFAULT_SAMPLES = 1 << 16;
+
+  /**
+   * The default width, in levels, of the peak bounds up to which a sampled histogram is used.
+   */
+  public static final int DEFAULT_TOLERANCE = 4;
+
+  /**
+   * The number of standard errors of the confidence bounds, for a confidence of 99%.
+   */
+  public static final double CONFIDENCE_Z = 2.576;
+
+  private static final long SEED = 0x5EEDL;
+
+  private final Histogram histogram;
+  private final boolean exact;
+
+  private ApproximateHistogram(Histogram histogram, boolean exact) {
+    this.histogram = histogram;
+    this.exact = exact;
+  }
+
+  /**
+   * Counts a stratified sample of the pixels of an image, or every pixel if the image has no more
+   * pixels than the number of samples.
+   *
+   * @param image   The image to count.
+   * @param samples The number of pixels to sample.
+   * @return The approximate histogram.
+   * @throws IllegalArgumentException If the number of samples is not positive.
+   */
+  public static ApproximateHistogram sample(Image image, int samples) {
+    if (samples <= 0) {
+      throw new IllegalArgumentException("The number of samples must be positive.");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if ((long) width * height <= samples) {
+      return new ApproximateHistogram(Histogram.of(image), true);
+    }
+    // A grid of cells with about the same aspect ratio as the image, one sample per cell
+    double side = Math.sqrt((double) width * height / samples);
+    int across = Math.max(1, Math.min(width, (int) (width / side)));
+    int down = Math.max(1, Math.min(height, samples / across));
+    int[][] counts = new int[3][Histogram.LEVELS];
+    Random random = new Random(SEED);
+    for (int j = 0; j < down; j++) {
+      int top = (int) ((long) j * height / down);
+      int rows = (int) ((long) (j + 1) * height / down) - top;
+      for (int i = 0; i < across; i++) {
+        int left = (int) ((long) i * width / across);
+        int columns = (int) ((long) (i + 1) * width / across) - left;
+        int rgb = image.getRGB(left + random.nextInt(columns), top + random.nextInt(rows));
+        counts[0][(rgb >> 16) & 0xFF]++;
+        counts[1][(rgb >> 8) & 0xFF]++;
+        counts[2][rgb & 0xFF]++;
+      }
+    }
+    return new ApproximateHistogram(new Histogram(counts, (long) across * down), false);
+  }
+
+  /**
+   * Returns the histogram of the sampled pixels. Its counts are those of the sample, so its
+   * proportions, not its counts, estimate those of the image.
+   *
+   * @return The histogram of the sample.
+   */
+  public Histogram getHistogram() {
+    return histogram;
+  }
+
+  /**
+   * Returns whether every pixel of the image was counted.
+   *
+   * @return true if the histogram is exact.
+   */
+  public boolean isExact() {
+    return exact;
+  }
+
+  /**
+   * Returns the number of pixels counted.
+   *
+   * @return The number of samples.
+   */
+  public long getSampleCount() {
+    return histogram.getPixelCount();
+  }
+
+  /**
+   * Returns the confidence bound of the peak of a channel from one level to another: the lowest
+   * and the highest level that may be the true peak. A level may be the peak when the sampled
+   * count of the peak exceeds its count by no more than CONFIDENCE_Z standard errors of the
+   * difference of the two counts.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @param from    The lowest level searched.
+   * @param to      The highest level searched.
+   * @return The bound as {lowest, highest}.
+   */
+  public int[] getPeakBound(int channel, int from, int to) {
+    int peak = histogram.getPeak(channel, from, to);
+    if (exact) {
+      return new int[]{peak, peak};
+    }
+    double samples = histogram.getPixelCount();
+    int peakCount = histogram.getCount(channel, peak);
+    int lowest = peak;
+    int highest = peak;
+    for (int level = from; level <= to; level++) {
+      int count = histogram.getCount(channel, level);
+      double difference = peakCount - count;
+      // The variance of the difference of two multinomial counts
+      double variance = peakCount + count - difference * difference / samples;
+      if (difference <= CONFIDENCE_Z * Math.sqrt(Math.max(variance, 0))) {
+        lowest = Math.min(lowest, level);
+        highest = Math.max(highest, level);
+      }
+    }
+    return new int[]{lowest, highest};
+  }
+}
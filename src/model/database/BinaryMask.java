@@ -0,0 +1,226 @@
+package model.database;
+
+import java.util.Arrays;
+
+/**
+ * BinaryMask is the compact form of an image used as a mask. A mask pixel selects the processed
+ * image when one of its channels is zero, and keeps the original image otherwise. The mask keeps
+ * one bit per pixel, in rows of 64-bit words, and the runs of selected pixels of every row, so an
+ * operation copies a masked row as a few spans instead of testing every pixel. A mask is built
+ * once from its image and does not change.
+ */
+public final class BinaryMask {
+
+  private final int width;
+  private final int height;
+  private final int wordsPerRow;
+  private final long[] bits;
+  // The runs of row y are the start and end pairs from runs[rowRuns[y]] to runs[rowRuns[y + 1]]
+  private final int[] rowRuns;
+  private final int[] runs;
+
+  private BinaryMask(int width, int height, long[] bits, int[] rowRuns, int[] runs) {
+    this.width = width;
+    this.height = height;
+    this.wordsPerRow = (width + 63) >>> 6;
+    this.bits = bits;
+    this.rowRuns = rowRuns;
+    this.runs = runs;
+  }
+
+  /**
+   * A run of pixels of a row that either all select the processed image or all keep the original.
+   */
+  @FunctionalInterface
+  public interface Run {
+
+    /**
+     * Processes the run of pixels from start inclusive to end exclusive.
+     *
+     * @param start    The x-coordinate of the first pixel of the run.
+     * @param end      The x-coordinate after the last pixel of the run.
+     * @param selected Whether the pixels select the processed image.
+     */
+    void accept(int start, int end, boolean selected);
+  }
+
+  /**
+   * Builds the mask of an image, reading each of its rows once.
+   *
+   * @param image The image used as the mask.
+   * @return The mask.
+   */
+  public static BinaryMask of(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int wordsPerRow = (width + 63) >>> 6;
+    long[] bits = new long[wordsPerRow * height];
+    int[] rowRuns = new int[height + 1];
+    int[] runs = new int[16];
+    int count = 0;
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      image.getRowSpan(0, y, width, row, 0);
+      int x = 0;
+      while (x < width) {
+        while (x < width && !selects(row[x])) {
+          x++;
+        }
+        if (x == width) {
+          break;
+        }
+        int start = x;
+        while (x < width && selects(row[x])) {
+          bits[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+          x++;
+        }
+        if (count + 2 > runs.length) {
+          runs = Arrays.copyOf(runs, 2 * runs.length);
+        }
+        runs[count++] = start;
+        runs[count++] = x;
+      }
+      rowRuns[y + 1] = count;
+    }
+    return new BinaryMask(width, height, bits, rowRuns, Arrays.copyOf(runs, count));
+  }
+
+  /**
+   * Returns whether a packed mask pixel selects the processed image, which is the case when any of
+   * its RGB values is zero.
+   *
+   * @param rgb The packed 0xRRGGBB mask pixel.
+   * @return true if the pixel selects the processed image.
+   */
+  public static boolean selects(int rgb) {
+    return Pixel.red(rgb) == 0 || Pixel.green(rgb) == 0 || Pixel.blue(rgb) == 0;
+  }
+
+  /**
+   * Returns the width of the mask.
+   *
+   * @return The width in pixels.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the mask.
+   *
+   * @return The height in pixels.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns whether a pixel selects the processed image.
+   *
+   * @param x The x-coordinate of the pixel.
+   * @param y The y-coordinate of the pixel.
+   * @return true if the pixel selects the processed image.
+   * @throws IndexOutOfBoundsException If the pixel lies outside the mask.
+   */
+  public boolean isSelected(int x, int y) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      throw new IndexOutOfBoundsException("Pixel coordinates out of bounds.");
+    }
+    return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+  }
+
+  /**
+   * Returns the number of pixels that select the processed image.
+   *
+   * @return The number of selected pixels.
+   */
+  public long getSelectedCount() {
+    long selected = 0;
+    for (long word : bits) {
+      selected += Long.bitCount(word);
+    }
+    return selected;
+  }
+
+  /**
+   * Returns the number of bytes the bits and the runs of the mask take.
+   *
+   * @return The size of the mask in bytes.
+   */
+  public long getByteCount() {
+    return 8L * bits.length + 4L * rowRuns.length + 4L * runs.length;
+  }
+
+  /**
+   * Calls the run for each run of a span of a row, from left to right. The runs cover the span
+   * and alternate between pixels that keep the original image and pixels that select the
+   * processed image.
+   *
+   * @param x      The x-coordinate of the first pixel of the span.
+   * @param y      The y-coordinate of the row.
+   * @param length The number of pixels in the span.
+   * @param run    The run to call.
+   * @throws IndexOutOfBoundsException If the span does not lie inside the mask.
+   */
+  public void forEachRun(int x, int y, int length, Run run) {
+    if (x < 0 || length < 0 || x + length > width || y < 0 || y >= height) {
+      throw new IndexOutOfBoundsException("Pixel coordinates out of bounds.");
+    }
+    int end = x + length;
+    int position = x;
+    // The runs of a row are sorted, so the first run reaching into the span is found by bisection
+    int low = rowRuns[y] / 2;
+    int high = rowRuns[y + 1] / 2;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (runs[2 * middle + 1] <= x) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    for (int i = 2 * low; i < rowRuns[y + 1] && runs[i] < end; i += 2) {
+      int start = Math.max(runs[i], x);
+      if (start > position) {
+        run.accept(position, start, false);
+      }
+      position = Math.min(runs[i + 1], end);
+      run.accept(start, position, true);
+    }
+    if (position < end) {
+      run.accept(position, end, false);
+    }
+  }
+
+  /**
+   * Returns the smallest rectangle holding every selected pixel, widened on each side by an apron
+   * of pixels and limited to the mask. A filter that reads at most the apron around a pixel gives
+   * every pixel of the rectangle outside the apron its exact value when it is applied to the
+   * rectangle alone.
+   *
+   * @param apron The number of pixels around a pixel that the filter reads.
+   * @return The rectangle as {x, y, width, height}, or null if no pixel is selected.
+   */
+  public int[] getBounds(int apron) {
+    int left = width;
+    int right = -1;
+    int top = -1;
+    int bottom = -1;
+    for (int y = 0; y < height; y++) {
+      if (rowRuns[y] == rowRuns[y + 1]) {
+        continue;
+      }
+      left = Math.min(left, runs[rowRuns[y]]);
+      right = Math.max(right, runs[rowRuns[y + 1] - 1] - 1);
+      top = top < 0 ? y : top;
+      bottom = y;
+    }
+    if (top < 0) {
+      return null;
+    }
+    int x = Math.max(0, left - apron);
+    int y = Math.max(0, top - apron);
+    return new int[]{x, y, Math.min(width - 1, right + apron) - x + 1,
+        Math.min(height - 1, bottom + apron) - y + 1};
+  }
+}
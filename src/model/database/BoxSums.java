@@ -0,0 +1,165 @@
+package model.database;
+
+import java.util.Arrays;
+
+/**
+ * BoxSums filters images with combinations of box sums: for every sample, the sums of the samples
+ * of the same channel over square boxes of given radii around the pixel, pixels outside the image
+ * counting as 0. The boxes are kept as running sums, a horizontal sum along each row and a vertical
+ * sum of those over the rows, so a box sum costs a few additions per sample whatever its radius. A
+ * combiner turns the samples of a row and their box sums into the row of the result. The rows are
+ * computed in parallel bands.
+ */
+public final class BoxSums {
+
+  /**
+   * The largest radius of a box, for which the sum of a box of 16-bit samples fits in an int.
+   */
+  public static final int MAX_RADIUS = 64;
+
+  private BoxSums() {
+  }
+
+  /**
+   * Computes a row of the result from a row of the image and its box sums.
+   */
+  @FunctionalInterface
+  public interface Combiner {
+
+    /**
+     * Computes the samples of row y of the result. The samples are laid out stride per pixel:
+     * one for a greyscale image, red, green and blue otherwise.
+     *
+     * @param y       The row.
+     * @param samples The samples of row y of the image, 16-bit for a 16-bit image.
+     * @param sums    For each radius, the sums over the box around each sample.
+     * @param out     The samples of the result, which must be 0-255 unless the image is 16-bit.
+     */
+    void combine(int y, int[] samples, int[][] sums, int[] out);
+  }
+
+  /**
+   * Returns the result of combining the samples of the image with their box sums. The result is
+   * computed straight away, into an image of the same kind as the image.
+   *
+   * @param image    The image to filter.
+   * @param radii    The radii of the boxes, 1 to MAX_RADIUS.
+   * @param combiner The combiner computing the result rows.
+   * @return The filtered image.
+   * @throws IllegalArgumentException If a radius is out of range.
+   */
+  public static Image apply(Image image, int[] radii, Combiner combiner) {
+    checkRadii(radii);
+    Image result = Convolution.createResult(image);
+    RowBands.forEachBand(image.getWidth(), image.getHeight(),
+            (fromY, toY) -> combineRows(fromY, toY, image, result, radii, combiner));
+    return result;
+  }
+
+  /**
+   * Combines the samples of a packed RGB image with their box sums in place. Only the rows the
+   * boxes still reach are kept, so no second image is allocated.
+   *
+   * @param image    The image to filter.
+   * @param radii    The radii of the boxes, 1 to MAX_RADIUS.
+   * @param combiner The combiner computing the result rows.
+   * @throws IllegalArgumentException If a radius is out of range, or if the image cannot be edited
+   *                                  in place.
+   */
+  public static void applyInPlace(Image image, int[] radii, Combiner combiner) {
+    checkRadii(radii);
+    ImageStorage.requireEditableInPlace(image);
+    // Rows are written right after they are computed, so they must be computed in order
+    combineRows(0, image.getHeight(), image, image, radii, combiner);
+  }
+
+  private static void checkRadii(int[] radii) {
+    for (int radius : radii) {
+      if (radius < 1 || radius > MAX_RADIUS) {
+        throw new IllegalArgumentException("Box radius must be between 1 and " + MAX_RADIUS
+                + ".");
+      }
+    }
+  }
+
+  /**
+   * Computes the rows from fromY to toY of the result. Every source row is read once, when the
+   * largest box first reaches it, and its horizontal sums are kept in a ring until the last box
+   * has left it. Source rows are read before the result row with the same index is written, so
+   * the result may be the image that is read.
+   */
+  private static void combineRows(int fromY, int toY, Image image, Image result, int[] radii,
+                                  Combiner combiner) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int stride = Convolution.strideOf(image);
+    int length = stride * width;
+    int reach = 0;
+    for (int radius : radii) {
+      reach = Math.max(reach, radius);
+    }
+    // One more row than the largest box, so a row is only replaced after every box has left it
+    int ringSize = 2 * reach + 2;
+    int[][] rows = new int[ringSize][length];
+    int[][][] rowSums = new int[radii.length][ringSize][length];
+    int[][] sums = new int[radii.length][length];
+    int[] out = new int[length];
+    int loaded = Math.max(0, fromY - reach) - 1;
+
+    for (int y = fromY; y < toY; y++) {
+      for (int row = loaded + 1; row <= Math.min(y + reach, height - 1); row++) {
+        Convolution.readSamples(image, 0, row, width, rows[row % ringSize], 0);
+        for (int k = 0; k < radii.length; k++) {
+          sumRow(rows[row % ringSize], stride, width, radii[k], rowSums[k][row % ringSize]);
+        }
+        loaded = row;
+      }
+      for (int k = 0; k < radii.length; k++) {
+        int radius = radii[k];
+        int[] sum = sums[k];
+        if (y == fromY) {
+          Arrays.fill(sum, 0);
+          for (int row = Math.max(0, y - radius); row <= Math.min(y + radius, height - 1); row++) {
+            add(sum, rowSums[k][row % ringSize], 1);
+          }
+          continue;
+        }
+        if (y + radius < height) {
+          add(sum, rowSums[k][(y + radius) % ringSize], 1);
+        }
+        if (y - radius - 1 >= 0) {
+          add(sum, rowSums[k][(y - radius - 1) % ringSize], -1);
+        }
+      }
+      combiner.combine(y, rows[y % ringSize], sums, out);
+      Convolution.writeSamples(result, 0, y, width, out);
+    }
+  }
+
+  /**
+   * Computes the sums over a horizontal window of the given radius around each sample of a row.
+   */
+  private static void sumRow(int[] samples, int stride, int width, int radius, int[] sums) {
+    for (int c = 0; c < stride; c++) {
+      int sum = 0;
+      for (int x = 0; x < radius && x < width; x++) {
+        sum += samples[x * stride + c];
+      }
+      for (int x = 0; x < width; x++) {
+        if (x + radius < width) {
+          sum += samples[(x + radius) * stride + c];
+        }
+        sums[x * stride + c] = sum;
+        if (x - radius >= 0) {
+          sum -= samples[(x - radius) * stride + c];
+        }
+      }
+    }
+  }
+
+  private static void add(int[] sum, int[] row, int sign) {
+    for (int i = 0; i < sum.length; i++) {
+      sum[i] += sign * row[i];
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package model.database;
+
+/**
+ * ChannelView is a read-only greyscale image over a single channel plane, which is how the red,
+ * green and blue component images look. The plane is shared with the image it was taken from, so
+ * creating a view is O(1).
+ */
+public class ChannelView extends GrayImage {
+
+  /**
+   * Constructs a ChannelView around an existing plane. The plane is shared, not copied.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param plane  The channel values, width * height values in row-major order.
+   * @throws IllegalArgumentException If the plane does not hold width * height values.
+   */
+  public ChannelView(int width, int height, byte[] plane) {
+    super(width, height, plane);
+  }
+
+  /**
+   * Returns a view of one channel of the given image. Planar images and channel views are viewed
+   * without copying; any other image has the channel extracted into a new plane once.
+   *
+   * @param image   The image to read.
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @return A view of the channel.
+   */
+  public static ChannelView of(Image image, int channel) {
+    if (image instanceof ChannelView) {
+      return (ChannelView) image;
+    }
+    return new ChannelView(image.getWidth(), image.getHeight(),
+            PlanarImage.planeOf(image, channel));
+  }
+
+  /**
+   * Channel views are read-only because their plane is shared.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void setValue(int x, int y, int value) {
+    throw new UnsupportedOperationException("Channel views are read-only.");
+  }
+
+  /**
+   * Channel views are read-only because their plane is shared.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    throw new UnsupportedOperationException("Channel views are read-only.");
+  }
+
+  /**
+   * Channel views are read-only because their plane is shared.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    throw new UnsupportedOperationException("Channel views are read-only.");
+  }
+}
@@ -0,0 +1,641 @@
+package model.database;
+
+import java.util.Arrays;
+
+/**
+ * Convolution filters images with a square kernel of odd size, treating the pixels outside the
+ * image as black. The kernel is flattened into a list of taps once, and the interior of a row,
+ * where every tap lies inside the image, is filtered one tap at a time over the whole span without
+ * any bounds checks; only the pixels within the kernel radius of an edge take the slower border
+ * path. The rows of the result are computed in parallel bands, each band reading every source row
+ * it needs only once, or tile by tile when the result is computed lazily.
+ *
+ * <p>A kernel whose weights are all multiples of a power of two, like 1/16 or 1/8, is evaluated in
+ * exact integer arithmetic and the sums are shifted back once at the end. If such a kernel is also
+ * the product of a column and a row, like the 3x3 binomial blur, it is applied as two 1-D integer
+ * passes, a horizontal pass on every source row and a vertical pass over the filtered rows, which
+ * costs 2n instead of n * n operations per sample. Any other kernel is evaluated in floating point,
+ * adding the taps of a pixel in a fixed order. Every path gives the same result as the direct
+ * floating point sum.
+ */
+public final class Convolution {
+
+  /**
+   * The number of box filter passes of a blur with a radius, which together approximate a
+   * Gaussian blur.
+   */
+  public static final int BOX_PASSES = 3;
+
+  private static final int MAX_SHIFT = 16;
+
+  // Sums of 16-bit samples must stay clear of int overflow, with room for rounding
+  private static final long MAX_SUM = Integer.MAX_VALUE / 2;
+
+  /**
+   * The largest radius of a box blur, for which the sum of a box of 16-bit samples fits in an int.
+   */
+  public static final int MAX_BOX_RADIUS = 16383;
+
+  private static final int STRIP_WIDTH = 64;
+
+  private final int radius;
+  private final Taps taps;
+  private final Taps horizontal;
+  private final Taps vertical;
+  private final int shift;
+
+  /**
+   * The taps of a kernel: for each one the column offset, the row in the window of rows the kernel
+   * reaches, and the weight, also as an integer if the kernel is evaluated in fixed point.
+   */
+  private static final class Taps {
+
+    private final int radiusX;
+    private final int[] x;
+    private final int[] row;
+    private final double[] weights;
+    private final int[] fixed;
+
+    private Taps(int radiusX, int[] x, int[] row, double[] weights, int[] fixed) {
+      this.radiusX = radiusX;
+      this.x = x;
+      this.row = row;
+      this.weights = weights;
+      this.fixed = fixed;
+    }
+  }
+
+  /**
+   * Constructs a convolution with the given kernel, indexed kernel[row][column].
+   *
+   * @param kernel The square kernel of odd size.
+   * @throws IllegalArgumentException If the kernel is not square or its size is not odd.
+   */
+  public Convolution(double[][] kernel) {
+    int size = kernel.length;
+    if (size % 2 == 0) {
+      throw new IllegalArgumentException("Kernel size must be odd.");
+    }
+    for (double[] kernelRow : kernel) {
+      if (kernelRow.length != size) {
+        throw new IllegalArgumentException("Kernel must be square.");
+      }
+    }
+    this.radius = size / 2;
+    int fixedShift = fixedPointShift(kernel);
+
+    double[] weights = new double[size * size];
+    int[] fixed = fixedShift < 0 ? null : new int[size * size];
+    int[] tapX = new int[size * size];
+    int[] tapRow = new int[size * size];
+    long total = 0;
+    // Taps are ordered column by column, which is the order the sums have always been added in
+    int tap = 0;
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        weights[tap] = kernel[j][i];
+        tapX[tap] = i - radius;
+        tapRow[tap] = j;
+        if (fixed != null) {
+          fixed[tap] = (int) Math.scalb(kernel[j][i], fixedShift);
+          total += Math.abs(fixed[tap]);
+        }
+        tap++;
+      }
+    }
+    if (fixed != null && total * Image16.MAX_SAMPLE > MAX_SUM) {
+      fixed = null;
+      fixedShift = -1;
+    }
+    this.shift = fixedShift;
+    this.taps = new Taps(radius, tapX, tapRow, weights, fixed);
+
+    int[][] factors = fixed == null ? null : factor(fixed, size);
+    if (factors == null) {
+      this.horizontal = null;
+      this.vertical = null;
+    } else {
+      int[] offsets = new int[size];
+      int[] center = new int[size];
+      int[] rows = new int[size];
+      for (int i = 0; i < size; i++) {
+        offsets[i] = i - radius;
+        rows[i] = i;
+      }
+      this.horizontal = new Taps(radius, offsets, new int[size], null, factors[1]);
+      this.vertical = new Taps(0, center, rows, null, factors[0]);
+    }
+  }
+
+  /**
+   * Returns the number of pixels the kernel reaches on each side of a pixel.
+   *
+   * @return The kernel radius.
+   */
+  public int getRadius() {
+    return radius;
+  }
+
+  /**
+   * Returns whether the kernel is evaluated in exact integer arithmetic, because all its weights
+   * are multiples of a power of two.
+   *
+   * @return true if the kernel is evaluated in fixed point.
+   */
+  public boolean isFixedPoint() {
+    return shift >= 0;
+  }
+
+  /**
+   * Returns whether the kernel is applied as a horizontal and a vertical 1-D pass.
+   *
+   * @return true if the kernel is separable.
+   */
+  public boolean isSeparable() {
+    return horizontal != null;
+  }
+
+  /**
+   * Filters the image and returns the result. A greyscale image is filtered on its single plane
+   * and stays greyscale, and the samples of a 16-bit image are only rounded once, into the 16-bit
+   * result.
+   *
+   * @param image The image to filter.
+   * @return The filtered image.
+   */
+  public Image apply(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (!image.isHighBitDepth() && !(image instanceof GrayImage)
+            && ImageStorage.rendersLazily(width, height)) {
+      return ImageStorage.render(width, height, (x0, y, length, dst, offset) -> {
+        // Read the rows the kernel reaches once, as spans covering the pixels around this span
+        int left = Math.max(0, x0 - radius);
+        int span = Math.min(width, x0 + length + radius) - left;
+        int[][] window = new int[2 * radius + 1][];
+        for (int j = 0; j < window.length; j++) {
+          int sourceY = y + j - radius;
+          if (sourceY >= 0 && sourceY < height) {
+            int[] samples = new int[3 * span];
+            readSamples(image, left, sourceY, span, samples, 0);
+            if (horizontal == null) {
+              window[j] = samples;
+            } else {
+              window[j] = new int[3 * length];
+              sumFixed(horizontal, new int[][]{samples}, 3, left, x0, length, width, window[j]);
+            }
+          }
+        }
+        int[] out = new int[3 * length];
+        filterRow(window, 3, horizontal == null ? left : x0, x0, length, width, false, out,
+                shift < 0 ? new double[3 * length] : null);
+        for (int i = 0; i < length; i++) {
+          dst[offset + i] = (out[3 * i] << 16) | (out[3 * i + 1] << 8) | out[3 * i + 2];
+        }
+      }, image);
+    }
+    Image result = createResult(image);
+    RowBands.forEachBand(width, height, (fromY, toY) -> filterRows(fromY, toY, image, result));
+    return result;
+  }
+
+  /**
+   * Filters a packed RGB image in place. The original rows the kernel still needs are kept in a
+   * ring of kernel-height row buffers, so no second image is allocated. The result is the same as
+   * that of apply.
+   *
+   * @param image The image to filter.
+   * @throws IllegalArgumentException If the image cannot be edited in place.
+   */
+  public void applyInPlace(Image image) {
+    ImageStorage.requireEditableInPlace(image);
+    // Rows are written right after they are computed, so they must be computed in order
+    filterRows(0, image.getHeight(), image, image);
+  }
+
+  /**
+   * Blurs the image with BOX_PASSES passes of a box filter of the given radius, in each direction.
+   * The box sums are kept as running sums, so every pass costs the same few operations per sample
+   * whatever the radius. Pixels outside the image count as black, as for the other filters, and
+   * each pass rounds to the nearest sample. The result is always computed straight away.
+   *
+   * @param image  The image to blur.
+   * @param radius The number of pixels the box reaches on each side of a pixel.
+   * @return The blurred image.
+   * @throws IllegalArgumentException If the radius is less than 1 or more than MAX_BOX_RADIUS.
+   */
+  public static Image boxBlur(Image image, int radius) {
+    if (radius < 1 || radius > MAX_BOX_RADIUS) {
+      throw new IllegalArgumentException("Blur radius must be between 1 and " + MAX_BOX_RADIUS
+              + ".");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int stride = strideOf(image);
+    Image result = createResult(image);
+    int size = 2 * radius + 1;
+    // Dividing by the box size is a multiplication and a shift, exact for every sum of a box
+    int divisionShift = 31 + 32 - Integer.numberOfLeadingZeros(size - 1);
+    long multiplier = (1L << divisionShift) / size + 1;
+
+    RowBands.forEachBand(width, height, (fromY, toY) -> {
+      int[] samples = new int[stride * width];
+      int[] blurred = new int[stride * width];
+      for (int y = fromY; y < toY; y++) {
+        readSamples(image, 0, y, width, samples, 0);
+        for (int pass = 0; pass < BOX_PASSES; pass++) {
+          int[] source = pass % 2 == 0 ? samples : blurred;
+          int[] target = pass % 2 == 0 ? blurred : samples;
+          for (int c = 0; c < stride; c++) {
+            int sum = 0;
+            for (int x = 0; x < radius && x < width; x++) {
+              sum += source[x * stride + c];
+            }
+            for (int x = 0; x < width; x++) {
+              if (x + radius < width) {
+                sum += source[(x + radius) * stride + c];
+              }
+              target[x * stride + c] = (int) (((sum + radius) * multiplier) >>> divisionShift);
+              if (x - radius >= 0) {
+                sum -= source[(x - radius) * stride + c];
+              }
+            }
+          }
+        }
+        writeSamples(result, 0, y, width, BOX_PASSES % 2 == 0 ? samples : blurred);
+      }
+    });
+
+    // Columns are blurred in strips, read into a buffer holding the whole height of the strip,
+    // and the running sums of all columns of a strip are updated a row at a time
+    int strips = (width + STRIP_WIDTH - 1) / STRIP_WIDTH;
+    RowBands.forEachBand(STRIP_WIDTH * height, strips, (fromStrip, toStrip) -> {
+      int[] strip = new int[stride * STRIP_WIDTH * height];
+      int[] blurred = new int[strip.length];
+      int[] sums = new int[stride * STRIP_WIDTH];
+      for (int s = fromStrip; s < toStrip; s++) {
+        int x0 = s * STRIP_WIDTH;
+        int length = Math.min(STRIP_WIDTH, width - x0);
+        int step = stride * length;
+        for (int y = 0; y < height; y++) {
+          readSamples(result, x0, y, length, strip, y * step);
+        }
+        for (int pass = 0; pass < BOX_PASSES; pass++) {
+          int[] source = pass % 2 == 0 ? strip : blurred;
+          int[] target = pass % 2 == 0 ? blurred : strip;
+          Arrays.fill(sums, 0);
+          for (int y = 0; y < radius && y < height; y++) {
+            for (int i = 0; i < step; i++) {
+              sums[i] += source[y * step + i];
+            }
+          }
+          for (int y = 0; y < height; y++) {
+            if (y + radius < height) {
+              for (int i = 0, index = (y + radius) * step; i < step; i++, index++) {
+                sums[i] += source[index];
+              }
+            }
+            for (int i = 0, index = y * step; i < step; i++, index++) {
+              target[index] = (int) (((sums[i] + radius) * multiplier) >>> divisionShift);
+            }
+            if (y - radius >= 0) {
+              for (int i = 0, index = (y - radius) * step; i < step; i++, index++) {
+                sums[i] -= source[index];
+              }
+            }
+          }
+        }
+        int[] blurredStrip = BOX_PASSES % 2 == 0 ? strip : blurred;
+        int[] row = new int[step];
+        for (int y = 0; y < height; y++) {
+          System.arraycopy(blurredStrip, y * step, row, 0, step);
+          writeSamples(result, x0, y, length, row);
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Filters the rows from fromY to toY of an image into the same rows of the result. Each source
+   * row is read once into a ring of kernel-height row buffers, after the horizontal pass if the
+   * kernel is separable, and a result row is written as soon as it is computed. Source rows are
+   * read in order, each before the result row with the same index is written, so the result may be
+   * the image that is read.
+   */
+  private void filterRows(int fromY, int toY, Image image, Image result) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int stride = strideOf(image);
+    boolean deep = image.isHighBitDepth();
+    int size = 2 * radius + 1;
+    int[][] ring = new int[size][stride * width];
+    int[][] window = new int[size][];
+    int[][] source = new int[1][horizontal == null ? 0 : stride * width];
+    int[] out = new int[stride * width];
+    double[] sums = shift < 0 ? new double[stride * width] : null;
+    int loaded = fromY - radius - 1;
+
+    for (int y = fromY; y < toY; y++) {
+      for (int j = 0; j < size; j++) {
+        int sourceY = y + j - radius;
+        if (sourceY < 0 || sourceY >= height) {
+          window[j] = null;
+          continue;
+        }
+        window[j] = ring[sourceY % size];
+        if (sourceY > loaded) {
+          if (horizontal == null) {
+            readSamples(image, 0, sourceY, width, window[j], 0);
+          } else {
+            readSamples(image, 0, sourceY, width, source[0], 0);
+            sumFixed(horizontal, source, stride, 0, 0, width, width, window[j]);
+          }
+          loaded = sourceY;
+        }
+      }
+      filterRow(window, stride, 0, 0, width, width, deep, out, sums);
+      writeSamples(result, 0, y, width, out);
+    }
+  }
+
+  /**
+   * Computes the samples of a span of a result row from the rows the kernel reaches, or from
+   * those rows after the horizontal pass if the kernel is separable. The rows hold stride samples
+   * per pixel, starting at column left, and are null outside the image. The samples are stored in
+   * out, stride per pixel; sums is a buffer for floating point sums, unused in fixed point.
+   */
+  private void filterRow(int[][] window, int stride, int left, int x0, int length, int width,
+                         boolean deep, int[] out, double[] sums) {
+    int count = stride * length;
+    if (shift < 0) {
+      sumDouble(taps, window, stride, left, x0, length, width, sums);
+      for (int i = 0; i < count; i++) {
+        out[i] = deep ? Image16.clamp(sums[i]) : (int) Math.max(0, Math.min(sums[i], 255));
+      }
+      return;
+    }
+    sumFixed(vertical == null ? taps : vertical, window, stride, left, x0, length, width, out);
+    // The sums are exact, so shifting gives the same truncation and rounding as floating point
+    int half = shift == 0 ? 0 : 1 << (shift - 1);
+    for (int i = 0; i < count; i++) {
+      int sum = out[i];
+      if (deep) {
+        out[i] = sum <= 0 ? 0 : Math.min((sum + half) >> shift, Image16.MAX_SAMPLE);
+      } else {
+        out[i] = sum < 0 ? 0 : Math.min(sum >> shift, 255);
+      }
+    }
+  }
+
+  /**
+   * Computes the floating point kernel sums of a span. The interior, where every tap lies inside
+   * the image, adds one tap at a time over the whole span; every sum still adds the taps in order.
+   */
+  private static void sumDouble(Taps taps, int[][] rows, int stride, int left, int x0,
+                                int length, int width, double[] sums) {
+    int end = x0 + length;
+    int interiorStart = interiorStart(taps, rows, x0, end);
+    int interiorEnd = Math.max(interiorStart, Math.min(end, width - taps.radiusX));
+    int from = (interiorStart - x0) * stride;
+    int to = (interiorEnd - x0) * stride;
+    Arrays.fill(sums, from, to, 0);
+    for (int tap = 0; tap < taps.weights.length; tap++) {
+      int[] row = rows[taps.row[tap]];
+      int offset = (x0 - left + taps.x[tap]) * stride;
+      double weight = taps.weights[tap];
+      for (int i = from; i < to; i++) {
+        sums[i] += row[i + offset] * weight;
+      }
+    }
+
+    for (int x = x0; x < interiorStart; x++) {
+      borderDouble(taps, rows, stride, left, x, width, sums, (x - x0) * stride);
+    }
+    for (int x = interiorEnd; x < end; x++) {
+      borderDouble(taps, rows, stride, left, x, width, sums, (x - x0) * stride);
+    }
+  }
+
+  /**
+   * Computes the integer kernel sums of a span, like sumDouble with the fixed point weights.
+   */
+  private static void sumFixed(Taps taps, int[][] rows, int stride, int left, int x0, int length,
+                               int width, int[] sums) {
+    int end = x0 + length;
+    int interiorStart = interiorStart(taps, rows, x0, end);
+    int interiorEnd = Math.max(interiorStart, Math.min(end, width - taps.radiusX));
+    int from = (interiorStart - x0) * stride;
+    int to = (interiorEnd - x0) * stride;
+    Arrays.fill(sums, from, to, 0);
+    for (int tap = 0; tap < taps.fixed.length; tap++) {
+      int[] row = rows[taps.row[tap]];
+      int offset = (x0 - left + taps.x[tap]) * stride;
+      int weight = taps.fixed[tap];
+      for (int i = from; i < to; i++) {
+        sums[i] += row[i + offset] * weight;
+      }
+    }
+
+    for (int x = x0; x < interiorStart; x++) {
+      borderFixed(taps, rows, stride, left, x, width, sums, (x - x0) * stride);
+    }
+    for (int x = interiorEnd; x < end; x++) {
+      borderFixed(taps, rows, stride, left, x, width, sums, (x - x0) * stride);
+    }
+  }
+
+  /**
+   * Computes the floating point kernel sums of a pixel near an edge, skipping the taps outside the
+   * image.
+   */
+  private static void borderDouble(Taps taps, int[][] rows, int stride, int left, int x,
+                                   int width, double[] sums, int offset) {
+    for (int c = 0; c < stride; c++) {
+      double sum = 0;
+      for (int tap = 0; tap < taps.weights.length; tap++) {
+        int sourceX = x + taps.x[tap];
+        int[] row = rows[taps.row[tap]];
+        if (sourceX >= 0 && sourceX < width && row != null) {
+          sum += row[(sourceX - left) * stride + c] * taps.weights[tap];
+        }
+      }
+      sums[offset + c] = sum;
+    }
+  }
+
+  /**
+   * Computes the integer kernel sums of a pixel near an edge, skipping the taps outside the image.
+   */
+  private static void borderFixed(Taps taps, int[][] rows, int stride, int left, int x,
+                                  int width, int[] sums, int offset) {
+    for (int c = 0; c < stride; c++) {
+      int sum = 0;
+      for (int tap = 0; tap < taps.fixed.length; tap++) {
+        int sourceX = x + taps.x[tap];
+        int[] row = rows[taps.row[tap]];
+        if (sourceX >= 0 && sourceX < width && row != null) {
+          sum += row[(sourceX - left) * stride + c] * taps.fixed[tap];
+        }
+      }
+      sums[offset + c] = sum;
+    }
+  }
+
+  /**
+   * Returns the first column of the interior of a span, where every tap lies inside the image, or
+   * the end of the span if a row the taps reach lies outside the image.
+   */
+  private static int interiorStart(Taps taps, int[][] rows, int x0, int end) {
+    for (int row : taps.row) {
+      if (rows[row] == null) {
+        return end;
+      }
+    }
+    return Math.min(end, Math.max(x0, taps.radiusX));
+  }
+
+  /**
+   * Returns the smallest number of fraction bits that makes every weight of the kernel an
+   * integer, or -1 if there is none up to MAX_SHIFT.
+   */
+  private static int fixedPointShift(double[][] kernel) {
+    for (int bits = 0; bits <= MAX_SHIFT; bits++) {
+      boolean exact = true;
+      for (double[] kernelRow : kernel) {
+        for (double weight : kernelRow) {
+          double scaled = Math.scalb(weight, bits);
+          exact &= scaled == Math.rint(scaled) && Math.abs(scaled) <= MAX_SUM;
+        }
+      }
+      if (exact) {
+        return bits;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Factors integer weights, given column by column, into a column and a row of integers whose
+   * products are the weights. Returns {column, row}, or null if the kernel is not separable.
+   */
+  private static int[][] factor(int[] fixed, int size) {
+    int pivot = 0;
+    while (pivot < fixed.length && fixed[pivot] == 0) {
+      pivot++;
+    }
+    if (pivot == fixed.length) {
+      return null;
+    }
+    int pivotColumn = pivot / size;
+    int pivotRow = pivot % size;
+    // The row through the pivot, divided by its greatest common divisor
+    int divisor = 0;
+    for (int i = 0; i < size; i++) {
+      divisor = gcd(divisor, Math.abs(fixed[i * size + pivotRow]));
+    }
+    int[] row = new int[size];
+    for (int i = 0; i < size; i++) {
+      row[i] = fixed[i * size + pivotRow] / divisor;
+    }
+    int[] column = new int[size];
+    for (int j = 0; j < size; j++) {
+      int weight = fixed[pivotColumn * size + j];
+      if (weight % row[pivotColumn] != 0) {
+        return null;
+      }
+      column[j] = weight / row[pivotColumn];
+    }
+    long columnTotal = 0;
+    long rowTotal = 0;
+    for (int k = 0; k < size; k++) {
+      columnTotal += Math.abs(column[k]);
+      rowTotal += Math.abs(row[k]);
+    }
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        if ((long) column[j] * row[i] != fixed[i * size + j]) {
+          return null;
+        }
+      }
+    }
+    if (columnTotal * rowTotal * Image16.MAX_SAMPLE > MAX_SUM) {
+      return null;
+    }
+    return new int[][]{column, row};
+  }
+
+  private static int gcd(int a, int b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+  /**
+   * Returns the number of samples per pixel the filters work on: 1 for the plane of a greyscale
+   * image, and red, green and blue for any other image.
+   */
+  static int strideOf(Image image) {
+    return image instanceof GrayImage ? 1 : 3;
+  }
+
+  /**
+   * Creates a black image of the same size and kind as the image being filtered.
+   */
+  static Image createResult(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (image.isHighBitDepth()) {
+      return new Image16(width, height);
+    }
+    if (image instanceof GrayImage) {
+      return new GrayImage(width, height);
+    }
+    return ImageStorage.createLike(width, height, image);
+  }
+
+  /**
+   * Reads a span of row y as samples into the buffer, starting at the given offset: 16-bit
+   * samples of a 16-bit image, the plane of a greyscale image, or 8-bit red, green and blue samples
+   * of any other image.
+   */
+  static void readSamples(Image image, int x, int y, int length, int[] samples, int offset) {
+    if (image.isHighBitDepth()) {
+      image.getRowSamples(x, y, length, samples, offset);
+    } else if (image instanceof GrayImage) {
+      byte[] plane = ((GrayImage) image).getPlane();
+      int index = y * image.getWidth() + x;
+      for (int i = 0; i < length; i++) {
+        samples[offset + i] = plane[index + i] & 0xFF;
+      }
+    } else {
+      // The packed pixels are spread out from the last one, so no pixel is overwritten unread
+      image.getRowSpan(x, y, length, samples, offset);
+      for (int i = length - 1; i >= 0; i--) {
+        int rgb = samples[offset + i];
+        samples[offset + 3 * i] = Pixel.red(rgb);
+        samples[offset + 3 * i + 1] = Pixel.green(rgb);
+        samples[offset + 3 * i + 2] = Pixel.blue(rgb);
+      }
+    }
+  }
+
+  /**
+   * Writes samples, laid out as readSamples reads them from the start of the buffer, to a span of
+   * row y. The samples of an image that is not 16-bit must be 0-255; the buffer is overwritten.
+   */
+  static void writeSamples(Image image, int x, int y, int length, int[] samples) {
+    if (image.isHighBitDepth()) {
+      image.setRowSamples(x, y, length, samples, 0);
+    } else if (image instanceof GrayImage) {
+      byte[] plane = ((GrayImage) image).getPlane();
+      int index = y * image.getWidth() + x;
+      for (int i = 0; i < length; i++) {
+        plane[index + i] = (byte) samples[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        samples[i] = (samples[3 * i] << 16) | (samples[3 * i + 1] << 8) | samples[3 * i + 2];
+      }
+      image.setRowSpan(x, y, length, samples, 0);
+    }
+  }
+}
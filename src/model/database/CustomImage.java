@@ -8,6 +8,25 @@ import java.io.FileNotFoundException;
  */
 public class CustomImage implements ICustomImage {
 
+  private static final double[][] BLUR_KERNEL = {
+          {1.0 / 16, 1.0 / 8, 1.0 / 16},
+          {1.0 / 8, 1.0 / 4, 1.0 / 8},
+          {1.0 / 16, 1.0 / 8, 1.0 / 16}
+  };
+
+  private static final double[][] SHARPEN_KERNEL = {
+          {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
+          {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+          {-1.0 / 8, 1.0 / 4, 1, 1.0 / 4, -1.0 / 8},
+          {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+          {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
+  };
+
+  private static final Convolution BLUR = new Convolution(BLUR_KERNEL);
+
+  private static final Convolution SHARPEN = new Convolution(SHARPEN_KERNEL);
+
+  private static final int[] SHARPEN_BOXES = {1, 2};
 
   private Image image;
   private int width;
@@ -46,67 +65,77 @@ public class CustomImage implements ICustomImage {
   }
 
   /**
-   * Returns a new CustomImage containing only the blue component of the original image by setting
-   * red and green values to 0.
+   * Returns an image containing only the blue component of the original image in all three
+   * channels. The result is a read-only view over the blue plane of the image, or a 16-bit image
+   * for a 16-bit image.
    */
   public Image getBlueImage(Image image) {
-    Image newImageName = new Image(image.getWidth(), image.getHeight());
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel temp = this.getPixel(x, y);
-        newImageName.setPixel(x, y, temp.getBlue(), temp.getBlue(), temp.getBlue());
-      }
+    if (this.image.isHighBitDepth()) {
+      return reduce16(this.image, (red, green, blue) -> blue);
     }
-    return newImageName;
+    return ChannelView.of(this.image, PlanarImage.BLUE);
   }
 
 
   /**
-   * Returns a new CustomImage containing only the green component of the original image by setting
-   * red and blue values to 0.
+   * Returns an image containing only the green component of the original image in all three
+   * channels. The result is a read-only view over the green plane of the image, or a 16-bit image
+   * for a 16-bit image.
    */
   public Image getGreenImage(Image image) {
-    Image newImageName = new Image(image.getWidth(), image.getHeight());
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel temp = this.getPixel(x, y);
-        newImageName.setPixel(x, y, temp.getGreen(), temp.getGreen(), temp.getGreen());
-      }
+    if (this.image.isHighBitDepth()) {
+      return reduce16(this.image, (red, green, blue) -> green);
     }
-    return newImageName;
+    return ChannelView.of(this.image, PlanarImage.GREEN);
   }
 
   /**
-   * Returns a new CustomImage containing only the red component of the original image by setting
-   * green and blue values to 0.
+   * Returns an image containing only the red component of the original image in all three
+   * channels. The result is a read-only view over the red plane of the image, or a 16-bit image
+   * for a 16-bit image.
    */
   public Image getRedImage(Image image) {
-    Image newImageName = new Image(image.getWidth(), image.getHeight());
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel temp = this.getPixel(x, y);
-        newImageName.setPixel(x, y, temp.getRed(), temp.getRed(), temp.getRed());
-      }
+    if (this.image.isHighBitDepth()) {
+      return reduce16(this.image, (red, green, blue) -> red);
     }
-    return newImageName;
+    return ChannelView.of(this.image, PlanarImage.RED);
   }
 
 
   /**
    * Splits the original image into separate red, green, and blue images and stores them using the
-   * provided names.
+   * provided names. The three images are read-only views over the planes of the image, so an
+   * image that is already planar is split without copying any pixels. An image whose results are
+   * kept in mapped storage is split into three mapped greyscale images instead, since the planes
+   * live on the heap.
    */
   @Override
   public Image[] rgbsplit(Image image) {
-    Image redImage = this.getRedImage(image);
-    Image greenImage = this.getGreenImage(image);
-    Image blueImage = this.getBlueImage(image);
-    return new Image[]{redImage, greenImage, blueImage};
+    if (this.image.isHighBitDepth()) {
+      return new Image[]{reduce16(this.image, (red, green, blue) -> red),
+          reduce16(this.image, (red, green, blue) -> green),
+          reduce16(this.image, (red, green, blue) -> blue)};
+    }
+    if (this.image instanceof ChannelView) {
+      return new Image[]{this.image, this.image, this.image};
+    }
+    if (ImageStorage.storageLike(this.image) == ImageStorage.Mode.MAPPED) {
+      return new Image[]{ImageStorage.mapRows(this.image, ColorKernels.component(PlanarImage.RED)),
+          ImageStorage.mapRows(this.image, ColorKernels.component(PlanarImage.GREEN)),
+          ImageStorage.mapRows(this.image, ColorKernels.component(PlanarImage.BLUE))};
+    }
+    PlanarImage planarImage = PlanarImage.of(this.image);
+    return new Image[]{planarImage.channel(PlanarImage.RED),
+        planarImage.channel(PlanarImage.GREEN), planarImage.channel(PlanarImage.BLUE)};
   }
 
   /**
    * Combines the separate red, green, and blue images into a new image and stores it using the
-   * specified name. Throws FileNotFoundException if any of the images cannot be found.
+   * specified name. Throws FileNotFoundException if any of the images cannot be found. Channel
+   * views and planar images contribute their planes as they are, so combining the output of
+   * rgbsplit does not copy any pixels. If any of the images has 16 bits per channel, the result
+   * is a 16-bit image, and if createLike would keep the result in mapped storage, the channels are
+   * combined row by row into a mapped image instead of planes on the heap.
    */
   @Override
   public Image rgbcombine(Image redImageName, Image greenImageName,
@@ -129,243 +158,439 @@ public class CustomImage implements ICustomImage {
             || red_image.getWidth() != green_image.getWidth()) {
       throw new IllegalArgumentException("width does not match all rgb widths");
     }
-    Image newImage = new Image(red_image.getWidth(), red_image.getHeight());
-    for (int y = 0; y < red_image.getHeight(); y++) {
-      for (int x = 0; x < red_image.getWidth(); x++) {
-        newImage.setPixel(x, y, red_image.getPixel(x, y).getRed(),
-                green_image.getPixel(x, y).getGreen(),
-                blue_image.getPixel(x, y).getBlue());
+    if (red_image.isHighBitDepth() || green_image.isHighBitDepth()
+            || blue_image.isHighBitDepth()) {
+      int width = red_image.getWidth();
+      Image combined = new Image16(width, red_image.getHeight());
+      int[] row = new int[3 * width];
+      int[] channelRow = new int[3 * width];
+      Image[] channels = {red_image, green_image, blue_image};
+      for (int y = 0; y < red_image.getHeight(); y++) {
+        for (int c = 0; c < 3; c++) {
+          channels[c].getRowSamples(0, y, width, channelRow, 0);
+          for (int i = c; i < 3 * width; i += 3) {
+            row[i] = channelRow[i];
+          }
+        }
+        combined.setRowSamples(0, y, width, row, 0);
       }
+      return combined;
     }
-    return newImage;
+    if (ImageStorage.storageLike(red_image, green_image, blue_image)
+            == ImageStorage.Mode.MAPPED) {
+      return ImageStorage.render(red_image.getWidth(), red_image.getHeight(),
+              (x, y, length, dst, offset) -> {
+                int[] channel = new int[length];
+                red_image.getRowSpan(x, y, length, dst, offset);
+                green_image.getRowSpan(x, y, length, channel, 0);
+                for (int i = 0; i < length; i++) {
+                  dst[offset + i] = (dst[offset + i] & 0xFF0000) | (channel[i] & 0xFF00);
+                }
+                blue_image.getRowSpan(x, y, length, channel, 0);
+                for (int i = 0; i < length; i++) {
+                  dst[offset + i] |= channel[i] & 0xFF;
+                }
+              }, red_image, green_image, blue_image);
+    }
+    return new PlanarImage(red_image.getWidth(), red_image.getHeight(),
+            PlanarImage.planeOf(red_image, PlanarImage.RED),
+            PlanarImage.planeOf(green_image, PlanarImage.GREEN),
+            PlanarImage.planeOf(blue_image, PlanarImage.BLUE));
   }
 
   /**
-   * Flips the image horizontally and returns the new flipped image.
+   * Flips the image horizontally and returns the new flipped image. The result is a view that
+   * reads the pixels of the image in mirrored order instead of copying them.
    *
    * @return a new CustomImage that is horizontally flipped.
    */
   @Override
   public Image fliph(Image image) {
-    int width = image.getWidth();
-    int height = image.getHeight();
-    Image flippedImage = new Image(width, height);
-
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel temp = this.getPixel(x, y);
-
-        // Calculate the flipped x-coordinate
-        int flippedX = width - 1 - x;
-
-        // Set the pixel in the flipped position
-        flippedImage.setPixel(flippedX, y, temp.getRed(), temp.getGreen(), temp.getBlue());
-
-      }
-    }
-    return flippedImage;
+    return ImageView.flipHorizontal(this.image);
   }
 
 
   /**
-   * Flips the image vertically and returns the new flipped image.
+   * Flips the image vertically and returns the new flipped image. The result is a view that reads
+   * the rows of the image in reverse order instead of copying them.
    */
   @Override
   public Image flipv(Image image) {
-    Image flippedImage = new Image(image.getWidth(), image.getHeight());
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-        flippedImage.setPixel(x, image.getHeight() - 1 - y, temp.getRed(), temp.getGreen(),
-                temp.getBlue());
-      }
-    }
-    return flippedImage;
+    return ImageView.flipVertical(image);
   }
 
   /**
-   * Brightens the image by the specified increment and returns the brightened image.
+   * Brightens the image by the specified increment and returns the brightened image. A greyscale
+   * image stays greyscale.
    */
   @Override
   public Image brighten(int inc, Image image) {
-    Image brightenedImage = new Image(image.getWidth(), image.getHeight());
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-
-        Pixel temp = image.getPixel(x, y);
-
-        int red = clamp((temp.getRed() + inc));
-        int green = clamp((temp.getGreen() + inc));
-        int blue = clamp((temp.getBlue() + inc));
-
-        brightenedImage.setPixel(x, y, red, green, blue);
-      }
+    if (image.isHighBitDepth()) {
+      int increment = Image16.expand(inc);
+      return map16(image, (samples, index) -> {
+        samples[index] += increment;
+        samples[index + 1] += increment;
+        samples[index + 2] += increment;
+      });
     }
-    return brightenedImage;
+    return brightenLut(inc).apply(image);
   }
 
   /**
-   * Applies the specified convolution kernel to the image, filtering it and returning the resulting
-   * image.
+   * Returns the tone table adding the increment to every channel.
    */
-  private Image applyKernel(double[][] kernel, Image image) {
-    int height = image.getHeight();
-    int width = image.getWidth();
-    Image newImage = new Image(width, height);
+  @Override
+  public ToneLut brightenLut(int inc) {
+    return ToneLut.offsets(inc, inc, inc);
+  }
 
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
+  /**
+   * Returns the color transform adding the increment to every channel.
+   */
+  @Override
+  public AffineColorTransform brightenTransform(int inc) {
+    return AffineColorTransform.offset(inc);
+  }
 
-        double redSum = 0;
-        double greenSum = 0;
-        double blueSum = 0;
-        int kernelRadius = kernel.length / 2;
-
-        for (int i = -kernelRadius; i <= kernelRadius; i++) {
-          for (int j = -kernelRadius; j <= kernelRadius; j++) {
-            int kernelX = i + kernelRadius;
-            int kernelY = j + kernelRadius;
-
-            if (x + i >= 0 && x + i < width && y + j >= 0 && y + j < height) {
-              Pixel neighboringPixel = image.getPixel(x + i, y + j);
-              redSum += neighboringPixel.getRed() * kernel[kernelY][kernelX];
-              greenSum += neighboringPixel.getGreen() * kernel[kernelY][kernelX];
-              blueSum += neighboringPixel.getBlue() * kernel[kernelY][kernelX];
-            }
-          }
-        }
+  /**
+   * Returns the color transform of the sepia tone.
+   */
+  @Override
+  public AffineColorTransform sepiaTransform() {
+    return AffineColorTransform.sepia();
+  }
 
-        int newRed = (int) Math.max(0, Math.min(redSum, 255));
-        int newGreen = (int) Math.max(0, Math.min(greenSum, 255));
-        int newBlue = (int) Math.max(0, Math.min(blueSum, 255));
-        newImage.setPixel(x, y, newRed, newGreen, newBlue);
-      }
-    }
+  /**
+   * Returns the color transform writing the luma into all three channels.
+   */
+  @Override
+  public AffineColorTransform lumaTransform() {
+    return AffineColorTransform.luma();
+  }
 
-    return newImage;
+  /**
+   * Returns the color transform writing the intensity into all three channels.
+   */
+  @Override
+  public AffineColorTransform intensityTransform() {
+    return AffineColorTransform.intensity();
   }
 
+  /**
+   * Returns the color transform writing one channel into all three channels.
+   */
+  @Override
+  public AffineColorTransform componentTransform(int channel) {
+    return AffineColorTransform.component(channel);
+  }
 
   /**
    * Applies a Gaussian blur filter to the image and returns the blurred image.
    */
   public Image blur(Image image) {
-    final double[][] kernel = {
-            {1.0 / 16, 1.0 / 8, 1.0 / 16},
-            {1.0 / 8, 1.0 / 4, 1.0 / 8},
-            {1.0 / 16, 1.0 / 8, 1.0 / 16}
-    };
-    return this.applyKernel(kernel, image);
+    return BLUR.apply(image);
   }
 
   /**
-   * Applies a sharpening filter to the image and returns the sharpened image.
+   * Applies a blur of the given radius to the image and returns the blurred image. The cost per
+   * pixel does not grow with the radius.
    */
-  public Image sharpen(Image image) {
-    final double[][] kernel = {
-            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
-            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
-            {-1.0 / 8, 1.0 / 4, 1, 1.0 / 4, -1.0 / 8},
-            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
-            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
-    };
-    return this.applyKernel(kernel, image);
+  @Override
+  public Image blur(int radius, Image image) {
+    return Convolution.boxBlur(image, radius);
   }
 
   /**
-   * Applies a sepia tone effect to the image and returns the modified image.
+   * Applies a sharpening filter to the image and returns the sharpened image. The 5x5 kernel is
+   * 3/8 of the 3x3 box sum, minus 1/8 of the 5x5 box sum, plus 3/4 of the centre pixel, so it is
+   * computed from running box sums in exact integer arithmetic. A result that is computed lazily
+   * is filtered tile by tile with the kernel instead, which gives the same pixels.
    */
-  public Image sepia(Image image) {
-    Image newImage = new Image(image.getWidth(), image.getHeight());
-
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-
-        int newRed = (int) (0.393 * temp.getRed() + 0.769 * temp.getGreen()
-                + 0.189 * temp.getBlue());
-        int newGreen = (int) (0.349 * temp.getRed() + 0.686 * temp.getGreen()
-                + 0.168 * temp.getBlue());
-        int newBlue = (int) (0.272 * temp.getRed() + 0.534 * temp.getGreen()
-                + 0.131 * temp.getBlue());
+  public Image sharpen(Image image) {
+    if (!image.isHighBitDepth() && !(image instanceof GrayImage)
+            && ImageStorage.rendersLazily(image.getWidth(), image.getHeight())) {
+      return SHARPEN.apply(image);
+    }
+    return BoxSums.apply(image, SHARPEN_BOXES, sharpenCombiner(image.isHighBitDepth()));
+  }
 
-        newRed = clamp(newRed);
-        newGreen = clamp(newGreen);
-        newBlue = clamp(newBlue);
+  /**
+   * Sharpens the image by adding the difference between each pixel and the mean of the box of
+   * the given radius around it, scaled by the amount, and returns the sharpened image. The mean
+   * only counts the pixels inside the image, so the edges are not brightened, and the cost per
+   * pixel does not grow with the radius.
+   */
+  @Override
+  public Image sharpen(int radius, double amount, Image image) {
+    if (!(amount >= 0) || Double.isInfinite(amount)) {
+      throw new IllegalArgumentException("Sharpen amount must be a non-negative number.");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int stride = Convolution.strideOf(image);
+    boolean deep = image.isHighBitDepth();
+    return BoxSums.apply(image, new int[]{radius}, (y, samples, sums, out) -> {
+      int rows = Math.min(y + radius, height - 1) - Math.max(y - radius, 0) + 1;
+      for (int x = 0; x < width; x++) {
+        int count = rows * (Math.min(x + radius, width - 1) - Math.max(x - radius, 0) + 1);
+        for (int i = x * stride; i < (x + 1) * stride; i++) {
+          double value = samples[i] + amount * (samples[i] - (double) sums[0][i] / count);
+          out[i] = deep ? Image16.clamp(value)
+                  : (int) Math.max(0, Math.min(Math.round(value), 255));
+        }
+      }
+    });
+  }
 
-        newImage.setPixel(x, y, newRed, newGreen, newBlue);
+  /**
+   * Returns the combiner of the sharpening filter, which adds the box sums as 3 * box3 - box5 +
+   * 6 * centre and divides the exact sum by 8 with the truncation, or for 16-bit samples the
+   * rounding, of the kernel.
+   */
+  private static BoxSums.Combiner sharpenCombiner(boolean deep) {
+    return (y, samples, sums, out) -> {
+      int[] box3 = sums[0];
+      int[] box5 = sums[1];
+      for (int i = 0; i < out.length; i++) {
+        int sum = 3 * box3[i] - box5[i] + 6 * samples[i];
+        if (deep) {
+          out[i] = sum <= 0 ? 0 : Math.min((sum + 4) >> 3, Image16.MAX_SAMPLE);
+        } else {
+          out[i] = sum < 0 ? 0 : Math.min(sum >> 3, 255);
+        }
       }
-    }
-    return newImage;
+    };
   }
 
-  private int clamp(int value) {
-    return Math.max(0, Math.min(255, value));
+  /**
+   * Applies a sepia tone effect to the image and returns the modified image.
+   */
+  public Image sepia(Image image) {
+    if (image.isHighBitDepth()) {
+      return map16(image, (samples, index) -> {
+        int red = samples[index];
+        int green = samples[index + 1];
+        int blue = samples[index + 2];
+        samples[index] = Image16.clamp(0.393 * red + 0.769 * green + 0.189 * blue);
+        samples[index + 1] = Image16.clamp(0.349 * red + 0.686 * green + 0.168 * blue);
+        samples[index + 2] = Image16.clamp(0.272 * red + 0.534 * green + 0.131 * blue);
+      });
+    }
+    return ImageStorage.mapRows(image, ColorKernels.sepia());
   }
 
 
   /**
-   * Calculates the luma value for each pixel in the image and returns a new image where each
-   * pixel's RGB values are set to the corresponding luma value (grayscale).
+   * Calculates the luma value for each pixel in the image and returns a new greyscale image
+   * holding the luma values. A 16-bit image gives a 16-bit result with equal channels.
    */
   public Image calculateLuma(Image image) {
-    Image lumaImage = new Image(image.getWidth(), image.getHeight());
-
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-
-        int lumaValue = (int) (0.2126 * temp.getRed() + 0.7152 * temp.getGreen()
-                + 0.0722 * temp.getBlue());
-
-        lumaImage.setPixel(x, y, lumaValue, lumaValue, lumaValue);
-
-      }
+    if (image.isHighBitDepth()) {
+      return reduce16(image, (red, green, blue) ->
+              Image16.clamp(0.2126 * red + 0.7152 * green + 0.0722 * blue));
     }
-    return lumaImage;
+    return ImageStorage.mapRowsToGray(image, ColorKernels.luma());
   }
 
   /**
    * Calculates the intensity (average of RGB values) for each pixel in the image and returns a new
-   * intensity image where each pixel's RGB values are set to the corresponding intensity value
-   * (grayscale).
+   * greyscale image holding the intensity values. A 16-bit image gives a 16-bit result with equal
+   * channels.
    */
   public Image calculateIntensity(Image image) {
-    Image intensityImage = new Image(image.getWidth(), image.getHeight());
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-
-        int intensityValue = ((temp.getRed() + temp.getGreen() + temp.getBlue()) / 3);
-        intensityImage.setPixel(x, y, intensityValue, intensityValue, intensityValue);
-      }
+    if (image.isHighBitDepth()) {
+      return reduce16(image, (red, green, blue) -> (red + green + blue + 1) / 3);
     }
-    return intensityImage;
+    return ImageStorage.mapRowsToGray(image, ColorKernels.intensity());
   }
 
 
   /**
    * Calculates the value (maximum of R, G, B values) for each pixel in the image and returns a new
-   * image where each pixel's RGB values are set to the corresponding value (grayscale).
+   * greyscale image holding the values. A 16-bit image gives a 16-bit result with equal channels.
    *
    * @return a new CustomImage representing the value values.
    */
   @Override
   public Image calculateValue(Image image) {
-    Image valueImage = new Image(image.getWidth(), image.getHeight());
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-
-        int value = Math.max(temp.getRed(), Math.max(temp.getGreen(), temp.getBlue()));
+    if (image.isHighBitDepth()) {
+      return reduce16(image, (red, green, blue) -> Math.max(red, Math.max(green, blue)));
+    }
+    return ImageStorage.mapRowsToGray(image, ColorKernels.value());
+  }
 
-        valueImage.setPixel(x, y, value, value, value);
+  /**
+   * Flips a packed RGB image horizontally in place, reversing each row.
+   */
+  @Override
+  public void fliphInPlace(Image image) {
+    ImageStorage.requireEditableInPlace(image);
+    int width = image.getWidth();
+    int[] row = new int[width];
+    for (int y = 0; y < image.getHeight(); y++) {
+      image.getRowSpan(0, y, width, row, 0);
+      for (int i = 0, j = width - 1; i < j; i++, j--) {
+        int rgb = row[i];
+        row[i] = row[j];
+        row[j] = rgb;
       }
+      image.setRowSpan(0, y, width, row, 0);
     }
+  }
 
-    return valueImage;
+  /**
+   * Flips a packed RGB image vertically in place, swapping rows from the top and bottom.
+   */
+  @Override
+  public void flipvInPlace(Image image) {
+    ImageStorage.requireEditableInPlace(image);
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] top = new int[width];
+    int[] bottom = new int[width];
+    for (int y = 0; y < height / 2; y++) {
+      image.getRowSpan(0, y, width, top, 0);
+      image.getRowSpan(0, height - 1 - y, width, bottom, 0);
+      image.setRowSpan(0, y, width, bottom, 0);
+      image.setRowSpan(0, height - 1 - y, width, top, 0);
+    }
   }
 
+  /**
+   * Brightens a packed RGB image in place by the specified increment.
+   */
+  @Override
+  public void brightenInPlace(int inc, Image image) {
+    brightenLut(inc).applyInPlace(image);
+  }
 
-}
+  /**
+   * Blurs a packed RGB image in place, keeping only the rows the filter still needs.
+   */
+  @Override
+  public void blurInPlace(Image image) {
+    BLUR.applyInPlace(image);
+  }
 
+  /**
+   * Sharpens a packed RGB image in place, keeping only the rows the filter still needs.
+   */
+  @Override
+  public void sharpenInPlace(Image image) {
+    BoxSums.applyInPlace(image, SHARPEN_BOXES, sharpenCombiner(false));
+  }
+
+  /**
+   * Applies a sepia tone to a packed RGB image in place.
+   */
+  @Override
+  public void sepiaInPlace(Image image) {
+    ImageStorage.mapRowsInPlace(image, ColorKernels.sepia());
+  }
+
+  /**
+   * Replaces every pixel of a packed RGB image by its luma, in all three channels.
+   */
+  @Override
+  public void calculateLumaInPlace(Image image) {
+    ImageStorage.mapRowsInPlace(image, ColorKernels.toGrey(ColorKernels.luma()));
+  }
+
+  /**
+   * Replaces every pixel of a packed RGB image by its intensity, in all three channels.
+   */
+  @Override
+  public void calculateIntensityInPlace(Image image) {
+    ImageStorage.mapRowsInPlace(image, ColorKernels.toGrey(ColorKernels.intensity()));
+  }
+
+  /**
+   * Replaces every pixel of a packed RGB image by its value, in all three channels.
+   */
+  @Override
+  public void calculateValueInPlace(Image image) {
+    ImageStorage.mapRowsInPlace(image, ColorKernels.toGrey(ColorKernels.value()));
+  }
+
+  /**
+   * Replaces every pixel of a packed RGB image by one of its channels, in all three channels.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   */
+  @Override
+  public void getComponentInPlace(Image image, int channel) {
+    ImageStorage.mapRowsInPlace(image, ColorKernels.component(channel));
+  }
+
+  /**
+   * Changes the 16-bit samples of one pixel in place.
+   */
+  protected interface SampleOperation {
+
+    /**
+     * Changes the red, green and blue samples at index, index + 1 and index + 2. Results outside
+     * 0-65535 are clamped when they are stored.
+     *
+     * @param samples The samples of a row.
+     * @param index   The index of the red sample of the pixel.
+     */
+    void apply(int[] samples, int index);
+  }
+
+  /**
+   * Computes one 16-bit grey value from the samples of a pixel.
+   */
+  protected interface SampleReduction {
+
+    /**
+     * Returns the grey value of a pixel.
+     *
+     * @param red   The red sample (0-65535).
+     * @param green The green sample (0-65535).
+     * @param blue  The blue sample (0-65535).
+     * @return The grey value.
+     */
+    int apply(int red, int green, int blue);
+  }
+
+  /**
+   * Applies an operation to the 16-bit samples of every pixel and returns the 16-bit result. The
+   * rows are processed in parallel bands.
+   *
+   * @param image     The image to read.
+   * @param operation The operation changing the samples of a pixel.
+   * @return The new 16-bit image.
+   */
+  protected static Image map16(Image image, SampleOperation operation) {
+    int width = image.getWidth();
+    Image result = new Image16(width, image.getHeight());
+    RowBands.forEachBand(width, image.getHeight(), (fromY, toY) -> {
+      int[] row = new int[3 * width];
+      for (int y = fromY; y < toY; y++) {
+        image.getRowSamples(0, y, width, row, 0);
+        for (int index = 0; index < row.length; index += 3) {
+          operation.apply(row, index);
+        }
+        result.setRowSamples(0, y, width, row, 0);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Computes a 16-bit greyscale image, with the same value in all three channels, from the
+   * samples of every pixel.
+   *
+   * @param image     The image to read.
+   * @param reduction The function computing the grey value of a pixel.
+   * @return The new 16-bit image.
+   */
+  protected static Image reduce16(Image image, SampleReduction reduction) {
+    return map16(image, (samples, index) -> {
+      int value = reduction.apply(samples[index], samples[index + 1], samples[index + 2]);
+      samples[index] = value;
+      samples[index + 1] = value;
+      samples[index + 2] = value;
+    });
+  }
+}
@@ -7,8 +7,7 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.ImageIcon;
@@ -23,6 +22,21 @@ import javax.swing.JLabel;
  */
 public class CustomImage2 extends CustomImage implements ICustomImage2 {
 
+  /**
+   * The fraction of the samples at each end of the histogram that auto levels turns black or
+   * white.
+   */
+  public static final double AUTO_LEVELS_CLIP = 0.005;
+
+  /**
+   * The levels of the red, green and blue channel that color correction searches for peaks and
+   * that the histogram draws. They leave out the darkest and brightest levels, which are often
+   * clipped: red from 10 to 246, green and blue from 11 to 245.
+   */
+  private static final int[] PEAK_FROM = {10, 11, 11};
+  private static final int[] PEAK_TO = {246, 245, 245};
+  private static final double SQRT_2 = Math.sqrt(2.0);
+
   /**
    * Constructs an CustomImage2 with the specified width and height.
    *
@@ -35,7 +49,8 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
   /**
    * Adjusts the color of the given image based on specific brightness, midpoint, and whitepoint
    * values. This method calculates new RGB values for each pixel in the image and updates the image
-   * accordingly.
+   * accordingly. A greyscale image is adjusted on its single plane and stays greyscale. A 16-bit
+   * image is adjusted on its 16-bit samples, without rounding the curve to whole 8-bit levels.
    *
    * @param b the brightness value used in the equation
    * @param m the midpoint value used in the equation
@@ -50,38 +65,50 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
       throw new FileNotFoundException("Image not found");
     }
 
-    Image newImage = new Image(image.getWidth(), image.getHeight());
-
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-        int newRed = calculateEquation(temp.getRed(), b, m, w);
-        int newGreen = calculateEquation(temp.getGreen(), b, m, w);
-        int newBlue = calculateEquation(temp.getBlue(), b, m, w);
-        Pixel newPixel = new Pixel(newRed, newGreen, newBlue);
-        newImage.setPixel(x, y, newPixel.getRed(), newPixel.getGreen(), newPixel.getBlue());
-      }
+    if (image.isHighBitDepth()) {
+      double[] curve = getEquationVariables(b, m, w);
+      return map16(image, (samples, index) -> {
+        for (int c = index; c < index + 3; c++) {
+          double x = samples[c] / 257.0;
+          samples[c] = Image16.clamp((curve[0] * x * x + curve[1] * x + curve[2]) * 257);
+        }
+      });
     }
-    return newImage;
+
+    return levelsLut(b, m, w).apply(image);
   }
 
   /**
-   * Calculates a new color value for a given color component (red, green, or blue) using quadratic
-   * equation. The equation is derived from the brightness, midpoint, and whitepoint values.
+   * Adjusts the levels of a packed RGB image in place, with the same curve as adjustColorCommand.
+   */
+  @Override
+  public void adjustColorInPlace(Image image, int b, int m, int w) {
+    levelsLut(b, m, w).applyInPlace(image);
+  }
+
+  /**
+   * Returns the tone table applying the levels curve to every channel. The curve is evaluated
+   * once for each of the 256 levels.
+   */
+  @Override
+  public ToneLut levelsLut(int b, int m, int w) {
+    return ToneLut.of(levelsCurve(b, m, w)::apply);
+  }
+
+  /**
+   * Returns the quadratic curve that maps a color component (red, green, or blue) to its adjusted
+   * value. The curve is derived from the brightness, midpoint, and whitepoint values once, and
+   * evaluated in fixed point with the same truncated results as the double equation.
    *
-   * @param x the original color component value (0-255)
    * @param b the brightness value
    * @param m the midpoint value
    * @param w the whitepoint value
-   * @return the adjusted color component value
+   * @return the curve computing adjusted color component values
    */
-  private int calculateEquation(int x, double b, double m, double w) {
+  private FixedPoint.Quadratic levelsCurve(double b, double m, double w) {
     double[] equationVariables = getEquationVariables(b, m, w);
-    double a = equationVariables[0];
-    double bb = equationVariables[1];
-    double c = equationVariables[2];
-    int ans = ((int) ((a * Math.pow(x, 2)) + (bb * x) + c));
-    return ans;
+    return new FixedPoint.Quadratic(equationVariables[0], equationVariables[1],
+            equationVariables[2]);
   }
 
   /**
@@ -111,80 +138,107 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
   }
 
   /**
-   * Finds the maximum value in an array of integers.
+   * Applies color correction to the image by adjusting each color channel (red, green, blue) based
+   * on their respective average peak values. This operation balances the color channels to achieve
+   * a more uniform distribution of color intensity.
    *
-   * @param ints an array of integers
-   * @return the maximum value in the array
+   * @return a new ICustomImage object with corrected colors
+   * @throws FileNotFoundException if the image is null or not found
    */
-  private int getMaxValue(int[] ints) {
-    int maxvalue = 0;
-
-    for (int i = 0; i < ints.length; i++) {
-      if (ints[i] > maxvalue) {
-        maxvalue = ints[i];
-
-      }
-    }
-    return maxvalue;
-  }
-
-  /**
-   * Identifies the index of the peak (maximum) value in an array of integers.
-   *
-   * @param ints an array of integers
-   * @return the index of the peak value in the array
-   */
-  private int getPeaks(int[] ints) {
-    int maxvalue = 0;
-    int peak = 0;
-    for (int i = 0; i < ints.length; i++) {
-      if (ints[i] > maxvalue) {
-        maxvalue = ints[i];
-        peak = i;
-      }
+  @Override
+  public Image colorCorrectionCommand(Image image) throws FileNotFoundException {
+    if (image == null) {
+      throw new FileNotFoundException("Image not found");
     }
-    return peak;
+    return colorCorrectionCommand(image, Histogram.of(image));
   }
 
   /**
-   * Applies color correction to the image by adjusting each color channel (red, green, blue) based
-   * on their respective average peak values. This operation balances the color channels to achieve
-   * a more uniform distribution of color intensity.
+   * Applies color correction to the image like colorCorrectionCommand, with the peaks taken from a
+   * histogram of the image that is already computed.
    *
-   * @return a new ICustomImage object with corrected colors
+   * @param image     the image to correct
+   * @param histogram the histogram of the image
+   * @return a new image with corrected colors
    * @throws FileNotFoundException if the image is null or not found
    */
   @Override
-  public Image colorCorrectionCommand(Image image) throws FileNotFoundException {
+  public Image colorCorrectionCommand(Image image, Histogram histogram)
+          throws FileNotFoundException {
     if (image == null) {
       throw new FileNotFoundException("Image not found");
     }
 
-    Image newImage = new Image(image.getWidth(), image.getHeight());
+    int[] offsets = colorOffsets(histogram);
 
-    List<int[]> freqCount = frequencyCount(image);
+    if (image.isHighBitDepth()) {
+      return map16(image, (samples, index) -> {
+        samples[index] += Image16.expand(offsets[0]);
+        samples[index + 1] += Image16.expand(offsets[1]);
+        samples[index + 2] += Image16.expand(offsets[2]);
+      });
+    }
 
-    int redPeak = getPeaks(freqCount.get(0));
-    int greenPeak = getPeaks(freqCount.get(1));
-    int bluePeak = getPeaks(freqCount.get(2));
+    return ImageStorage.mapRows(image, colorCorrectionLut(offsets).rowOperator());
+  }
+
+  /**
+   * Returns the offsets that move the histogram peak of the red, green and blue channel of the
+   * image to the average peak.
+   */
+  private int[] colorOffsets(Histogram histogram) {
+    int redPeak = peak(histogram, PlanarImage.RED);
+    int greenPeak = peak(histogram, PlanarImage.GREEN);
+    int bluePeak = peak(histogram, PlanarImage.BLUE);
 
     int avgPeak = (bluePeak + greenPeak + redPeak) / 3;
 
-    int redOffset = avgPeak - redPeak;
-    int blueOffset = avgPeak - bluePeak;
-    int greenOffset = avgPeak - greenPeak;
-
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-        int newRed = clamp(temp.getRed() + redOffset);
-        int newGreen = clamp(temp.getGreen() + greenOffset);
-        int newBlue = clamp(temp.getBlue() + blueOffset);
-        Pixel newPixel = new Pixel(newRed, newGreen, newBlue);
-        newImage.setPixel(x, y, newPixel.getRed(), newPixel.getGreen(), newPixel.getBlue());
+    return new int[]{avgPeak - redPeak, avgPeak - greenPeak, avgPeak - bluePeak};
+  }
+
+  /**
+   * Returns the tone table adding the offsets that move the histogram peak of each channel of the
+   * image to the average peak.
+   */
+  @Override
+  public ToneLut colorCorrectionLut(Image image) {
+    return colorCorrectionLut(Histogram.of(image));
+  }
+
+  /**
+   * Returns the tone table of colorCorrectionCommand for an image with the given histogram.
+   */
+  @Override
+  public ToneLut colorCorrectionLut(Histogram histogram) {
+    return colorCorrectionLut(colorOffsets(histogram));
+  }
+
+  /**
+   * Returns a histogram of the image for previews, counted on a sample of its pixels. The sample
+   * is used while the confidence bound of each channel peak that color correction and the drawn
+   * histogram read spans no more levels than the tolerance; otherwise every pixel is counted.
+   */
+  @Override
+  public Histogram previewHistogram(Image image, int samples, int tolerance) {
+    ApproximateHistogram approximate = ApproximateHistogram.sample(image, samples);
+    if (approximate.isExact()) {
+      return approximate.getHistogram();
+    }
+    for (int channel = 0; channel < 3; channel++) {
+      int[] bound = approximate.getPeakBound(channel, PEAK_FROM[channel], PEAK_TO[channel]);
+      if (bound[1] - bound[0] > tolerance) {
+        return Histogram.of(image);
       }
     }
-    return newImage;
+    return approximate.getHistogram();
+  }
+
+  private static int peak(Histogram histogram, int channel) {
+    return histogram.getPeak(channel, PEAK_FROM[channel], PEAK_TO[channel]);
+  }
+
+  private static ToneLut colorCorrectionLut(int[] offsets) {
+    return ToneLut.offsets(offsets[0], offsets[1], offsets[2]);
   }
 
 
@@ -223,8 +277,21 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
     if (image == null) {
       throw new FileNotFoundException("Image not found");
     }
+    return createHistogram(Histogram.of(image));
+  }
 
-    List<int[]> freqCount = frequencyCount(image);
+  /**
+   * Draws a histogram that is already computed like createHistogram.
+   *
+   * @param histogram the histogram to draw
+   * @return a BufferedImage containing the histogram
+   */
+  @Override
+  public BufferedImage createHistogram(Histogram histogram) {
+    List<int[]> freqCount = new ArrayList<>();
+    for (int channel = 0; channel < 3; channel++) {
+      freqCount.add(histogram.getCounts(channel, PEAK_FROM[channel], PEAK_TO[channel]));
+    }
 
     // Create a BufferedImage to hold the histogram
     BufferedImage histogramImage =
@@ -236,9 +303,9 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
     g.fillRect(0, 0, 256, 256);
 
     // Calculate maximum values for scaling each color channel
-    int maxRed = getMaxValue(freqCount.get(0));
-    int maxGreen = getMaxValue(freqCount.get(1));
-    int maxBlue = getMaxValue(freqCount.get(2));
+    int maxRed = histogram.getMaxCount(PlanarImage.RED, PEAK_FROM[0], PEAK_TO[0]);
+    int maxGreen = histogram.getMaxCount(PlanarImage.GREEN, PEAK_FROM[1], PEAK_TO[1]);
+    int maxBlue = histogram.getMaxCount(PlanarImage.BLUE, PEAK_FROM[2], PEAK_TO[2]);
 
     // Draw Red, Green, and Blue line graphs
     drawChannelLineGraph(g, freqCount.get(0), maxRed, Color.RED, 150);
@@ -251,44 +318,49 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
 
 
   /**
-   * Computes the frequency of each intensity level (0-255) for red, green, and blue color channels
-   * in the given image. This frequency data is useful for creating histograms or analyzing color
-   * distribution in the image.
+   * Stretches the levels of the image so that its darkest samples become black and its brightest
+   * white. The black and white points are the levels below and above which AUTO_LEVELS_CLIP of the
+   * samples of some channel lie, and the mid point lies halfway between them; the image is then
+   * adjusted with these levels like adjustColorCommand. An image whose levels cannot be stretched
+   * is returned as a view of itself.
    *
-   * @param image the ICustomImage object to analyze
-   * @return a list of arrays, where each array contains frequency of intensities for color channel.
-   */
-  private List<int[]> frequencyCount(Image image) {
-    List l = new ArrayList<>();
-    int[] freqr = new int[256];
-    int[] freqb = new int[256];
-    int[] freqg = new int[256];
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel temp = image.getPixel(x, y);
-        int redValue = temp.getRed();
-        int greenValue = temp.getGreen();
-        int blueValue = temp.getBlue();
-
-        if ((redValue >= 10) && (redValue <= 246)) {
-          freqr[redValue]++;
-        }
-
-        if (greenValue > 10 && greenValue < 246) {
-          freqb[greenValue]++;
-        }
-
-        if (blueValue > 10 && blueValue < 246) {
-          freqg[blueValue]++;
-        }
-      }
+   * @param image     the image to adjust
+   * @param histogram the histogram of the image
+   * @return a new image with stretched levels
+   * @throws FileNotFoundException if the image is null or not found
+   */
+  @Override
+  public Image autoLevels(Image image, Histogram histogram) throws FileNotFoundException {
+    if (image == null) {
+      throw new FileNotFoundException("Image not found");
     }
-    l.add(freqr);
-    l.add(freqb);
-    l.add(freqg);
-
-    return l;
+    int[] levels = autoLevelsPoints(histogram);
+    if (levels == null) {
+      return ImageView.crop(image, 0, 0, image.getWidth(), image.getHeight());
+    }
+    return adjustColorCommand(image, levels[0], levels[1], levels[2]);
+  }
 
+  /**
+   * Returns the black, mid and white point that autoLevels adjusts an image with the given
+   * histogram to.
+   *
+   * @param histogram the histogram of the image
+   * @return the points as {black, mid, white}, or null if the levels of the image cannot be
+   *         stretched because they already span all levels or span fewer than three
+   */
+  @Override
+  public int[] autoLevelsPoints(Histogram histogram) {
+    int black = Histogram.LEVELS - 1;
+    int white = 0;
+    for (int channel = 0; channel < 3; channel++) {
+      black = Math.min(black, histogram.getPercentile(channel, AUTO_LEVELS_CLIP));
+      white = Math.max(white, histogram.getPercentile(channel, 1 - AUTO_LEVELS_CLIP));
+    }
+    if (black < 0 || white - black < 2 || (black == 0 && white == Histogram.LEVELS - 1)) {
+      return null;
+    }
+    return new int[]{black, (black + white) / 2, white};
   }
 
   /**
@@ -312,23 +384,6 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
   }
 
 
-  /**
-   * Clamps an integer value to the range [0, 255]. If the value is greater than 255, it returns
-   * 255; if less than 0, it returns 0.
-   *
-   * @param value The integer value to be clamped.
-   * @return The clamped value within the range [0, 255].
-   */
-  private int clamp(int value) {
-    if (value > 255) {
-      return 255;
-    }
-    if (value < 0) {
-      return 0;
-    }
-    return value;
-  }
-
   /**
    * Clamps a double value to the range [0, 255]. If the value is greater than 255, it returns 255;
    * if less than 0, it returns 0.
@@ -349,7 +404,8 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
 
   /**
    * Compresses the image by applying the Haar wavelet transform, compression thresholding, and
-   * inverse Haar transform to reduce the image data size.
+   * inverse Haar transform to reduce the image data size. A greyscale image runs the pipeline
+   * once, on its single plane. A 16-bit image runs the pipeline on its 16-bit samples.
    *
    * @param percentage Compression level in percentage to determine threshold for data elimination.
    * @return A compressed ICustomImage instance with reduced data size.
@@ -361,16 +417,64 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
     int width = image.getWidth();
     int size = this.paddingSize(Math.max(height, width));
 
+    if (image instanceof GrayImage) {
+      byte[] plane = ((GrayImage) image).getPlane();
+      double[][] graypixel = new double[size][size];
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          graypixel[i][j] = plane[i * width + j] & 0xFF;
+        }
+      }
+      graypixel = this.pipeline(graypixel, size, percentage);
+      GrayImage compressed = new GrayImage(width, height);
+      byte[] compressedPlane = compressed.getPlane();
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          compressedPlane[i * width + j] = (byte) Pixel.clamp((int) graypixel[i][j]);
+        }
+      }
+      return compressed;
+    }
+
     double[][] redpixel = new double[size][size];
     double[][] greenpixel = new double[size][size];
     double[][] bluepixel = new double[size][size];
 
+    if (image.isHighBitDepth()) {
+      // The pipeline works on the 0-255 scale, so the samples are scaled down without rounding
+      int[] samples = new int[3 * width];
+      for (int i = 0; i < height; i++) {
+        image.getRowSamples(0, i, width, samples, 0);
+        for (int j = 0; j < width; j++) {
+          redpixel[i][j] = samples[3 * j] / 257.0;
+          greenpixel[i][j] = samples[3 * j + 1] / 257.0;
+          bluepixel[i][j] = samples[3 * j + 2] / 257.0;
+        }
+      }
+      redpixel = this.pipeline(redpixel, size, percentage);
+      greenpixel = this.pipeline(greenpixel, size, percentage);
+      bluepixel = this.pipeline(bluepixel, size, percentage);
+
+      Image compressed = new Image16(width, height);
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          samples[3 * j] = Image16.clamp(redpixel[i][j] * 257);
+          samples[3 * j + 1] = Image16.clamp(greenpixel[i][j] * 257);
+          samples[3 * j + 2] = Image16.clamp(bluepixel[i][j] * 257);
+        }
+        compressed.setRowSamples(0, i, width, samples, 0);
+      }
+      return compressed;
+    }
+
     // Copy original pixels to padded matrices
+    int[] row = new int[width];
     for (int i = 0; i < height; i++) {
+      image.getRowSpan(0, i, width, row, 0);
       for (int j = 0; j < width; j++) {
-        redpixel[i][j] = image.getPixel(j, i).getRed();
-        greenpixel[i][j] = image.getPixel(j, i).getGreen();
-        bluepixel[i][j] = image.getPixel(j, i).getBlue();
+        redpixel[i][j] = Pixel.red(row[j]);
+        greenpixel[i][j] = Pixel.green(row[j]);
+        bluepixel[i][j] = Pixel.blue(row[j]);
       }
     }
 
@@ -379,14 +483,15 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
     greenpixel = this.pipeline(greenpixel, size, percentage);
     bluepixel = this.pipeline(bluepixel, size, percentage);
 
-    Image compressed = new Image(width, height);  // Set compressed image dimensions
+    // Set compressed image dimensions
+    Image compressed = ImageStorage.createLike(width, height, image);
 
     // Set pixels back to compressed image
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
-        compressed.setPixel(j, i, (int) redpixel[i][j], (int) greenpixel[i][j],
-                (int) bluepixel[i][j]);
+        row[j] = Pixel.pack((int) redpixel[i][j], (int) greenpixel[i][j], (int) bluepixel[i][j]);
       }
+      compressed.setRowSpan(0, i, width, row, 0);
     }
     return compressed;
   }
@@ -439,75 +544,103 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
   }
 
   /**
-   * Transforms rows of the matrix using Haar transform.
+   * Transforms rows of the matrix using Haar transform. The rows are transformed in place, in
+   * parallel bands that each keep one scratch row.
    *
    * @param matrix The matrix to transform.
    * @param c      Current size of the sub-matrix being transformed.
    * @return Matrix with transformed rows.
    */
   protected double[][] transformR(double[][] matrix, int c) {
-    int row = matrix.length;
-    for (int i = 0; i < row; i++) {
-      List<Double> avg = new ArrayList<>();
-      List<Double> diff = new ArrayList<>();
-      for (int j = 0; j < c; j = j + 2) {
-        avg.add((matrix[i][j] + matrix[i][j + 1]) / Math.sqrt(2.0));
-        diff.add((matrix[i][j] - matrix[i][j + 1]) / Math.sqrt(2.0));
-      }
-      for (int j = 0; j < avg.size(); j++) {
-        matrix[i][j] = avg.get(j);
-        matrix[i][avg.size() + j] = diff.get(j);
+    int half = c / 2;
+    RowBands.forEachBand(c, matrix.length, (fromY, toY) -> {
+      double[] scratch = new double[c];
+      for (int i = fromY; i < toY; i++) {
+        double[] row = matrix[i];
+        for (int j = 0; j < half; j++) {
+          double first = row[2 * j];
+          double second = row[2 * j + 1];
+          scratch[j] = (first + second) / SQRT_2;
+          scratch[half + j] = (first - second) / SQRT_2;
+        }
+        System.arraycopy(scratch, 0, row, 0, c);
       }
-    }
+    });
     return matrix;
   }
 
   /**
-   * Transforms columns of the matrix using Haar transform.
+   * Transforms columns of the matrix using Haar transform. Every pair of rows is replaced in place,
+   * in parallel, by its average and difference rows, which are then moved into the upper and lower
+   * half by reordering the rows of the matrix.
    *
    * @param matrix The matrix to transform.
    * @param c      Current size of the sub-matrix being transformed.
    * @return Matrix with transformed columns.
    */
   protected double[][] transformC(double[][] matrix, int c) {
-    for (int i = 0; i < matrix.length; i++) {
-      List<Double> avg = new ArrayList<>();
-      List<Double> diff = new ArrayList<>();
-      for (int j = 0; j < c; j = j + 2) {
-        avg.add((matrix[j][i] + matrix[j + 1][i]) / Math.sqrt(2.0));
-        diff.add((matrix[j][i] - matrix[j + 1][i]) / Math.sqrt(2.0));
-      }
-      for (int j = 0; j < avg.size(); j++) {
-        matrix[j][i] = avg.get(j);
-        matrix[j + avg.size()][i] = diff.get(j);
+    int half = c / 2;
+    int width = matrix.length;
+    RowBands.forEachBand(width, half, (fromY, toY) -> {
+      for (int j = fromY; j < toY; j++) {
+        combineRows(matrix[2 * j], matrix[2 * j + 1], width);
       }
+    });
+    double[][] rows = new double[c][];
+    for (int j = 0; j < half; j++) {
+      rows[j] = matrix[2 * j];
+      rows[half + j] = matrix[2 * j + 1];
     }
+    System.arraycopy(rows, 0, matrix, 0, c);
     return matrix;
   }
 
   /**
-   * Compresses the matrix by setting values below the threshold to zero.
+   * Replaces two rows by their scaled sum and difference, element by element.
+   */
+  private static void combineRows(double[] first, double[] second, int width) {
+    for (int i = 0; i < width; i++) {
+      double a = first[i];
+      double b = second[i];
+      first[i] = (a + b) / SQRT_2;
+      second[i] = (a - b) / SQRT_2;
+    }
+  }
+
+  /**
+   * Compresses the matrix by setting values below the threshold to zero. The threshold is the
+   * distinct absolute value, rounded to three decimals, at the percentage of all distinct values
+   * in ascending order; they are found by sorting a primitive copy of the matrix.
    *
    * @param matrix     The matrix to be compressed.
    * @param percentage Compression percentage determining the threshold.
    * @return Compressed matrix.
    */
   protected double[][] comp(double[][] matrix, int percentage) {
-    Double threshold = Double.MAX_VALUE;
+    double threshold = Double.MAX_VALUE;
     if (percentage == 100.00) {
       return this.apply(matrix, threshold);
     }
-    List<Double> value = new ArrayList<>();
+    int size = matrix.length;
+    double[] values = new double[size * size];
+    int count = 0;
     for (double[] doubles : matrix) {
-      for (int j = 0; j < matrix.length; j++) {
-        double temp = Math.round(doubles[j] * 1000.0) / 1000.0;
-        value.add(Math.abs(temp));
+      for (int j = 0; j < size; j++) {
+        values[count++] = Math.abs(Math.round(doubles[j] * 1000.0) / 1000.0);
       }
     }
-    List<Double> unique = new ArrayList<>(new HashSet<>(value));
-    Collections.sort(unique);
-    int i = (int) Math.round((unique.size()) * (percentage / 100.0));
-    threshold = unique.get(i);
+    Arrays.parallelSort(values);
+    int unique = 0;
+    for (int j = 0; j < values.length; j++) {
+      if (unique == 0 || values[j] != values[unique - 1]) {
+        values[unique++] = values[j];
+      }
+    }
+    int i = (int) Math.round(unique * (percentage / 100.0));
+    if (i < 0 || i >= unique) {
+      throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + unique);
+    }
+    threshold = values[i];
     return this.apply(matrix, threshold);
   }
 
@@ -547,55 +680,63 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
   }
 
   /**
-   * Inversely transforms rows using inverse Haar transform.
+   * Inversely transforms rows using inverse Haar transform. The rows are transformed in place, in
+   * parallel bands that each keep one scratch row.
    *
    * @param matrix The matrix to transform.
    * @param c      Current size of the sub-matrix being transformed.
    * @return Matrix with inversely transformed rows.
    */
   protected double[][] inverseHarrR(double[][] matrix, int c) {
-    for (int i = 0; i < matrix.length; i++) {
-      List<Double> avg = new ArrayList<>();
-      List<Double> diff = new ArrayList<>();
-      for (int j = 0; j < c / 2; j++) {
-        avg.add((matrix[i][j] + matrix[i][j + c / 2]) / Math.sqrt(2.0));
-        diff.add((matrix[i][j] - matrix[i][j + c / 2]) / Math.sqrt(2.0));
-      }
-      for (int j = 0; j < c; j = j + 2) {
-        matrix[i][j] = avg.get(j / 2);
-        matrix[i][j + 1] = diff.get(j / 2);
+    int half = c / 2;
+    RowBands.forEachBand(c, matrix.length, (fromY, toY) -> {
+      double[] scratch = new double[c];
+      for (int i = fromY; i < toY; i++) {
+        double[] row = matrix[i];
+        for (int j = 0; j < half; j++) {
+          double average = row[j];
+          double difference = row[j + half];
+          scratch[2 * j] = (average + difference) / SQRT_2;
+          scratch[2 * j + 1] = (average - difference) / SQRT_2;
+        }
+        System.arraycopy(scratch, 0, row, 0, c);
       }
-    }
+    });
     return matrix;
   }
 
   /**
-   * Inversely transforms columns using inverse Haar transform.
+   * Inversely transforms columns using inverse Haar transform. Every average row of the upper half
+   * and its difference row of the lower half are replaced in place, in parallel, by the pair of
+   * rows they came from, which are then interleaved by reordering the rows of the matrix.
    *
    * @param matrix The matrix to transform.
    * @param c      Current size of the sub-matrix being transformed.
    * @return Matrix with inversely transformed columns.
    */
   protected double[][] inverseHarrC(double[][] matrix, int c) {
-    for (int i = 0; i < matrix.length; i++) {
-      List<Double> avg = new ArrayList<>();
-      List<Double> diff = new ArrayList<>();
-      for (int j = 0; j < c / 2; j++) {
-        avg.add((matrix[j][i] + matrix[j + (c / 2)][i]) / Math.sqrt(2.0));
-        diff.add((matrix[j][i] - matrix[j + (c / 2)][i]) / Math.sqrt(2.0));
-      }
-      for (int j = 0; j < c; j = j + 2) {
-        matrix[j][i] = avg.get(j / 2);
-        matrix[j + 1][i] = diff.get(j / 2);
+    int half = c / 2;
+    int width = matrix.length;
+    RowBands.forEachBand(width, half, (fromY, toY) -> {
+      for (int j = fromY; j < toY; j++) {
+        combineRows(matrix[j], matrix[j + half], width);
       }
+    });
+    double[][] rows = new double[c][];
+    for (int j = 0; j < half; j++) {
+      rows[2 * j] = matrix[j];
+      rows[2 * j + 1] = matrix[j + half];
     }
+    System.arraycopy(rows, 0, matrix, 0, c);
     return matrix;
   }
 
   /**
    * Splits the current image horizontally based on a specified percentage. Pixels to the left of
    * the split (as determined by the percentage) are retained from the current image, and pixels to
-   * the right are taken from the original image.
+   * the right are taken from the original image. If both images are greyscale the result is
+   * greyscale as well, and if either image has 16 bits per channel the result has 16 bits per
+   * channel.
    *
    * @param originalImage The original image used for pixels beyond the split.
    * @param percentage    The percentage (0-100) of image's width that remains from current image.
@@ -605,7 +746,6 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
    */
   @Override
   public Image splitImg(Image proccessedImage, Image originalImage, String percentage) {
-    Image newSplitImage = new Image(proccessedImage.getWidth(), proccessedImage.getHeight());
     if (percentage == null) {
       throw new IllegalArgumentException("Percentage cannot be null");
     }
@@ -614,21 +754,42 @@ public class CustomImage2 extends CustomImage implements ICustomImage2 {
       throw new IllegalArgumentException("Percentage must be between 0 and 100");
     }
     int widthLimit = (originalImage.getWidth() * percent) / 100;
-
-    for (int y = 0; y < proccessedImage.getHeight(); y++) {
-      for (int x = 0; x < proccessedImage.getWidth(); x++) {
-
-        Pixel temp = proccessedImage.getPixel(x, y);
-        Pixel originalTemp = originalImage.getPixel(x, y);
-        if (x < widthLimit) {
-          newSplitImage.setPixel(x, y, temp.getRed(), temp.getGreen(), temp.getBlue());
-        } else {
-          newSplitImage.setPixel(x, y, originalTemp.getRed(), originalTemp.getGreen(),
-                  originalTemp.getBlue());
-        }
+    int width = originalImage.getWidth();
+    int height = originalImage.getHeight();
+    int split = Math.max(0, Math.min(widthLimit, Math.min(proccessedImage.getWidth(), width)));
+
+    // Each span reads the processed image only left of the split, so a lazily evaluated processed
+    // image never computes the right-hand side, and the processed image may cover only the
+    // columns left of the split.
+    TileSource source = (x, y, length, dst, offset) -> {
+      int left = Math.max(0, Math.min(split - x, length));
+      if (left > 0) {
+        proccessedImage.getRowSpan(x, y, left, dst, offset);
+      }
+      if (left < length) {
+        originalImage.getRowSpan(x + left, y, length - left, dst, offset + left);
+      }
+    };
+    if (proccessedImage.isHighBitDepth() || originalImage.isHighBitDepth()) {
+      Image newSplitImage = new Image16(width, height);
+      int[] row = new int[3 * width];
+      for (int y = 0; y < height; y++) {
+        proccessedImage.getRowSamples(0, y, split, row, 0);
+        originalImage.getRowSamples(split, y, width - split, row, 3 * split);
+        newSplitImage.setRowSamples(0, y, width, row, 0);
+      }
+      return newSplitImage;
+    }
+    if (proccessedImage instanceof GrayImage && originalImage instanceof GrayImage) {
+      GrayImage newSplitImage = new GrayImage(width, height);
+      int[] row = new int[width];
+      for (int y = 0; y < height; y++) {
+        source.computeSpan(0, y, width, row, 0);
+        newSplitImage.setRowSpan(0, y, width, row, 0);
       }
+      return newSplitImage;
     }
-    return newSplitImage;
+    return ImageStorage.render(width, height, source, proccessedImage, originalImage);
   }
 
 
@@ -19,7 +19,7 @@ public class CustomImage3 extends CustomImage2 implements ICustomImage3 {
    * Downscales the current image to a specified new width and height using bilinear interpolation.
    * The new image is calculated by mapping each pixel in the downscaled image to the corresponding
    * coordinates in the original image, and then interpolating the color values based on the nearest
-   * pixels.
+   * pixels. A 16-bit image is interpolated on its 16-bit samples.
    *
    * @param newHeight The height of the new downscaled image.
    * @param newWidth  The width of the new downscaled image.
@@ -34,22 +34,71 @@ public class CustomImage3 extends CustomImage2 implements ICustomImage3 {
     double xScale = (double) image.getWidth() / newWidth;
     double yScale = (double) image.getHeight() / newHeight;
 
-    Image newDownScaledImage = new Image(newWidth, newHeight);
+    if (image.isHighBitDepth()) {
+      return downScale16(image, newHeight, newWidth, xScale, yScale);
+    }
+
+    Image newDownScaledImage = ImageStorage.createLike(newWidth, newHeight, image);
+    int sourceWidth = image.getWidth();
+    int[] top = new int[sourceWidth];
+    int[] bottom = new int[sourceWidth];
+    int[] row = new int[newWidth];
 
     for (int j = 0; j < newHeight; j++) {
+      // Both source rows of this output row are read once, as whole spans
+      double originalImageY = j * yScale;
+      int y1 = Math.max(0, (int) Math.floor(originalImageY));
+      int y2 = Math.min(this.getHeight() - 1, (int) Math.ceil(originalImageY));
+      image.getRowSpan(0, y1, sourceWidth, top, 0);
+      image.getRowSpan(0, y2, sourceWidth, bottom, 0);
+
       for (int i = 0; i < newWidth; i++) {
 
         double originalImageX = i * xScale;
-        double originalImageY = j * yScale;
 
         int x1 = Math.max(0, (int) Math.floor(originalImageX));
         int x2 = Math.min(this.getWidth() - 1, (int) Math.ceil(originalImageX));
-        int y1 = Math.max(0, (int) Math.floor(originalImageY));
-        int y2 = Math.min(this.getHeight() - 1, (int) Math.ceil(originalImageY));
 
-        Pixel p = calculateColor(image, x1, x2, originalImageX, y1, y2, originalImageY);
-        newDownScaledImage.setPixel(i, j, p.getRed(), p.getGreen(), p.getBlue());
+        row[i] = calculateColor(top, bottom, x1, x2, originalImageX, y1, y2, originalImageY);
       }
+      newDownScaledImage.setRowSpan(0, j, newWidth, row, 0);
+    }
+    return newDownScaledImage;
+  }
+
+  /**
+   * Downscales a 16-bit image with the same bilinear interpolation as downScale, rounding each
+   * sample once instead of truncating it to 8 bits.
+   */
+  private Image downScale16(Image image, int newHeight, int newWidth, double xScale,
+                            double yScale) {
+    Image newDownScaledImage = new Image16(newWidth, newHeight);
+    int sourceWidth = image.getWidth();
+    int[] top = new int[3 * sourceWidth];
+    int[] bottom = new int[3 * sourceWidth];
+    int[] row = new int[3 * newWidth];
+
+    for (int j = 0; j < newHeight; j++) {
+      double originalImageY = j * yScale;
+      int y1 = Math.max(0, (int) Math.floor(originalImageY));
+      int y2 = Math.min(this.getHeight() - 1, (int) Math.ceil(originalImageY));
+      double yWeight = (y2 > y1) ? (originalImageY - y1) / (y2 - y1) : 0;
+      image.getRowSamples(0, y1, sourceWidth, top, 0);
+      image.getRowSamples(0, y2, sourceWidth, bottom, 0);
+
+      for (int i = 0; i < newWidth; i++) {
+        double originalImageX = i * xScale;
+        int x1 = Math.max(0, (int) Math.floor(originalImageX));
+        int x2 = Math.min(this.getWidth() - 1, (int) Math.ceil(originalImageX));
+        double xWeight = (x2 > x1) ? (originalImageX - x1) / (x2 - x1) : 0;
+
+        for (int c = 0; c < 3; c++) {
+          double m = top[3 * x1 + c] * (1 - xWeight) + top[3 * x2 + c] * xWeight;
+          double n = bottom[3 * x1 + c] * (1 - xWeight) + bottom[3 * x2 + c] * xWeight;
+          row[3 * i + c] = Image16.clamp(m * (1 - yWeight) + n * yWeight);
+        }
+      }
+      newDownScaledImage.setRowSamples(0, j, newWidth, row, 0);
     }
     return newDownScaledImage;
   }
@@ -59,6 +108,8 @@ public class CustomImage3 extends CustomImage2 implements ICustomImage3 {
    * bilinear interpolation. The method uses the surrounding four pixels in the original image and
    * the fractional distance to compute the interpolated RGB values.
    *
+   * @param top            The pixels of the top row, y1, of the original image.
+   * @param bottom         The pixels of the bottom row, y2, of the original image.
    * @param x1             The x-coordinate of the left neighboring pixel in the original image.
    * @param x2             The x-coordinate of the right neighboring pixel in the original image.
    * @param originalImageX The exact x-coordinate in the original image corresponding to the
@@ -67,35 +118,35 @@ public class CustomImage3 extends CustomImage2 implements ICustomImage3 {
    * @param y2             The y-coordinate of the bottom neighboring pixel in the original image.
    * @param originalImageY The exact y-coordinate in the original image corresponding to the
    *                       downscaled pixel.
-   * @return The interpolated {@link Pixel} object containing the calculated RGB values.
+   * @return The interpolated color as a packed 0xRRGGBB value.
    */
-  private Pixel calculateColor(Image image, int x1, int x2, double originalImageX, int y1, int y2,
-                               double originalImageY) {
-    Pixel x1y1 = image.getPixel(x1, y1);
-    Pixel x1y2 = image.getPixel(x1, y2);
-    Pixel x2y1 = image.getPixel(x2, y1);
-    Pixel x2y2 = image.getPixel(x2, y2);
+  private int calculateColor(int[] top, int[] bottom, int x1, int x2, double originalImageX,
+                             int y1, int y2, double originalImageY) {
+    int x1y1 = top[x1];
+    int x1y2 = bottom[x1];
+    int x2y1 = top[x2];
+    int x2y2 = bottom[x2];
 
     // Avoid division by zero for edge cases
     double xWeight = (x2 > x1) ? (originalImageX - x1) / (x2 - x1) : 0;
     double yWeight = (y2 > y1) ? (originalImageY - y1) / (y2 - y1) : 0;
 
     // Interpolate Red channel
-    double mRed = x1y1.getRed() * (1 - xWeight) + x2y1.getRed() * xWeight;
-    double nRed = x1y2.getRed() * (1 - xWeight) + x2y2.getRed() * xWeight;
+    double mRed = Pixel.red(x1y1) * (1 - xWeight) + Pixel.red(x2y1) * xWeight;
+    double nRed = Pixel.red(x1y2) * (1 - xWeight) + Pixel.red(x2y2) * xWeight;
     int cRed = (int) (mRed * (1 - yWeight) + nRed * yWeight);
 
     // Interpolate Green channel
-    double mGreen = x1y1.getGreen() * (1 - xWeight) + x2y1.getGreen() * xWeight;
-    double nGreen = x1y2.getGreen() * (1 - xWeight) + x2y2.getGreen() * xWeight;
+    double mGreen = Pixel.green(x1y1) * (1 - xWeight) + Pixel.green(x2y1) * xWeight;
+    double nGreen = Pixel.green(x1y2) * (1 - xWeight) + Pixel.green(x2y2) * xWeight;
     int cGreen = (int) (mGreen * (1 - yWeight) + nGreen * yWeight);
 
     // Interpolate Blue channel
-    double mBlue = x1y1.getBlue() * (1 - xWeight) + x2y1.getBlue() * xWeight;
-    double nBlue = x1y2.getBlue() * (1 - xWeight) + x2y2.getBlue() * xWeight;
+    double mBlue = Pixel.blue(x1y1) * (1 - xWeight) + Pixel.blue(x2y1) * xWeight;
+    double nBlue = Pixel.blue(x1y2) * (1 - xWeight) + Pixel.blue(x2y2) * xWeight;
     int cBlue = (int) (mBlue * (1 - yWeight) + nBlue * yWeight);
 
-    return new Pixel(cRed, cGreen, cBlue);
+    return Pixel.pack(cRed, cGreen, cBlue);
   }
 
 
@@ -103,7 +154,9 @@ public class CustomImage3 extends CustomImage2 implements ICustomImage3 {
    * Applies a masking operation on the current image by combining it with a masked image and an
    * original image. The masking logic sets pixels from the original image to the resulting image if
    * the corresponding pixel in the masked image is non-black (i.e., all RGB values are non-zero).
-   * Otherwise, it retains the pixels from the current image.
+   * Otherwise, it retains the pixels from the current image. If the current and the original image
+   * are both greyscale the result is greyscale as well, and if either has 16 bits per channel the
+   * result has 16 bits per channel.
    *
    * @param maskedImage   The image used as the mask. Must have same dimensions as current image.
    * @param originalImage The original image whose pixels will be used when mask conditions are
@@ -113,24 +166,120 @@ public class CustomImage3 extends CustomImage2 implements ICustomImage3 {
    */
   @Override
   public Image maskImg(Image proccessedImage, Image maskedImage, Image originalImage) {
-    if (maskedImage.getHeight() != originalImage.getHeight()
-            || maskedImage.getWidth() != originalImage.getWidth()) {
-      throw new IllegalArgumentException("Masked and masked image must have the same size.");
+    checkMaskSize(maskedImage.getWidth(), maskedImage.getHeight(), originalImage);
+    return maskImg(proccessedImage, 0, 0, BinaryMask.of(maskedImage), originalImage);
+  }
+
+  /**
+   * Applies a masking operation like maskImg with a mask that is already built, where the
+   * processed image covers only a region of the original image, so that a filter needs to be
+   * computed only where the mask uses it. Each row is copied as the spans of the runs of the
+   * mask, so the processed image is only read where the mask selects it.
+   *
+   * @param proccessedImage The processed region.
+   * @param x               The x-coordinate of the top left corner of the region.
+   * @param y               The y-coordinate of the top left corner of the region.
+   * @param mask            The mask. Must have same dimensions as original image.
+   * @param originalImage   The original image whose pixels will be used where the mask does not
+   *                        select the processed image.
+   * @return A new image resulting from the masking operation.
+   * @throws IllegalArgumentException If dimensions of mask & original image do not match.
+   */
+  @Override
+  public Image maskImg(Image proccessedImage, int x, int y, BinaryMask mask,
+                       Image originalImage) {
+    checkMaskSize(mask.getWidth(), mask.getHeight(), originalImage);
+    int width = originalImage.getWidth();
+    int height = originalImage.getHeight();
+
+    if (proccessedImage.isHighBitDepth() || originalImage.isHighBitDepth()) {
+      Image maskedMaskedImage = new Image16(width, height);
+      int[] row = new int[3 * width];
+      for (int j = 0; j < height; j++) {
+        int line = j;
+        mask.forEachRun(0, j, width, (start, end, selected) -> {
+          if (selected) {
+            proccessedImage.getRowSamples(start - x, line - y, end - start, row, 3 * start);
+          } else {
+            originalImage.getRowSamples(start, line, end - start, row, 3 * start);
+          }
+        });
+        maskedMaskedImage.setRowSamples(0, j, width, row, 0);
+      }
+      return maskedMaskedImage;
     }
-    Image maskedMaskedImage = new Image(proccessedImage.getWidth(), proccessedImage.getHeight());
-    for (int y = 0; y < proccessedImage.getHeight(); y++) {
-      for (int x = 0; x < proccessedImage.getWidth(); x++) {
-        Pixel temp = proccessedImage.getPixel(x, y);
-        Pixel maskedTemp = maskedImage.getPixel(x, y);
-        Pixel originalTemp = originalImage.getPixel(x, y);
-        if (maskedTemp.getBlue() != 0 && maskedTemp.getRed() != 0 && maskedTemp.getGreen() != 0) {
-          maskedMaskedImage.setPixel(x, y, originalImage.getPixel(x, y).getRed(),
-                  originalTemp.getGreen(), originalTemp.getBlue());
-        } else {
-          maskedMaskedImage.setPixel(x, y, temp.getRed(), temp.getGreen(), temp.getBlue());
-        }
+
+    TileSource source = (left, row, length, dst, offset) ->
+        mask.forEachRun(left, row, length, (start, end, selected) -> {
+          if (selected) {
+            proccessedImage.getRowSpan(start - x, row - y, end - start, dst,
+                    offset + start - left);
+          } else {
+            originalImage.getRowSpan(start, row, end - start, dst, offset + start - left);
+          }
+        });
+    if (proccessedImage instanceof GrayImage && originalImage instanceof GrayImage) {
+      GrayImage maskedMaskedImage = new GrayImage(width, height);
+      int[] row = new int[width];
+      for (int j = 0; j < height; j++) {
+        source.computeSpan(0, j, width, row, 0);
+        maskedMaskedImage.setRowSpan(0, j, width, row, 0);
       }
+      return maskedMaskedImage;
     }
-    return maskedMaskedImage;
+    return ImageStorage.render(width, height, source, proccessedImage, originalImage);
+  }
+
+  /**
+   * Applies a masking operation like maskImg with a mask that is already built, computing the
+   * processed pixels with a pointwise operation. Each span of the result is read from the original
+   * image and the operation is applied only to the runs that the mask selects, so the cost of the
+   * operation is proportional to the area the mask selects.
+   *
+   * @param operator      The operation, transforming spans of packed pixels.
+   * @param mask          The mask. Must have same dimensions as original image.
+   * @param originalImage The original image, with 8 bits per channel.
+   * @return A new image resulting from the masking operation.
+   * @throws IllegalArgumentException If dimensions of mask & original image do not match, or if
+   *                                  the original image has 16 bits per channel.
+   */
+  @Override
+  public Image maskImg(RowOperator operator, BinaryMask mask, Image originalImage) {
+    checkMaskSize(mask.getWidth(), mask.getHeight(), originalImage);
+    if (originalImage.isHighBitDepth()) {
+      throw new IllegalArgumentException("A pointwise mask needs 8 bits per channel.");
+    }
+    TileSource source = (x, y, length, dst, offset) -> {
+      originalImage.getRowSpan(x, y, length, dst, offset);
+      mask.forEachRun(x, y, length, (start, end, selected) -> {
+        if (selected) {
+          operator.apply(dst, offset + start - x, end - start);
+        }
+      });
+    };
+    return ImageStorage.render(originalImage.getWidth(), originalImage.getHeight(), source,
+            originalImage);
+  }
+
+  private static void checkMaskSize(int width, int height, Image originalImage) {
+    if (height != originalImage.getHeight() || width != originalImage.getWidth()) {
+      throw new IllegalArgumentException("Masked and masked image must have the same size.");
+    }
+  }
+
+  /**
+   * Crops the image to a rectangular region. The result is a view over the region that does not
+   * copy any pixels until it or the image is written to.
+   *
+   * @param x      The x-coordinate of the top left corner of the region.
+   * @param y      The y-coordinate of the top left corner of the region.
+   * @param width  The width of the region.
+   * @param height The height of the region.
+   * @return A new image showing the region.
+   * @throws IllegalArgumentException If the region is empty or does not lie inside the image.
+   */
+  @Override
+  public Image crop(Image image, int x, int y, int width, int height) {
+    return ImageView.crop(image, x, y, width, height);
   }
 }
@@ -0,0 +1,155 @@
+package model.database;
+
+/**
+ * FixedPoint evaluates the color formulas of the operations with integer arithmetic on
+ * fixed-point weights, giving exactly the result of truncating the double formula with (int).
+ * The weights are rounded to a whole number of 1/2^Q steps, so the integer sum is off from the
+ * exact sum by at most half a step per unit of input. When the integer sum lands that close to a
+ * whole number, truncating it could give a different result than the double formula, so those
+ * inputs, a small fraction of them, are evaluated with the double formula instead. Every other
+ * input is computed with a few integer multiplies and a shift.
+ */
+public final class FixedPoint {
+
+  /**
+   * The number of fractional bits of the weights of a Linear formula.
+   */
+  public static final int Q16 = 16;
+
+  /**
+   * The number of fractional bits of the coefficients of a Quadratic formula.
+   */
+  public static final int Q32 = 32;
+
+  private FixedPoint() {
+  }
+
+  /**
+   * Returns the weight rounded to the nearest multiple of 1/2^shift, in units of 1/2^shift.
+   *
+   * @param weight The weight.
+   * @param shift  The number of fractional bits.
+   * @return The fixed-point weight.
+   */
+  public static long toFixed(double weight, int shift) {
+    return Math.round(Math.scalb(weight, shift));
+  }
+
+  /**
+   * A weighted sum of three 8-bit channels, w0 * c0 + w1 * c1 + w2 * c2, truncated to an int.
+   */
+  public static final class Linear {
+
+    private static final int ONE = 1 << Q16;
+    private static final int MASK = ONE - 1;
+
+    private final double w0;
+    private final double w1;
+    private final double w2;
+    private final int q0;
+    private final int q1;
+    private final int q2;
+    private final int guard;
+
+    /**
+     * Creates the weighted sum with the given weights.
+     *
+     * @param w0 The weight of the first channel.
+     * @param w1 The weight of the second channel.
+     * @param w2 The weight of the third channel.
+     * @throws IllegalArgumentException If the weights are so large that the fixed-point sum could
+     *                                  overflow an int.
+     */
+    public Linear(double w0, double w1, double w2) {
+      if (Math.abs(w0) + Math.abs(w1) + Math.abs(w2) >= 64) {
+        throw new IllegalArgumentException("Weights are too large for a fixed-point sum.");
+      }
+      this.w0 = w0;
+      this.w1 = w1;
+      this.w2 = w2;
+      this.q0 = (int) toFixed(w0, Q16);
+      this.q1 = (int) toFixed(w1, Q16);
+      this.q2 = (int) toFixed(w2, Q16);
+      // Half a step for each of the 3 * 255 units of input, and one more for the double formula
+      this.guard = 3 * 255 / 2 + 2;
+    }
+
+    /**
+     * Returns (int) (w0 * c0 + w1 * c1 + w2 * c2), the double formula evaluated left to right.
+     *
+     * @param c0 The first channel, 0-255.
+     * @param c1 The second channel, 0-255.
+     * @param c2 The third channel, 0-255.
+     * @return The truncated weighted sum.
+     */
+    public int apply(int c0, int c1, int c2) {
+      int sum = q0 * c0 + q1 * c1 + q2 * c2;
+      int fraction = sum & MASK;
+      if (fraction < guard || fraction > ONE - guard) {
+        return (int) (w0 * c0 + w1 * c1 + w2 * c2);
+      }
+      // Away from whole numbers, truncation is the floor for positive sums and one more otherwise
+      int whole = sum >> Q16;
+      return sum < 0 ? whole + 1 : whole;
+    }
+  }
+
+  /**
+   * A quadratic curve of an 8-bit level, a * x^2 + b * x + c, truncated to an int.
+   */
+  public static final class Quadratic {
+
+    private static final long ONE = 1L << Q32;
+    private static final long MASK = ONE - 1;
+
+    private final double a;
+    private final double b;
+    private final double c;
+    private final long qa;
+    private final long qb;
+    private final long qc;
+    private final long guard;
+    private final boolean exact;
+
+    /**
+     * Creates the curve with the given coefficients. Curves whose terms are too large for 64-bit
+     * fixed point are always evaluated with the double formula.
+     *
+     * @param a The coefficient of x^2.
+     * @param b The coefficient of x.
+     * @param c The constant term.
+     */
+    public Quadratic(double a, double b, double c) {
+      this.a = a;
+      this.b = b;
+      this.c = c;
+      double largest = Math.abs(a) * 255 * 255 + Math.abs(b) * 255 + Math.abs(c);
+      // Keep the fixed-point sum below 2^62, and require finite coefficients
+      this.exact = largest < 1 << 29;
+      this.qa = exact ? toFixed(a, Q32) : 0;
+      this.qb = exact ? toFixed(b, Q32) : 0;
+      this.qc = exact ? toFixed(c, Q32) : 0;
+      // Half a step for each of the 255^2 + 255 + 1 units of input, plus the rounding error of
+      // the double formula, a few units in the last place of its largest term
+      this.guard = (255 * 255 + 255 + 1) / 2 + 1 + (long) Math.scalb(largest, Q32 - 50) + 1;
+    }
+
+    /**
+     * Returns (int) (a * x^2 + b * x + c), the double formula evaluated left to right.
+     *
+     * @param x The level, 0-255.
+     * @return The truncated curve value.
+     */
+    public int apply(int x) {
+      if (exact) {
+        long sum = qa * x * x + qb * x + qc;
+        long fraction = sum & MASK;
+        if (fraction >= guard && fraction <= ONE - guard) {
+          long whole = sum >> Q32;
+          return (int) (sum < 0 ? whole + 1 : whole);
+        }
+      }
+      return (int) (a * Math.pow(x, 2) + b * x + c);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package model.database;
+
+/**
+ * GrayImage is a greyscale image stored as a single byte plane, one value per pixel. Reading a
+ * pixel through the Image accessors returns the grey value in all three color components, so a
+ * GrayImage can be passed to any color operation, which then produces an RGB image. Operations
+ * that keep an image grey work on the plane directly.
+ */
+public class GrayImage extends Image {
+
+  protected final byte[] plane;
+
+  /**
+   * Constructs a black GrayImage with the specified width and height.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @throws IllegalArgumentException If the image has too many pixels for one plane.
+   */
+  public GrayImage(int width, int height) {
+    this(width, height, new byte[arrayLength(width, height, 1)]);
+  }
+
+  /**
+   * Constructs a GrayImage around an existing plane. The plane is used as it is, not copied.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param plane  The grey values, width * height values in row-major order.
+   * @throws IllegalArgumentException If the plane does not hold width * height values.
+   */
+  public GrayImage(int width, int height, byte[] plane) {
+    super(width, height, null);
+    if (plane.length != (long) width * height) {
+      throw new IllegalArgumentException("Plane size does not match the image size.");
+    }
+    this.plane = plane;
+  }
+
+  /**
+   * Returns the plane holding the grey values.
+   *
+   * @return The grey plane in row-major order.
+   */
+  public byte[] getPlane() {
+    return plane;
+  }
+
+  /**
+   * Returns the grey value of the pixel at the specified (x, y) coordinates.
+   *
+   * @param x The x-coordinate of the pixel.
+   * @param y The y-coordinate of the pixel.
+   * @return The grey value (0-255).
+   * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
+   */
+  public int getValue(int x, int y) {
+    checkBounds(x, y);
+    return plane[y * width + x] & 0xFF;
+  }
+
+  /**
+   * Sets the grey value of the pixel at the specified (x, y) coordinates. The value is clamped to
+   * 0-255.
+   *
+   * @param x     The x-coordinate of the pixel.
+   * @param y     The y-coordinate of the pixel.
+   * @param value The grey value.
+   * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
+   */
+  public void setValue(int x, int y, int value) {
+    checkBounds(x, y);
+    beforeWrite();
+    plane[y * width + x] = (byte) Pixel.clamp(value);
+  }
+
+  /**
+   * Expands this image into a packed RGB image with the grey value in every channel.
+   *
+   * @return A new RGB image with the same pixels.
+   */
+  public Image toRgb() {
+    Image image = new Image(width, height);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      getRowSpan(0, y, width, row, 0);
+      image.setRowSpan(0, y, width, row, 0);
+    }
+    return image;
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    return getValue(x, y) * 0x010101;
+  }
+
+  /**
+   * Sets the pixel at the specified (x, y) coordinates. Only grey values, with equal red, green
+   * and blue components, can be stored.
+   *
+   * @throws IllegalArgumentException If the value is not grey.
+   */
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    checkBounds(x, y);
+    beforeWrite();
+    plane[y * width + x] = (byte) toGray(rgb);
+  }
+
+  @Override
+  public void getRowSpan(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    int index = y * width + x;
+    for (int i = 0; i < length; i++) {
+      dst[offset + i] = (plane[index + i] & 0xFF) * 0x010101;
+    }
+  }
+
+  /**
+   * Writes a horizontal span of pixels. Only grey values, with equal red, green and blue
+   * components, can be stored.
+   *
+   * @throws IllegalArgumentException If a value is not grey.
+   */
+  @Override
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    checkSpan(x, y, length);
+    beforeWrite();
+    int index = y * width + x;
+    for (int i = 0; i < length; i++) {
+      plane[index + i] = (byte) toGray(src[offset + i]);
+    }
+  }
+
+  /**
+   * Returns the grey value of a packed RGB value.
+   *
+   * @param rgb The packed RGB value.
+   * @return The grey value.
+   * @throws IllegalArgumentException If the red, green and blue components differ.
+   */
+  private static int toGray(int rgb) {
+    int value = Pixel.blue(rgb);
+    if (Pixel.red(rgb) != value || Pixel.green(rgb) != value) {
+      throw new IllegalArgumentException("Grey images can only hold grey pixels.");
+    }
+    return value;
+  }
+}
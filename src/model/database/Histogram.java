@@ -0,0 +1,214 @@
+package model.database;
+
+import java.util.Arrays;
+
+/**
+ * Histogram counts how many pixels of an image have each of the 256 levels in each of the red,
+ * green and blue channels. It is computed in one pass over the rows of the image: every band of
+ * rows counts into its own tables, in parallel, and the tables are added up when the bands are
+ * done. A histogram does not change, so one computed for an image can be shared by every operation
+ * that reads the image, as long as the image does not change.
+ */
+public final class Histogram {
+
+  /**
+   * The number of levels of a channel.
+   */
+  public static final int LEVELS = 256;
+
+  private final int[][] counts;
+  private final long pixelCount;
+
+  Histogram(int[][] counts, long pixelCount) {
+    this.counts = counts;
+    this.pixelCount = pixelCount;
+  }
+
+  /**
+   * Computes the histogram of an image. An image with 16 bits per channel is counted on the
+   * 8-bit levels of its pixels.
+   *
+   * @param image The image to count.
+   * @return The histogram.
+   */
+  public static Histogram of(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    // The tables of the three channels, one after the other
+    int[] total = new int[3 * LEVELS];
+    RowBands.forEachBand(width, height, (fromY, toY) -> {
+      int[] band = new int[3 * LEVELS];
+      int[] row = new int[width];
+      for (int y = fromY; y < toY; y++) {
+        image.getRowSpan(0, y, width, row, 0);
+        for (int x = 0; x < width; x++) {
+          int rgb = row[x];
+          band[(rgb >> 16) & 0xFF]++;
+          band[LEVELS + ((rgb >> 8) & 0xFF)]++;
+          band[2 * LEVELS + (rgb & 0xFF)]++;
+        }
+      }
+      synchronized (total) {
+        for (int i = 0; i < total.length; i++) {
+          total[i] += band[i];
+        }
+      }
+    });
+    int[][] counts = new int[3][];
+    for (int channel = 0; channel < 3; channel++) {
+      counts[channel] = Arrays.copyOfRange(total, channel * LEVELS, (channel + 1) * LEVELS);
+    }
+    return new Histogram(counts, (long) width * height);
+  }
+
+  /**
+   * Returns the number of pixels counted.
+   *
+   * @return The number of pixels.
+   */
+  public long getPixelCount() {
+    return pixelCount;
+  }
+
+  /**
+   * Returns the number of pixels that have a level in a channel.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @param level   The level, 0-255.
+   * @return The number of pixels.
+   */
+  public int getCount(int channel, int level) {
+    return counts[channel][level];
+  }
+
+  /**
+   * Returns the counts of all levels of a channel.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @return A new array holding the count of every level.
+   */
+  public int[] getCounts(int channel) {
+    return counts[channel].clone();
+  }
+
+  /**
+   * Returns the counts of the levels of a channel from one level to another, with the counts of
+   * the levels outside them left as zero.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @param from    The lowest level counted.
+   * @param to      The highest level counted.
+   * @return A new array holding the count of every level.
+   */
+  public int[] getCounts(int channel, int from, int to) {
+    int[] window = new int[LEVELS];
+    System.arraycopy(counts[channel], from, window, from, to - from + 1);
+    return window;
+  }
+
+  /**
+   * Returns the cumulative counts of a channel, the number of pixels at or below each level.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @return A new array holding the cumulative count of every level.
+   */
+  public long[] getCumulative(int channel) {
+    long[] cumulative = new long[LEVELS];
+    long sum = 0;
+    for (int level = 0; level < LEVELS; level++) {
+      sum += counts[channel][level];
+      cumulative[level] = sum;
+    }
+    return cumulative;
+  }
+
+  /**
+   * Returns the level with the largest count of a channel from one level to another. Of levels
+   * with equal counts the lowest is returned, and 0 if none of the levels is counted.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @param from    The lowest level searched.
+   * @param to      The highest level searched.
+   * @return The peak level.
+   */
+  public int getPeak(int channel, int from, int to) {
+    int largest = 0;
+    int peak = 0;
+    for (int level = from; level <= to; level++) {
+      if (counts[channel][level] > largest) {
+        largest = counts[channel][level];
+        peak = level;
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * Returns the largest count of a channel from one level to another, or 0 if none of the levels
+   * is counted.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @param from    The lowest level searched.
+   * @param to      The highest level searched.
+   * @return The largest count.
+   */
+  public int getMaxCount(int channel, int from, int to) {
+    int largest = 0;
+    for (int level = from; level <= to; level++) {
+      largest = Math.max(largest, counts[channel][level]);
+    }
+    return largest;
+  }
+
+  /**
+   * Returns the lowest level of a channel that any pixel has.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @return The lowest level, or -1 if no pixel is counted.
+   */
+  public int getMin(int channel) {
+    for (int level = 0; level < LEVELS; level++) {
+      if (counts[channel][level] > 0) {
+        return level;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the highest level of a channel that any pixel has.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @return The highest level, or -1 if no pixel is counted.
+   */
+  public int getMax(int channel) {
+    for (int level = LEVELS - 1; level >= 0; level--) {
+      if (counts[channel][level] > 0) {
+        return level;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the lowest level of a channel at or below which at least a fraction of the pixels
+   * lie.
+   *
+   * @param channel  The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @param fraction The fraction of the pixels, 0-1.
+   * @return The level, or -1 if no pixel is counted.
+   */
+  public int getPercentile(int channel, double fraction) {
+    if (pixelCount == 0) {
+      return -1;
+    }
+    long[] cumulative = getCumulative(channel);
+    double needed = fraction * pixelCount;
+    for (int level = 0; level < LEVELS; level++) {
+      if (cumulative[level] > 0 && cumulative[level] >= needed) {
+        return level;
+      }
+    }
+    return LEVELS - 1;
+  }
+}
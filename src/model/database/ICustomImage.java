@@ -77,6 +77,51 @@ public interface ICustomImage {
 
   Image brighten(int inc, Image image);
 
+  /**
+   * Returns the tone table of brighten, which adds the increment to every channel.
+   *
+   * @param inc The amount to increase the brightness
+   * @return The compiled tone table
+   */
+  ToneLut brightenLut(int inc);
+
+  /**
+   * Returns the color transform of brighten, which adds the increment to every channel.
+   *
+   * @param inc The amount to increase the brightness
+   * @return The color transform
+   */
+  AffineColorTransform brightenTransform(int inc);
+
+  /**
+   * Returns the color transform of sepia.
+   *
+   * @return The color transform
+   */
+  AffineColorTransform sepiaTransform();
+
+  /**
+   * Returns the color transform of calculateLuma, with the luma in all three channels.
+   *
+   * @return The color transform
+   */
+  AffineColorTransform lumaTransform();
+
+  /**
+   * Returns the color transform of calculateIntensity, with the intensity in all three channels.
+   *
+   * @return The color transform
+   */
+  AffineColorTransform intensityTransform();
+
+  /**
+   * Returns the color transform of a component image, with the channel in all three channels.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE
+   * @return The color transform
+   */
+  AffineColorTransform componentTransform(int channel);
+
   /**
    * Applies a blur filter to the image.
    *
@@ -84,6 +129,14 @@ public interface ICustomImage {
    */
   Image blur(Image image);
 
+  /**
+   * Applies a blur of the given radius to the image, made of several passes of a box filter.
+   *
+   * @param radius The number of pixels the blur reaches on each side of a pixel, at least 1
+   * @return A new Image object representing the blurred image
+   */
+  Image blur(int radius, Image image);
+
   /**
    * Applies a sharpen filter to the image.
    *
@@ -91,6 +144,15 @@ public interface ICustomImage {
    */
   Image sharpen(Image image);
 
+  /**
+   * Sharpens the image by the given amount, against the mean of a box of the given radius.
+   *
+   * @param radius The number of pixels the box reaches on each side of a pixel, at least 1
+   * @param amount How much of the difference from the mean is added, at least 0
+   * @return A new Image object representing the sharpened image
+   */
+  Image sharpen(int radius, double amount, Image image);
+
   /**
    * Applies a sepia filter to the image.
    *
@@ -140,5 +202,85 @@ public interface ICustomImage {
    */
   Image getGreenImage(Image image);
 
+  /**
+   * Flips the image horizontally, overwriting its pixels.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void fliphInPlace(Image image);
+
+  /**
+   * Flips the image vertically, overwriting its pixels.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void flipvInPlace(Image image);
+
+  /**
+   * Brightens the image by a specified increment, overwriting its pixels.
+   *
+   * @param inc   The amount to increase the brightness
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void brightenInPlace(int inc, Image image);
+
+  /**
+   * Applies a blur filter to the image, overwriting its pixels.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void blurInPlace(Image image);
+
+  /**
+   * Applies a sharpen filter to the image, overwriting its pixels.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void sharpenInPlace(Image image);
+
+  /**
+   * Applies a sepia filter to the image, overwriting its pixels.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void sepiaInPlace(Image image);
+
+  /**
+   * Replaces the pixels of the image by their luma.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void calculateLumaInPlace(Image image);
+
+  /**
+   * Replaces the pixels of the image by their intensity.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void calculateIntensityInPlace(Image image);
 
+  /**
+   * Replaces the pixels of the image by their value.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void calculateValueInPlace(Image image);
+
+  /**
+   * Replaces the pixels of the image by one of their channels.
+   *
+   * @param image   The image to change, which must be editable in place.
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  void getComponentInPlace(Image image, int channel);
 }
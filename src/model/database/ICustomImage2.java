@@ -17,6 +17,14 @@ public interface ICustomImage2 extends ICustomImage {
    */
   BufferedImage createHistogram(Image image) throws FileNotFoundException;
 
+  /**
+   * Draws a histogram that is already computed, like createHistogram.
+   *
+   * @param histogram the histogram to draw.
+   * @return a BufferedImage representing the histogram.
+   */
+  BufferedImage createHistogram(Histogram histogram);
+
 
   /**
    * Displays the given image in a viewable format.
@@ -55,6 +63,77 @@ public interface ICustomImage2 extends ICustomImage {
    */
   Image colorCorrectionCommand(Image image) throws FileNotFoundException;
 
+  /**
+   * Applies color correction like colorCorrectionCommand, with the peaks taken from a histogram of
+   * the image that is already computed.
+   *
+   * @param image     the image to correct
+   * @param histogram the histogram of the image
+   * @return a new image with corrected colors
+   * @throws FileNotFoundException if the image is null or not found
+   */
+  Image colorCorrectionCommand(Image image, Histogram histogram) throws FileNotFoundException;
+
+  /**
+   * Stretches the levels of the image so that its darkest samples become black and its brightest
+   * white, by adjusting it with the levels of autoLevelsPoints.
+   *
+   * @param image     the image to adjust
+   * @param histogram the histogram of the image
+   * @return a new image with stretched levels
+   * @throws FileNotFoundException if the image is null or not found
+   */
+  Image autoLevels(Image image, Histogram histogram) throws FileNotFoundException;
+
+  /**
+   * Returns the black, mid and white point that autoLevels adjusts an image with the given
+   * histogram to.
+   *
+   * @param histogram the histogram of the image
+   * @return the points as {black, mid, white}, or null if the levels cannot be stretched
+   */
+  int[] autoLevelsPoints(Histogram histogram);
+
+  /**
+   * Returns the tone table of adjustColorCommand, which applies the levels curve to every
+   * channel.
+   *
+   * @param b the brightness value used in the equation
+   * @param m the midpoint value used in the equation
+   * @param w the whitepoint value used in the equation
+   * @return the compiled tone table
+   */
+  ToneLut levelsLut(int b, int m, int w);
+
+  /**
+   * Returns the tone table of colorCorrectionCommand for the image, which adds the offsets that
+   * move the histogram peak of each channel to the average peak.
+   *
+   * @param image the 8-bit image whose histogram gives the offsets
+   * @return the compiled tone table
+   */
+  ToneLut colorCorrectionLut(Image image);
+
+  /**
+   * Returns the tone table of colorCorrectionCommand for an image with the given histogram.
+   *
+   * @param histogram the histogram of the image
+   * @return the compiled tone table
+   */
+  ToneLut colorCorrectionLut(Histogram histogram);
+
+  /**
+   * Returns a histogram of the image for previews, counted on a stratified sample of its pixels
+   * while the confidence bound of every channel peak spans no more levels than the tolerance, and
+   * on every pixel otherwise.
+   *
+   * @param image     the image to count
+   * @param samples   the number of pixels to sample
+   * @param tolerance the widest peak bound, in levels, for which the sample is used
+   * @return the sampled or the exact histogram
+   */
+  Histogram previewHistogram(Image image, int samples, int tolerance);
+
   /**
    * Splits the current image horizontally based on a specified percentage. Pixels to the left of
    * the split (as determined by the percentage) are retained from the current image, and pixels to
@@ -67,4 +146,15 @@ public interface ICustomImage2 extends ICustomImage {
    */
   Image splitImg(Image srcImage, Image originalImage, String percentage);
 
+  /**
+   * Adjusts the levels of the image like adjustColorCommand, overwriting its pixels.
+   *
+   * @param image the image to change, which must be editable in place
+   * @param b     the brightness value used in the equation
+   * @param m     the midpoint value used in the equation
+   * @param w     the whitepoint value used in the equation
+   * @throws IllegalArgumentException if the image is not editable in place
+   */
+  void adjustColorInPlace(Image image, int b, int m, int w);
+
 }
@@ -1,7 +1,7 @@
 package model.database;
 
 /**
- * Interface for CustomImage3 that has methods for masking and downscaling. This interface
+ * Interface for CustomImage3 that has methods for masking, downscaling and cropping. This interface
  * extends ICustomImage2.
  */
 public interface ICustomImage3 extends ICustomImage2 {
@@ -33,4 +33,47 @@ public interface ICustomImage3 extends ICustomImage2 {
    *                                  match.
    */
   Image maskImg(Image proccessedImage, Image maskedImage, Image originalImage);
+
+  /**
+   * Applies a masking operation like maskImg with a mask that is already built, where the
+   * processed image covers only a region of the original image. The region must contain every
+   * pixel that the mask selects.
+   *
+   * @param proccessedImage The processed region.
+   * @param x               The x-coordinate of the top left corner of the region.
+   * @param y               The y-coordinate of the top left corner of the region.
+   * @param mask            The mask. Must have same dimensions as original image.
+   * @param originalImage   The original image whose pixels will be used where the mask does not
+   *                        select the processed image.
+   * @return A new image resulting from the masking operation.
+   * @throws IllegalArgumentException If dimensions of mask and original image do not match.
+   */
+  Image maskImg(Image proccessedImage, int x, int y, BinaryMask mask, Image originalImage);
+
+  /**
+   * Applies a masking operation like maskImg with a mask that is already built, where the
+   * processed pixels are computed with a pointwise operation on the original image. Only the
+   * pixels that the mask selects are computed.
+   *
+   * @param operator      The operation, transforming spans of packed pixels.
+   * @param mask          The mask. Must have same dimensions as original image.
+   * @param originalImage The original image, with 8 bits per channel.
+   * @return A new image resulting from the masking operation.
+   * @throws IllegalArgumentException If dimensions of mask and original image do not match, or if
+   *                                  the original image has 16 bits per channel.
+   */
+  Image maskImg(RowOperator operator, BinaryMask mask, Image originalImage);
+
+  /**
+   * Crops the image to a rectangular region. The result is a view over the region that does not
+   * copy any pixels until it or the image is written to.
+   *
+   * @param x      The x-coordinate of the top left corner of the region.
+   * @param y      The y-coordinate of the top left corner of the region.
+   * @param width  The width of the region.
+   * @param height The height of the region.
+   * @return A new image showing the region.
+   * @throws IllegalArgumentException If the region is empty or does not lie inside the image.
+   */
+  Image crop(Image image, int x, int y, int width, int height);
 }
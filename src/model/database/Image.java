@@ -1,26 +1,80 @@
 package model.database;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * Image class represents an image with width and height. It contains setters and getters for pixel.
- * It also contains getters for width and height.
+ * Image class represents an image with width and height. The pixels are stored in a single packed
+ * int array in row-major order, where each element holds one pixel as 0xRRGGBB. It contains
+ * primitive accessors for single pixels and row spans, as well as the Pixel based setters and
+ * getters. It also contains getters for width and height. Views created over an image read its
+ * pixels directly; before the image is written to, or when it is released, its views copy the
+ * pixels they show so that they keep their content. The pixel array is taken from the RasterPool
+ * and can be handed back with recycle once the image is no longer used.
  */
 public class Image {
 
+  // The longest array the virtual machine allocates, a few elements short of Integer.MAX_VALUE
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
   protected int width;
   protected int height;
-  protected Pixel[][] pixels;
+  protected int[] pixels;
+
+  private volatile List<WeakReference<ImageView>> views;
+  // The number of lazily evaluated images that may still read this image
+  private final AtomicInteger pins = new AtomicInteger();
 
   /**
    * Constructs an Image object with the specified width and height.
-   * Initializes a 2D array of Pixel objects to store pixel data.
+   * Initializes a packed int array of width * height pixels to store pixel data, reusing a pooled
+   * array of that size if there is one.
    *
    * @param width  The width of the image.
    * @param height The height of the image.
+   * @throws IllegalArgumentException If the image has too many pixels for one array.
    */
   public Image(int width, int height) {
     this.width = width;
     this.height = height;
-    pixels = new Pixel[width][height];
+    pixels = RasterPool.acquire(arrayLength(width, height, 1));
+  }
+
+  /**
+   * Constructs an Image object with the specified width and height around an existing packed
+   * pixel array. Subclasses that keep their pixels in a different storage pass null and override
+   * the pixel accessors.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param pixels The packed row-major pixel array, or null.
+   */
+  protected Image(int width, int height, int[] pixels) {
+    this.width = width;
+    this.height = height;
+    this.pixels = pixels;
+  }
+
+  /**
+   * Returns the length of an array holding the given number of values for every pixel of an image
+   * of the given size. The length is computed without overflow, so that an image too large for a
+   * single array is rejected instead of getting an array of the wrong size.
+   *
+   * @param width          The width of the image.
+   * @param height         The height of the image.
+   * @param valuesPerPixel The number of values held for each pixel.
+   * @return The length of the array.
+   * @throws IllegalArgumentException If the values do not fit in one array.
+   */
+  static int arrayLength(int width, int height, int valuesPerPixel) {
+    long length = (long) width * height * valuesPerPixel;
+    if (length > MAX_ARRAY_LENGTH) {
+      throw new IllegalArgumentException("An image of " + width + " x " + height
+              + " pixels is too large to be kept on the heap; use mapped storage.");
+    }
+    return (int) length;
   }
 
   /**
@@ -42,7 +96,137 @@ public class Image {
   }
 
   /**
-   * Sets the pixel at the specified (x, y) coordinates with the given RGB values.
+   * Returns the packed 0xRRGGBB value of the pixel at the specified (x, y) coordinates.
+   *
+   * @param x The x-coordinate of the pixel to retrieve.
+   * @param y The y-coordinate of the pixel to retrieve.
+   * @return The packed RGB value of the pixel.
+   * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
+   */
+  public int getRGB(int x, int y) {
+    checkBounds(x, y);
+    return raster()[y * width + x];
+  }
+
+  /**
+   * Sets the pixel at the specified (x, y) coordinates to the given packed 0xRRGGBB value. Any bits
+   * above the 24 color bits are ignored.
+   *
+   * @param x   The x-coordinate of the pixel to set.
+   * @param y   The y-coordinate of the pixel to set.
+   * @param rgb The packed RGB value of the pixel.
+   * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
+   */
+  public void setRGB(int x, int y, int rgb) {
+    checkBounds(x, y);
+    beforeWrite();
+    raster()[y * width + x] = rgb & 0xFFFFFF;
+  }
+
+  /**
+   * Copies a horizontal span of packed pixels of row y, starting at column x, into the given
+   * array.
+   *
+   * @param x      The x-coordinate of the first pixel of the span.
+   * @param y      The row of the span.
+   * @param length The number of pixels to copy.
+   * @param dst    The array receiving the packed RGB values.
+   * @param offset The index in dst of the first copied pixel.
+   * @throws IndexOutOfBoundsException If the span is out of bounds of the image.
+   */
+  public void getRowSpan(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    System.arraycopy(raster(), y * width + x, dst, offset, length);
+  }
+
+  /**
+   * Writes a horizontal span of packed pixels into row y, starting at column x. The values must
+   * already be valid 0xRRGGBB values.
+   *
+   * @param x      The x-coordinate of the first pixel of the span.
+   * @param y      The row of the span.
+   * @param length The number of pixels to write.
+   * @param src    The array holding the packed RGB values.
+   * @param offset The index in src of the first pixel to write.
+   * @throws IndexOutOfBoundsException If the span is out of bounds of the image.
+   */
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    checkSpan(x, y, length);
+    beforeWrite();
+    System.arraycopy(src, offset, raster(), y * width + x, length);
+  }
+
+  /**
+   * Visits the rows of the image from top to bottom. Each row is read with one span copy into a
+   * buffer that is reused for every row, which is the preferred way to read a whole image.
+   *
+   * @param visitor The visitor receiving each row.
+   */
+  public void forEachRow(RowVisitor visitor) {
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      getRowSpan(0, y, width, row, 0);
+      visitor.visit(y, row);
+    }
+  }
+
+  /**
+   * Returns whether this image keeps 16 bits per color channel. The 8-bit accessors of such an
+   * image round its samples, and operations keep their results at 16 bits.
+   *
+   * @return true for a 16-bit image, false for an 8-bit image.
+   */
+  public boolean isHighBitDepth() {
+    return false;
+  }
+
+  /**
+   * Copies a horizontal span of row y, starting at column x, as 16-bit samples into the given
+   * array: three values per pixel, red, green and blue, each 0-65535. An 8-bit image expands its
+   * values, so 255 becomes 65535.
+   *
+   * @param x      The x-coordinate of the first pixel of the span.
+   * @param y      The row of the span.
+   * @param length The number of pixels to copy.
+   * @param dst    The array receiving 3 * length samples.
+   * @param offset The index in dst of the first sample.
+   * @throws IndexOutOfBoundsException If the span is out of bounds of the image.
+   */
+  public void getRowSamples(int x, int y, int length, int[] dst, int offset) {
+    int[] row = new int[length];
+    getRowSpan(x, y, length, row, 0);
+    for (int i = 0; i < length; i++) {
+      dst[offset + 3 * i] = Image16.expand(Pixel.red(row[i]));
+      dst[offset + 3 * i + 1] = Image16.expand(Pixel.green(row[i]));
+      dst[offset + 3 * i + 2] = Image16.expand(Pixel.blue(row[i]));
+    }
+  }
+
+  /**
+   * Writes a horizontal span of 16-bit samples into row y, starting at column x: three values per
+   * pixel, red, green and blue. Values outside 0-65535 are clamped. An 8-bit image rounds the
+   * samples to 8 bits.
+   *
+   * @param x      The x-coordinate of the first pixel of the span.
+   * @param y      The row of the span.
+   * @param length The number of pixels to write.
+   * @param src    The array holding 3 * length samples.
+   * @param offset The index in src of the first sample.
+   * @throws IndexOutOfBoundsException If the span is out of bounds of the image.
+   */
+  public void setRowSamples(int x, int y, int length, int[] src, int offset) {
+    int[] row = new int[length];
+    for (int i = 0; i < length; i++) {
+      row[i] = (Image16.quantize(clampSample(src[offset + 3 * i])) << 16)
+              | (Image16.quantize(clampSample(src[offset + 3 * i + 1])) << 8)
+              | Image16.quantize(clampSample(src[offset + 3 * i + 2]));
+    }
+    setRowSpan(x, y, length, row, 0);
+  }
+
+  /**
+   * Sets the pixel at the specified (x, y) coordinates with the given RGB values. Values outside
+   * 0-255 are clamped, in the same way as a Pixel is.
    * Throws an exception if the coordinates are out of bounds.
    *
    * @param x          The x-coordinate of the pixel to set.
@@ -53,16 +237,13 @@ public class Image {
    * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
    */
   public void setPixel(int x, int y, int redValue, int greenValue, int blueValue) {
-    if (x >= 0 && x < width && y >= 0 && y < height) {
-      Pixel temp = new Pixel(redValue, greenValue, blueValue);
-      pixels[x][y] = temp;
-    } else {
-      throw new IndexOutOfBoundsException("Pixel coordinates out of bounds.");
-    }
+    setRGB(x, y, Pixel.pack(redValue, greenValue, blueValue));
   }
 
   /**
-   * Retrieves the pixel at the specified (x, y) coordinates.
+   * Retrieves the pixel at the specified (x, y) coordinates. The returned Pixel is a new object,
+   * so this method is kept for compatibility; loops over the image should use getRGB or
+   * getRowSpan instead.
    * Throws an exception if the coordinates are out of bounds.
    *
    * @param x The x-coordinate of the pixel to retrieve.
@@ -71,10 +252,142 @@ public class Image {
    * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
    */
   public Pixel getPixel(int x, int y) {
-    if (x >= 0 && x < width && y >= 0 && y < height) {
-      Pixel temp = pixels[x][y].getPixel();
-      return temp;
-    } else {
+    return Pixel.unpack(getRGB(x, y));
+  }
+
+  /**
+   * Makes every view over this image copy the pixels it shows, so that the views no longer depend
+   * on this image. This is done before the image is written to, and should be done when the image
+   * is dropped while views over it may still be in use, so that they do not keep it alive.
+   */
+  public void releaseViews() {
+    List<WeakReference<ImageView>> pending;
+    synchronized (this) {
+      pending = views;
+      views = null;
+    }
+    if (pending != null) {
+      for (WeakReference<ImageView> reference : pending) {
+        ImageView view = reference.get();
+        if (view != null) {
+          view.materialize();
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands the pixel array of this image back to the RasterPool, after views over the image have
+   * copied their pixels. The image must not be used afterwards: its pixel accessors throw an
+   * IllegalStateException instead of reading an array that another image may have reused. Nothing
+   * is done for an image that a lazily evaluated image still reads, or for an image that does not
+   * keep its pixels in a packed array.
+   */
+  public void recycle() {
+    int[] raster = pixels;
+    if (isPinned() || raster == null) {
+      return;
+    }
+    releaseViews();
+    pixels = null;
+    RasterPool.release(raster);
+  }
+
+  /**
+   * Returns the packed pixel array of this image.
+   *
+   * @return The pixel array.
+   * @throws IllegalStateException If the image was recycled.
+   */
+  private int[] raster() {
+    int[] raster = pixels;
+    if (raster == null) {
+      throw new IllegalStateException("The image was recycled when it was replaced or superseded"
+              + " and can no longer be used.");
+    }
+    return raster;
+  }
+
+  /**
+   * Marks this image as read by one more lazily evaluated image, so that its pixels are neither
+   * recycled nor changed in place until every such image has released it with unpin.
+   */
+  void pin() {
+    pins.incrementAndGet();
+  }
+
+  /**
+   * Releases a pin taken with pin, once the lazily evaluated image no longer reads this image.
+   */
+  void unpin() {
+    pins.decrementAndGet();
+  }
+
+  /**
+   * Returns whether a lazily evaluated image may still read this image.
+   */
+  boolean isPinned() {
+    return pins.get() > 0;
+  }
+
+  /**
+   * Registers a view that reads the pixels of this image.
+   *
+   * @param view The view over this image.
+   */
+  synchronized void addView(ImageView view) {
+    List<WeakReference<ImageView>> current = new ArrayList<>();
+    if (views != null) {
+      for (WeakReference<ImageView> reference : views) {
+        if (reference.get() != null) {
+          current.add(reference);
+        }
+      }
+    }
+    current.add(new WeakReference<>(view));
+    views = current;
+  }
+
+  /**
+   * Must be called by every method that changes pixels, before the change is made, so that the
+   * views over this image keep showing the old pixels.
+   */
+  protected void beforeWrite() {
+    if (views != null) {
+      releaseViews();
+    }
+  }
+
+  /**
+   * Clamps a 16-bit sample to 0-65535.
+   */
+  private static int clampSample(int sample) {
+    return Math.max(0, Math.min(sample, Image16.MAX_SAMPLE));
+  }
+
+  /**
+   * Checks that the (x, y) coordinates lie inside the image.
+   *
+   * @param x The x-coordinate to check.
+   * @param y The y-coordinate to check.
+   * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
+   */
+  protected void checkBounds(int x, int y) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      throw new IndexOutOfBoundsException("Pixel coordinates out of bounds.");
+    }
+  }
+
+  /**
+   * Checks that a horizontal span lies inside the image.
+   *
+   * @param x      The x-coordinate of the first pixel of the span.
+   * @param y      The row of the span.
+   * @param length The number of pixels in the span.
+   * @throws IndexOutOfBoundsException If the span is out of bounds of the image.
+   */
+  protected void checkSpan(int x, int y, int length) {
+    if (x < 0 || length < 0 || x + length > width || y < 0 || y >= height) {
       throw new IndexOutOfBoundsException("Pixel coordinates out of bounds.");
     }
   }
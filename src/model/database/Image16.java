@@ -0,0 +1,147 @@
+package model.database;
+
+/**
+ * Image16 is an image with 16 bits per color channel, used to keep the precision of intermediate
+ * results through long chains of operations. The samples are stored in a single short array in
+ * row-major order, red, green and blue interleaved, which is 6 bytes per pixel. A sample of 65535
+ * is full intensity, the same as 255 in an 8-bit image. The 8-bit accessors inherited from Image
+ * round the samples to 8 bits, so an Image16 is only quantized when it is saved or displayed.
+ */
+public class Image16 extends Image {
+
+  /**
+   * The largest sample value, full intensity.
+   */
+  public static final int MAX_SAMPLE = 65535;
+
+  private final short[] samples;
+
+  /**
+   * Constructs a black Image16 with the specified width and height.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @throws IllegalArgumentException If the image has too many samples for one array.
+   */
+  public Image16(int width, int height) {
+    super(width, height, null);
+    this.samples = new short[arrayLength(width, height, 3)];
+  }
+
+  /**
+   * Returns the 16-bit value of an 8-bit sample.
+   *
+   * @param value The 8-bit sample (0-255).
+   * @return The same intensity as a 16-bit sample (0-65535).
+   */
+  public static int expand(int value) {
+    return value * 257;
+  }
+
+  /**
+   * Returns the nearest 8-bit value of a 16-bit sample.
+   *
+   * @param sample The 16-bit sample (0-65535).
+   * @return The 8-bit sample (0-255).
+   */
+  public static int quantize(int sample) {
+    return (sample * 255 + 32767) / MAX_SAMPLE;
+  }
+
+  /**
+   * Rounds a 16-bit sample computed in floating point and clamps it to 0-65535.
+   *
+   * @param value The computed sample.
+   * @return The clamped sample.
+   */
+  public static int clamp(double value) {
+    if (value <= 0) {
+      return 0;
+    }
+    if (value >= MAX_SAMPLE) {
+      return MAX_SAMPLE;
+    }
+    return (int) Math.round(value);
+  }
+
+  /**
+   * Returns one 16-bit sample of the pixel at the specified (x, y) coordinates.
+   *
+   * @param x       The x-coordinate of the pixel.
+   * @param y       The y-coordinate of the pixel.
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @return The sample (0-65535).
+   * @throws IndexOutOfBoundsException If the coordinates are out of bounds of the image.
+   */
+  public int getSample(int x, int y, int channel) {
+    checkBounds(x, y);
+    return samples[3 * (y * width + x) + channel] & 0xFFFF;
+  }
+
+  @Override
+  public boolean isHighBitDepth() {
+    return true;
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    checkBounds(x, y);
+    int index = 3 * (y * width + x);
+    return (quantize(samples[index] & 0xFFFF) << 16)
+            | (quantize(samples[index + 1] & 0xFFFF) << 8)
+            | quantize(samples[index + 2] & 0xFFFF);
+  }
+
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    checkBounds(x, y);
+    beforeWrite();
+    int index = 3 * (y * width + x);
+    samples[index] = (short) expand(Pixel.red(rgb));
+    samples[index + 1] = (short) expand(Pixel.green(rgb));
+    samples[index + 2] = (short) expand(Pixel.blue(rgb));
+  }
+
+  @Override
+  public void getRowSpan(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    int index = 3 * (y * width + x);
+    for (int i = 0; i < length; i++, index += 3) {
+      dst[offset + i] = (quantize(samples[index] & 0xFFFF) << 16)
+              | (quantize(samples[index + 1] & 0xFFFF) << 8)
+              | quantize(samples[index + 2] & 0xFFFF);
+    }
+  }
+
+  @Override
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    checkSpan(x, y, length);
+    beforeWrite();
+    int index = 3 * (y * width + x);
+    for (int i = 0; i < length; i++, index += 3) {
+      int rgb = src[offset + i];
+      samples[index] = (short) expand(Pixel.red(rgb));
+      samples[index + 1] = (short) expand(Pixel.green(rgb));
+      samples[index + 2] = (short) expand(Pixel.blue(rgb));
+    }
+  }
+
+  @Override
+  public void getRowSamples(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    int index = 3 * (y * width + x);
+    for (int i = 0; i < 3 * length; i++) {
+      dst[offset + i] = samples[index + i] & 0xFFFF;
+    }
+  }
+
+  @Override
+  public void setRowSamples(int x, int y, int length, int[] src, int offset) {
+    checkSpan(x, y, length);
+    beforeWrite();
+    int index = 3 * (y * width + x);
+    for (int i = 0; i < 3 * length; i++) {
+      samples[index + i] = (short) Math.max(0, Math.min(src[offset + i], MAX_SAMPLE));
+    }
+  }
+}
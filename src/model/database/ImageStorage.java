@@ -0,0 +1,452 @@
+package model.database;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * ImageStorage decides where the pixels of new images are kept. Images are either kept on the Java
+ * heap, as a packed int array, or mapped from a scratch file outside the heap. The storage is
+ * chosen globally through the default mode, and per image by converting an image, since every
+ * operation keeps its result in mapped storage when one of its inputs is mapped. Results with at
+ * least the tiled threshold of pixels are not computed up front at all, but kept as a TiledImage
+ * that computes the tiles that are read.
+ */
+public final class ImageStorage {
+
+  /**
+   * The places where the pixels of an image can be kept.
+   */
+  public enum Mode {
+    HEAP, MAPPED
+  }
+
+  /**
+   * The default number of pixels from which results are evaluated lazily, 4096 x 4096.
+   */
+  public static final long DEFAULT_TILED_THRESHOLD = 4096L * 4096L;
+
+  private static volatile Mode defaultMode = Mode.HEAP;
+  private static volatile long tiledThreshold = DEFAULT_TILED_THRESHOLD;
+  private static volatile boolean highBitDepth = false;
+
+  private ImageStorage() {
+  }
+
+  /**
+   * Returns the storage used for new images that are not derived from a mapped image.
+   *
+   * @return The default storage mode.
+   */
+  public static Mode getDefaultMode() {
+    return defaultMode;
+  }
+
+  /**
+   * Sets the storage used for new images that are not derived from a mapped image.
+   *
+   * @param mode The default storage mode.
+   * @throws IllegalArgumentException If the mode is null.
+   */
+  public static void setDefaultMode(Mode mode) {
+    if (mode == null) {
+      throw new IllegalArgumentException("Storage mode cannot be null.");
+    }
+    defaultMode = mode;
+  }
+
+  /**
+   * Returns the number of pixels from which the results of operations are evaluated lazily.
+   *
+   * @return The tiled threshold in pixels.
+   */
+  public static long getTiledThreshold() {
+    return tiledThreshold;
+  }
+
+  /**
+   * Sets the number of pixels from which the results of operations are evaluated lazily. Use
+   * Long.MAX_VALUE to always compute results up front.
+   *
+   * @param pixels The tiled threshold in pixels.
+   * @throws IllegalArgumentException If the threshold is negative.
+   */
+  public static void setTiledThreshold(long pixels) {
+    if (pixels < 0) {
+      throw new IllegalArgumentException("Tiled threshold cannot be negative.");
+    }
+    tiledThreshold = pixels;
+  }
+
+  /**
+   * Returns whether new images are created with 16 bits per color channel.
+   *
+   * @return true if new images have 16 bits per channel, false for 8 bits.
+   */
+  public static boolean isHighBitDepth() {
+    return highBitDepth;
+  }
+
+  /**
+   * Sets whether new images, such as loaded files, are created with 16 bits per color channel.
+   * Operations on a 16-bit image produce 16-bit results whatever this setting is.
+   *
+   * @param enabled true for 16 bits per channel, false for 8 bits.
+   */
+  public static void setHighBitDepth(boolean enabled) {
+    highBitDepth = enabled;
+  }
+
+  /**
+   * Parses a bit depth given as "8" or "16".
+   *
+   * @param bits The number of bits per channel.
+   * @return true for 16 bits, false for 8 bits.
+   * @throws IllegalArgumentException If the bit depth is not 8 or 16.
+   */
+  public static boolean parseBitDepth(String bits) {
+    if ("16".equals(bits)) {
+      return true;
+    }
+    if ("8".equals(bits)) {
+      return false;
+    }
+    throw new IllegalArgumentException("Bit depth must be 8 or 16.");
+  }
+
+  /**
+   * Parses a storage mode given as "heap" or "mapped".
+   *
+   * @param name The name of the mode.
+   * @return The storage mode.
+   * @throws IllegalArgumentException If the name is not a storage mode.
+   */
+  public static Mode parseMode(String name) {
+    if ("heap".equalsIgnoreCase(name)) {
+      return Mode.HEAP;
+    }
+    if ("mapped".equalsIgnoreCase(name)) {
+      return Mode.MAPPED;
+    }
+    throw new IllegalArgumentException("Storage must be 'heap' or 'mapped'.");
+  }
+
+  /**
+   * Returns the storage mode of an image.
+   *
+   * @param image The image.
+   * @return MAPPED for a mapped image, HEAP otherwise.
+   */
+  public static Mode modeOf(Image image) {
+    return image instanceof MappedImage ? Mode.MAPPED : Mode.HEAP;
+  }
+
+  /**
+   * Creates a black image in the default storage.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The new image.
+   */
+  public static Image create(int width, int height) {
+    return create(width, height, defaultMode);
+  }
+
+  /**
+   * Creates a black image for new pixel data that is not computed from other images, such as a
+   * loaded file. The image has 16 bits per channel if the default bit depth is 16, otherwise it is
+   * created in the default storage.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The new image.
+   */
+  public static Image createInput(int width, int height) {
+    if (highBitDepth) {
+      return new Image16(width, height);
+    }
+    return create(width, height);
+  }
+
+  /**
+   * Creates a black image in the given storage.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param mode   The storage of the image.
+   * @return The new image.
+   */
+  public static Image create(int width, int height, Mode mode) {
+    if (mode == Mode.MAPPED) {
+      return new MappedImage(width, height);
+    }
+    return new Image(width, height);
+  }
+
+  /**
+   * Creates a black image for the result of an operation. The result has 16 bits per channel if
+   * any of the source images has; otherwise it is mapped if the default storage is mapped or if
+   * any of the source images is mapped.
+   *
+   * @param width   The width of the image.
+   * @param height  The height of the image.
+   * @param sources The images the result is computed from.
+   * @return The new image.
+   */
+  public static Image createLike(int width, int height, Image... sources) {
+    for (Image source : sources) {
+      if (source.isHighBitDepth()) {
+        return new Image16(width, height);
+      }
+    }
+    return create(width, height, storageLike(sources));
+  }
+
+  /**
+   * Returns the storage that createLike keeps an 8-bit result of the sources in: mapped if the
+   * default storage is mapped or if any of the sources is mapped, otherwise the heap.
+   *
+   * @param sources The images the result is computed from.
+   * @return The storage of the result.
+   */
+  public static Mode storageLike(Image... sources) {
+    for (Image source : sources) {
+      if (source instanceof MappedImage) {
+        return Mode.MAPPED;
+      }
+    }
+    return defaultMode;
+  }
+
+  /**
+   * Returns whether render returns a result of the given size as a TiledImage, because it has at
+   * least the tiled threshold of pixels.
+   *
+   * @param width  The width of the result.
+   * @param height The height of the result.
+   * @return true if the result is computed lazily.
+   */
+  public static boolean rendersLazily(int width, int height) {
+    return (long) width * height >= tiledThreshold;
+  }
+
+  /**
+   * Returns the result of an operation described by a TileSource. A result with at least the tiled
+   * threshold of pixels is returned as a TiledImage, which computes tiles when they are read;
+   * otherwise every row is computed straight away, in parallel bands of rows, into an image
+   * created like the sources. The sources of a TiledImage are pinned, so they are neither recycled
+   * nor edited in place while it may read them: until it is recycled or becomes unreachable.
+   *
+   * @param width   The width of the result.
+   * @param height  The height of the result.
+   * @param source  The source computing the pixels of the result.
+   * @param sources The images the result is computed from.
+   * @return The result image.
+   */
+  public static Image render(int width, int height, TileSource source, Image... sources) {
+    if (rendersLazily(width, height)) {
+      return new TiledImage(width, height, source, sources);
+    }
+    Image image = createLike(width, height, sources);
+    RowBands.forEachBand(width, height, (fromY, toY) -> {
+      int[] row = new int[width];
+      for (int y = fromY; y < toY; y++) {
+        source.computeSpan(0, y, width, row, 0);
+        image.setRowSpan(0, y, width, row, 0);
+      }
+    });
+    return image;
+  }
+
+  /**
+   * Returns the result of applying an operator to every pixel of the image. The operator maps a
+   * packed 0xRRGGBB pixel to the packed result pixel and is applied row by row, like any other
+   * TileSource, so a large result is computed lazily.
+   *
+   * @param image    The image to read.
+   * @param operator The operator computing each result pixel.
+   * @return The result image.
+   */
+  public static Image mapPixels(Image image, IntUnaryOperator operator) {
+    return mapRows(image, RowOperator.of(operator));
+  }
+
+  /**
+   * Returns the result of applying a row operator to every row of the image. Each span of the
+   * result is read from the image and transformed by the operator in one call, like any other
+   * TileSource, so a large result is computed lazily.
+   *
+   * @param image    The image to read.
+   * @param operator The operator transforming spans of packed 0xRRGGBB pixels.
+   * @return The result image.
+   */
+  public static Image mapRows(Image image, RowOperator operator) {
+    return render(image.getWidth(), image.getHeight(), (x, y, length, dst, offset) -> {
+      image.getRowSpan(x, y, length, dst, offset);
+      operator.apply(dst, offset, length);
+    }, image);
+  }
+
+  /**
+   * Applies an operator to every pixel of the image, writing the results back into the image row
+   * by row in parallel bands, so that no second image is allocated.
+   *
+   * @param image    The image to change, which must be editable in place.
+   * @param operator The operator computing each new pixel from the packed 0xRRGGBB pixel.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  public static void mapPixelsInPlace(Image image, IntUnaryOperator operator) {
+    mapRowsInPlace(image, RowOperator.of(operator));
+  }
+
+  /**
+   * Applies a row operator to every row of the image, writing the results back into the image row
+   * by row in parallel bands, so that no second image is allocated.
+   *
+   * @param image    The image to change, which must be editable in place.
+   * @param operator The operator transforming spans of packed 0xRRGGBB pixels.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  public static void mapRowsInPlace(Image image, RowOperator operator) {
+    requireEditableInPlace(image);
+    // Views must copy the old pixels before any band writes
+    image.releaseViews();
+    int width = image.getWidth();
+    RowBands.forEachBand(width, image.getHeight(), (fromY, toY) -> {
+      int[] row = new int[width];
+      for (int y = fromY; y < toY; y++) {
+        image.getRowSpan(0, y, width, row, 0);
+        operator.apply(row, 0, width);
+        image.setRowSpan(0, y, width, row, 0);
+      }
+    });
+  }
+
+  /**
+   * Returns whether operations may overwrite the pixels of the image instead of creating a new
+   * image. That is the case for 8-bit RGB images on the heap or in mapped storage that no lazily
+   * evaluated image reads. Views over the image copy their pixels when it is written to.
+   *
+   * @param image The image to check.
+   * @return true if the image can be edited in place.
+   */
+  public static boolean isEditableInPlace(Image image) {
+    return (image.getClass() == Image.class || image instanceof MappedImage) && !image.isPinned();
+  }
+
+  /**
+   * Checks that the image can be edited in place.
+   *
+   * @param image The image to check.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  public static void requireEditableInPlace(Image image) {
+    if (!isEditableInPlace(image)) {
+      throw new IllegalArgumentException("Image cannot be edited in place.");
+    }
+  }
+
+  /**
+   * Returns the greyscale image holding one value per pixel of the image, computed by an operator
+   * from the packed 0xRRGGBB pixel, like mapRowsToGray. Values outside 0-255 are clamped.
+   *
+   * @param image    The image to read.
+   * @param operator The operator computing each grey value.
+   * @return The greyscale image.
+   */
+  public static Image mapToGray(Image image, IntUnaryOperator operator) {
+    return mapRowsToGray(image, RowOperator.of(operator));
+  }
+
+  /**
+   * Returns the greyscale image holding one value per pixel of the image, computed by a row
+   * operator that replaces each packed 0xRRGGBB pixel of a row by its grey value. Values outside
+   * 0-255 are clamped. The result is a GrayImage, one byte per pixel on the heap, unless createLike
+   * would keep it in mapped storage; then it is computed like mapRows, with the grey value in all
+   * three channels, so that the result of a mapped image stays off the heap.
+   *
+   * @param image    The image to read.
+   * @param operator The operator computing the grey values of a span.
+   * @return The greyscale image.
+   */
+  public static Image mapRowsToGray(Image image, RowOperator operator) {
+    if (storageLike(image) == Mode.MAPPED) {
+      return mapRows(image, ColorKernels.toGrey(operator));
+    }
+    int width = image.getWidth();
+    GrayImage result = new GrayImage(width, image.getHeight());
+    byte[] plane = result.getPlane();
+    RowBands.forEachBand(width, image.getHeight(), (fromY, toY) -> {
+      int[] row = new int[width];
+      for (int y = fromY; y < toY; y++) {
+        image.getRowSpan(0, y, width, row, 0);
+        operator.apply(row, 0, width);
+        int offset = y * width;
+        for (int x = 0; x < width; x++) {
+          plane[offset + x] = (byte) Pixel.clamp(row[x]);
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Returns the image in the given storage. An image that is already kept there is returned as it
+   * is, otherwise its pixels are copied into a new image in parallel bands of rows. A TiledImage is
+   * always copied, which computes all of its tiles. Mapped storage keeps 8 bits per channel, so an
+   * image with 16 bits per channel can only be kept on the heap.
+   *
+   * @param image The image to convert.
+   * @param mode  The storage to convert to.
+   * @return The image in the given storage.
+   * @throws IllegalArgumentException If a 16-bit image is converted to mapped storage.
+   */
+  public static Image convert(Image image, Mode mode) {
+    if (image.isHighBitDepth() && mode == Mode.MAPPED) {
+      throw new IllegalArgumentException("A 16-bit image cannot be kept in mapped storage.");
+    }
+    if (modeOf(image) == mode && !(image instanceof TiledImage)) {
+      return image;
+    }
+    int width = image.getWidth();
+    Image converted = create(width, image.getHeight(), mode);
+    RowBands.forEachBand(width, image.getHeight(), (fromY, toY) -> {
+      int[] row = new int[width];
+      for (int y = fromY; y < toY; y++) {
+        image.getRowSpan(0, y, width, row, 0);
+        converted.setRowSpan(0, y, width, row, 0);
+      }
+    });
+    return converted;
+  }
+
+  /**
+   * Returns the image with the given bit depth. An image that already has it is returned as it
+   * is; otherwise its pixels are copied row by row into a new image, rounding to 8 bits or
+   * expanding to 16 bits.
+   *
+   * @param image        The image to convert.
+   * @param highBitDepth true to convert to 16 bits per channel, false for 8 bits.
+   * @return The image with the given bit depth.
+   */
+  public static Image convertDepth(Image image, boolean highBitDepth) {
+    if (image.isHighBitDepth() == highBitDepth) {
+      return image;
+    }
+    int width = image.getWidth();
+    if (highBitDepth) {
+      Image converted = new Image16(width, image.getHeight());
+      int[] row = new int[3 * width];
+      for (int y = 0; y < image.getHeight(); y++) {
+        image.getRowSamples(0, y, width, row, 0);
+        converted.setRowSamples(0, y, width, row, 0);
+      }
+      return converted;
+    }
+    Image converted = create(width, image.getHeight());
+    int[] row = new int[width];
+    for (int y = 0; y < image.getHeight(); y++) {
+      image.getRowSpan(0, y, width, row, 0);
+      converted.setRowSpan(0, y, width, row, 0);
+    }
+    return converted;
+  }
+}
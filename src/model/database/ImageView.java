@@ -0,0 +1,220 @@
+package model.database;
+
+/**
+ * ImageView is a rectangular region of another image, optionally mirrored horizontally and
+ * vertically, that reads the pixels of that image instead of copying them. Flips and crops are
+ * views, so they are created in O(1) whatever the size of the image, and a view of a view reads the
+ * underlying image directly. A view is copy-on-write: it copies the pixels it shows the first time
+ * it is written to, or when the underlying image is written to or released, and from then on
+ * behaves like an ordinary image.
+ */
+public class ImageView extends Image {
+
+  private final int originX;
+  private final int originY;
+  private final boolean flipX;
+  private final boolean flipY;
+
+  // The copy is published before the source is cleared, so a reader that sees no source always
+  // finds the copy.
+  private volatile Image source;
+  private volatile Image backing;
+
+  /**
+   * Constructs a view over the given region of an image and registers it with the image.
+   */
+  private ImageView(Image source, int originX, int originY, int width, int height,
+                    boolean flipX, boolean flipY) {
+    super(width, height, null);
+    this.source = source;
+    this.originX = originX;
+    this.originY = originY;
+    this.flipX = flipX;
+    this.flipY = flipY;
+    source.addView(this);
+  }
+
+  /**
+   * Returns a view of the image mirrored along its vertical axis.
+   *
+   * @param image The image to flip.
+   * @return The horizontally flipped view.
+   */
+  public static ImageView flipHorizontal(Image image) {
+    return of(image, 0, 0, image.getWidth(), image.getHeight(), true, false);
+  }
+
+  /**
+   * Returns a view of the image mirrored along its horizontal axis.
+   *
+   * @param image The image to flip.
+   * @return The vertically flipped view.
+   */
+  public static ImageView flipVertical(Image image) {
+    return of(image, 0, 0, image.getWidth(), image.getHeight(), false, true);
+  }
+
+  /**
+   * Returns a view of a rectangular region of the image.
+   *
+   * @param image  The image to crop.
+   * @param x      The x-coordinate of the top left corner of the region.
+   * @param y      The y-coordinate of the top left corner of the region.
+   * @param width  The width of the region.
+   * @param height The height of the region.
+   * @return The cropped view.
+   * @throws IllegalArgumentException If the region is empty or does not lie inside the image.
+   */
+  public static ImageView crop(Image image, int x, int y, int width, int height) {
+    if (width <= 0 || height <= 0 || x < 0 || y < 0
+            || (long) x + width > image.getWidth() || (long) y + height > image.getHeight()) {
+      throw new IllegalArgumentException("Crop region must lie inside the image.");
+    }
+    return of(image, x, y, width, height, false, false);
+  }
+
+  /**
+   * Returns a view of a region of the image, mirrored as requested. A view of a view that has not
+   * been copied is turned into a single view of the underlying image.
+   */
+  private static ImageView of(Image image, int x, int y, int width, int height,
+                              boolean flipX, boolean flipY) {
+    if (image instanceof ImageView) {
+      ImageView view = (ImageView) image;
+      Image source = view.source;
+      if (source != null) {
+        int originX = view.flipX ? view.originX + view.width - x - width : view.originX + x;
+        int originY = view.flipY ? view.originY + view.height - y - height : view.originY + y;
+        return new ImageView(source, originX, originY, width, height,
+                view.flipX != flipX, view.flipY != flipY);
+      }
+    }
+    return new ImageView(image, x, y, width, height, flipX, flipY);
+  }
+
+  /**
+   * Returns whether this view still reads the pixels of the underlying image, rather than a copy.
+   *
+   * @return true if the view has not been copied yet.
+   */
+  public boolean isShared() {
+    return source != null;
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    checkBounds(x, y);
+    Image image = source;
+    if (image == null) {
+      return backing.getRGB(x, y);
+    }
+    return image.getRGB(sourceX(x, 1), sourceY(y));
+  }
+
+  @Override
+  public void getRowSpan(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    Image image = source;
+    if (image == null) {
+      backing.getRowSpan(x, y, length, dst, offset);
+      return;
+    }
+    image.getRowSpan(sourceX(x, length), sourceY(y), length, dst, offset);
+    if (flipX) {
+      for (int i = offset, j = offset + length - 1; i < j; i++, j--) {
+        int rgb = dst[i];
+        dst[i] = dst[j];
+        dst[j] = rgb;
+      }
+    }
+  }
+
+  @Override
+  public boolean isHighBitDepth() {
+    Image image = source;
+    return image != null ? image.isHighBitDepth() : backing.isHighBitDepth();
+  }
+
+  @Override
+  public void getRowSamples(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    Image image = source;
+    if (image == null) {
+      backing.getRowSamples(x, y, length, dst, offset);
+      return;
+    }
+    image.getRowSamples(sourceX(x, length), sourceY(y), length, dst, offset);
+    if (flipX) {
+      for (int i = offset, j = offset + 3 * (length - 1); i < j; i += 3, j -= 3) {
+        for (int c = 0; c < 3; c++) {
+          int sample = dst[i + c];
+          dst[i + c] = dst[j + c];
+          dst[j + c] = sample;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void setRowSamples(int x, int y, int length, int[] src, int offset) {
+    checkSpan(x, y, length);
+    beforeWrite();
+    materialize().setRowSamples(x, y, length, src, offset);
+  }
+
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    checkBounds(x, y);
+    beforeWrite();
+    materialize().setRGB(x, y, rgb);
+  }
+
+  @Override
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    checkSpan(x, y, length);
+    beforeWrite();
+    materialize().setRowSpan(x, y, length, src, offset);
+  }
+
+  /**
+   * Copies the pixels shown by this view out of the underlying image, if that was not done yet,
+   * and returns the copy.
+   *
+   * @return The image holding the pixels of this view.
+   */
+  synchronized Image materialize() {
+    if (backing == null) {
+      Image image = ImageStorage.createLike(width, height, source);
+      if (image.isHighBitDepth()) {
+        int[] row = new int[3 * width];
+        for (int y = 0; y < height; y++) {
+          getRowSamples(0, y, width, row, 0);
+          image.setRowSamples(0, y, width, row, 0);
+        }
+      } else {
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+          getRowSpan(0, y, width, row, 0);
+          image.setRowSpan(0, y, width, row, 0);
+        }
+      }
+      backing = image;
+      source = null;
+    }
+    return backing;
+  }
+
+  /**
+   * Returns the x-coordinate in the underlying image of the leftmost pixel of a span.
+   */
+  private int sourceX(int x, int length) {
+    return flipX ? originX + width - x - length : originX + x;
+  }
+
+  /**
+   * Returns the row in the underlying image of a row of this view.
+   */
+  private int sourceY(int y) {
+    return flipY ? originY + height - 1 - y : originY + y;
+  }
+}
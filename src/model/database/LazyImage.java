@@ -0,0 +1,184 @@
+package model.database;
+
+import java.util.Arrays;
+
+/**
+ * LazyImage is an image that has not been computed yet: a source image and the chain of pointwise
+ * operations that turn it into the result. Appending an operation copies no pixels, and computing
+ * the result runs the whole chain over each row of the source in one pass, so a chain of n
+ * operations reads and writes the pixels once instead of n times and creates no intermediate
+ * images. The chain is planned as operations are appended: consecutive tone tables are composed
+ * into one table, and consecutive affine color transforms are collapsed into one matrix.
+ * Collapsing skips the truncation and clamping between the transforms, so an expression with
+ * exact intermediate clamping instead keeps every transform as its own step, and then gives
+ * exactly the pixels of applying the operations one after another.
+ */
+public final class LazyImage {
+
+  private final Image source;
+  private final boolean exactClamping;
+  private final RowOperator[] steps;
+  private final ToneLut tones;
+  private final AffineColorTransform affine;
+  private final boolean grey;
+
+  private LazyImage(Image source, boolean exactClamping, RowOperator[] steps, ToneLut tones,
+                    AffineColorTransform affine, boolean grey) {
+    this.source = source;
+    this.exactClamping = exactClamping;
+    this.steps = steps;
+    this.tones = tones;
+    this.affine = affine;
+    this.grey = grey;
+  }
+
+  /**
+   * Returns the expression of the image itself with exact intermediate clamping, to which
+   * operations can be appended.
+   *
+   * @param source The 8-bit image the operations read.
+   * @return The expression with no operations.
+   * @throws IllegalArgumentException If the image is a 16-bit image.
+   */
+  public static LazyImage of(Image source) {
+    return of(source, true);
+  }
+
+  /**
+   * Returns the expression of the image itself, to which operations can be appended.
+   *
+   * @param source        The 8-bit image the operations read.
+   * @param exactClamping Whether affine color transforms are kept apart, so that each one
+   *                      truncates and clamps its results as it does on its own.
+   * @return The expression with no operations.
+   * @throws IllegalArgumentException If the image is a 16-bit image.
+   */
+  public static LazyImage of(Image source, boolean exactClamping) {
+    if (source.isHighBitDepth()) {
+      throw new IllegalArgumentException("Only 8-bit images can be evaluated lazily.");
+    }
+    return new LazyImage(source, exactClamping, new RowOperator[0], null, null,
+            source instanceof GrayImage);
+  }
+
+  /**
+   * Returns the expression that applies a pointwise operation to the result of this one.
+   *
+   * @param step       The operation, transforming spans of packed 0xRRGGBB pixels.
+   * @param greyResult Whether the operation gives equal channels, so that its result is kept as
+   *                   a greyscale image.
+   * @return The longer expression.
+   */
+  public LazyImage then(RowOperator step, boolean greyResult) {
+    RowOperator[] planned = plannedSteps();
+    RowOperator[] newSteps = Arrays.copyOf(planned, planned.length + 1);
+    newSteps[planned.length] = step;
+    return new LazyImage(source, exactClamping, newSteps, null, null, greyResult);
+  }
+
+  /**
+   * Returns the expression that applies a tone table to the result of this one. A tone table
+   * that follows another is composed with it. A uniform table keeps a greyscale result greyscale.
+   *
+   * @param lut The tone table.
+   * @return The longer expression.
+   */
+  public LazyImage then(ToneLut lut) {
+    boolean greyResult = grey && lut.isUniform();
+    if (tones != null) {
+      return new LazyImage(source, exactClamping, steps, tones.andThen(lut), null, greyResult);
+    }
+    return new LazyImage(source, exactClamping, plannedSteps(), lut, null, greyResult);
+  }
+
+  /**
+   * Returns the expression that applies an affine color transform to the result of this one. A
+   * transform that follows another is collapsed with it into one matrix, unless the expression
+   * keeps exact intermediate clamping; a transform that maps each channel on its own, like
+   * brighten, is then kept as a tone table instead.
+   *
+   * @param transform The color transform.
+   * @return The longer expression.
+   */
+  public LazyImage then(AffineColorTransform transform) {
+    ToneLut lut = transform.toToneLut();
+    if (exactClamping) {
+      return lut != null ? then(lut) : then(transform.rowOperator(), transform.isGrey());
+    }
+    boolean greyResult = transform.isGrey() || (grey && lut != null && lut.isUniform());
+    if (affine != null) {
+      return new LazyImage(source, false, steps, null, affine.andThen(transform), greyResult);
+    }
+    return new LazyImage(source, false, plannedSteps(), null, transform, greyResult);
+  }
+
+  /**
+   * Returns the steps with the pending tone table or color transform appended.
+   */
+  private RowOperator[] plannedSteps() {
+    if (tones == null && affine == null) {
+      return steps;
+    }
+    RowOperator[] planned = Arrays.copyOf(steps, steps.length + 1);
+    planned[steps.length] = tones != null ? tones.rowOperator() : affine.rowOperator();
+    return planned;
+  }
+
+  /**
+   * Returns the image the operations read.
+   *
+   * @return The source image.
+   */
+  public Image getSource() {
+    return source;
+  }
+
+  /**
+   * Returns whether affine color transforms are kept apart, so that the result equals applying
+   * the operations one after another.
+   *
+   * @return true if the expression keeps exact intermediate clamping.
+   */
+  public boolean isExactClamping() {
+    return exactClamping;
+  }
+
+  /**
+   * Returns the number of row passes the result costs per row, after composing tone tables and
+   * collapsing color transforms.
+   *
+   * @return The number of fused operations.
+   */
+  public int getOperationCount() {
+    return plannedSteps().length;
+  }
+
+  /**
+   * Computes the result in one pass over the rows of the source, lazily if it is large. A
+   * greyscale result is kept as a GrayImage; an expression with no operations is the source.
+   *
+   * @return The result image.
+   */
+  public Image materialize() {
+    RowOperator[] chain = plannedSteps();
+    if (chain.length == 0) {
+      return source;
+    }
+    if (grey) {
+      return ImageStorage.mapRowsToGray(source, (pixels, offset, length) -> {
+        apply(chain, pixels, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+          pixels[i] &= 0xFF;
+        }
+      });
+    }
+    return ImageStorage.mapRows(source, (pixels, offset, length) ->
+            apply(chain, pixels, offset, length));
+  }
+
+  private static void apply(RowOperator[] chain, int[] pixels, int offset, int length) {
+    for (RowOperator step : chain) {
+      step.apply(pixels, offset, length);
+    }
+  }
+}
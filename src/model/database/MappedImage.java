@@ -0,0 +1,88 @@
+package model.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MappedImage is an image whose packed pixels live outside the Java heap, in a memory-mapped
+ * scratch file. Only the mapping handles are on the heap, so the size of the image is bounded by
+ * disk space and address space instead of -Xmx, and the garbage collector never scans or copies
+ * the pixels. A single mapping is limited to 2 GB, so the rows are split into chunks that are
+ * mapped separately; a row never crosses two chunks.
+ */
+public class MappedImage extends Image {
+
+  private static final long CHUNK_BYTES = 1L << 30;
+
+  private final int rowsPerChunk;
+  private final IntBuffer[] chunks;
+
+  /**
+   * Constructs a black MappedImage with the specified width and height, backed by a new scratch
+   * file in the default temporary-file directory.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @throws UncheckedIOException If the scratch file cannot be created or mapped.
+   */
+  public MappedImage(int width, int height) {
+    super(width, height, null);
+    this.rowsPerChunk = (int) Math.max(1, Math.min(Math.max(1, height),
+            CHUNK_BYTES / (4L * Math.max(1, width))));
+    this.chunks = new IntBuffer[(height + rowsPerChunk - 1) / rowsPerChunk];
+
+    try {
+      File file = File.createTempFile("image", ".raster");
+      file.deleteOnExit();
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+           FileChannel channel = raf.getChannel()) {
+        for (int i = 0; i < chunks.length; i++) {
+          int rows = Math.min(rowsPerChunk, height - i * rowsPerChunk);
+          long position = 4L * i * rowsPerChunk * width;
+          chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, 4L * rows * width)
+                  .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+      }
+      // The mappings stay valid after the file is unlinked, which frees the disk space as soon as
+      // the image is collected. Where that is not allowed, deleteOnExit cleans up instead.
+      file.delete();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not create the scratch file for the image.", e);
+    }
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    checkBounds(x, y);
+    return chunks[y / rowsPerChunk].get((y % rowsPerChunk) * width + x);
+  }
+
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    checkBounds(x, y);
+    beforeWrite();
+    chunks[y / rowsPerChunk].put((y % rowsPerChunk) * width + x, rgb & 0xFFFFFF);
+  }
+
+  @Override
+  public void getRowSpan(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    IntBuffer chunk = chunks[y / rowsPerChunk].duplicate();
+    chunk.position((y % rowsPerChunk) * width + x);
+    chunk.get(dst, offset, length);
+  }
+
+  @Override
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    checkSpan(x, y, length);
+    beforeWrite();
+    IntBuffer chunk = chunks[y / rowsPerChunk].duplicate();
+    chunk.position((y % rowsPerChunk) * width + x);
+    chunk.put(src, offset, length);
+  }
+}
@@ -76,6 +76,75 @@ public class Pixel implements IPixel {
     return blue;
   }
 
+  /**
+   * Packs the given red, green, and blue values into a single 0xRRGGBB int. Each component is
+   * clamped to 0-255 first, the same way the constructor does.
+   *
+   * @param red   the red color component
+   * @param green the green color component
+   * @param blue  the blue color component
+   * @return the packed RGB value
+   */
+  public static int pack(int red, int green, int blue) {
+    return (clamp(red) << 16) | (clamp(green) << 8) | clamp(blue);
+  }
+
+  /**
+   * Creates a Pixel from a packed 0xRRGGBB value.
+   *
+   * @param rgb the packed RGB value
+   * @return a new Pixel with the unpacked color values
+   */
+  public static Pixel unpack(int rgb) {
+    return new Pixel(red(rgb), green(rgb), blue(rgb));
+  }
+
+  /**
+   * Returns the red component of a packed 0xRRGGBB value.
+   *
+   * @param rgb the packed RGB value
+   * @return the red color component (0-255)
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Returns the green component of a packed 0xRRGGBB value.
+   *
+   * @param rgb the packed RGB value
+   * @return the green color component (0-255)
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Returns the blue component of a packed 0xRRGGBB value.
+   *
+   * @param rgb the packed RGB value
+   * @return the blue color component (0-255)
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
+  /**
+   * Clamps a color component to the range [0, 255].
+   *
+   * @param value the color component
+   * @return the clamped color component
+   */
+  public static int clamp(int value) {
+    if (value > 255) {
+      return 255;
+    }
+    if (value < 0) {
+      return 0;
+    }
+    return value;
+  }
+
   /**
    * Creates and returns a new Pixel object with the same red, green, and blue values as the current
    * pixel.
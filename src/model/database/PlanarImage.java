@@ -0,0 +1,176 @@
+package model.database;
+
+/**
+ * PlanarImage stores an image as three separate byte planes, one per color channel, instead of
+ * packed pixels. Planes are never copied once created: channel views and combined images share
+ * them, which is why a PlanarImage is read-only.
+ */
+public class PlanarImage extends Image {
+
+  /**
+   * Index of the red channel.
+   */
+  public static final int RED = 0;
+
+  /**
+   * Index of the green channel.
+   */
+  public static final int GREEN = 1;
+
+  /**
+   * Index of the blue channel.
+   */
+  public static final int BLUE = 2;
+
+  private final byte[][] planes;
+
+  /**
+   * Constructs a PlanarImage around three existing planes. The planes are shared, not copied.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param red    The red plane, width * height values in row-major order.
+   * @param green  The green plane, width * height values in row-major order.
+   * @param blue   The blue plane, width * height values in row-major order.
+   * @throws IllegalArgumentException If a plane does not hold width * height values.
+   */
+  public PlanarImage(int width, int height, byte[] red, byte[] green, byte[] blue) {
+    super(width, height, null);
+    long size = (long) width * height;
+    if (red.length != size || green.length != size || blue.length != size) {
+      throw new IllegalArgumentException("Plane size does not match the image size.");
+    }
+    this.planes = new byte[][]{red, green, blue};
+  }
+
+  /**
+   * Returns the given image as a PlanarImage. An image that already is planar is returned as it
+   * is, otherwise its pixels are split into three new planes in one pass.
+   *
+   * @param image The image to convert.
+   * @return The planar form of the image.
+   * @throws IllegalArgumentException If the image has too many pixels for one plane.
+   */
+  public static PlanarImage of(Image image) {
+    if (image instanceof PlanarImage) {
+      return (PlanarImage) image;
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int size = arrayLength(width, height, 1);
+    byte[] red = new byte[size];
+    byte[] green = new byte[size];
+    byte[] blue = new byte[size];
+    RowBands.forEachBand(width, height, (fromY, toY) -> {
+      int[] row = new int[width];
+      for (int y = fromY; y < toY; y++) {
+        image.getRowSpan(0, y, width, row, 0);
+        int offset = y * width;
+        for (int x = 0; x < width; x++) {
+          red[offset + x] = (byte) Pixel.red(row[x]);
+          green[offset + x] = (byte) Pixel.green(row[x]);
+          blue[offset + x] = (byte) Pixel.blue(row[x]);
+        }
+      }
+    });
+    return new PlanarImage(width, height, red, green, blue);
+  }
+
+  /**
+   * Returns one channel of the given image as a plane. Planar images and channel views hand out
+   * their existing plane, a writable grey image hands out a copy of its plane, and any other image
+   * has the channel extracted into a new plane.
+   *
+   * @param image   The image to read.
+   * @param channel The channel, one of RED, GREEN or BLUE.
+   * @return The plane holding the channel values.
+   * @throws IllegalArgumentException If the image has too many pixels for one plane.
+   */
+  public static byte[] planeOf(Image image, int channel) {
+    if (image instanceof PlanarImage) {
+      return ((PlanarImage) image).getPlane(channel);
+    }
+    if (image instanceof ChannelView) {
+      return ((ChannelView) image).getPlane();
+    }
+    if (image instanceof GrayImage) {
+      return ((GrayImage) image).getPlane().clone();
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int shift = 16 - 8 * channel;
+    byte[] plane = new byte[arrayLength(width, height, 1)];
+    RowBands.forEachBand(width, height, (fromY, toY) -> {
+      int[] row = new int[width];
+      for (int y = fromY; y < toY; y++) {
+        image.getRowSpan(0, y, width, row, 0);
+        int offset = y * width;
+        for (int x = 0; x < width; x++) {
+          plane[offset + x] = (byte) (row[x] >> shift);
+        }
+      }
+    });
+    return plane;
+  }
+
+  /**
+   * Returns the plane of the given channel. The array is shared and must not be modified.
+   *
+   * @param channel The channel, one of RED, GREEN or BLUE.
+   * @return The plane of the channel.
+   */
+  public byte[] getPlane(int channel) {
+    return planes[channel];
+  }
+
+  /**
+   * Returns a read-only greyscale view of one channel. The view shares the plane of this image.
+   *
+   * @param channel The channel, one of RED, GREEN or BLUE.
+   * @return A view showing the channel in all three color components.
+   */
+  public ChannelView channel(int channel) {
+    return new ChannelView(width, height, planes[channel]);
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    checkBounds(x, y);
+    int index = y * width + x;
+    return ((planes[RED][index] & 0xFF) << 16) | ((planes[GREEN][index] & 0xFF) << 8)
+            | (planes[BLUE][index] & 0xFF);
+  }
+
+  @Override
+  public void getRowSpan(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    byte[] red = planes[RED];
+    byte[] green = planes[GREEN];
+    byte[] blue = planes[BLUE];
+    int index = y * width + x;
+    for (int i = 0; i < length; i++) {
+      dst[offset + i] = ((red[index + i] & 0xFF) << 16) | ((green[index + i] & 0xFF) << 8)
+              | (blue[index + i] & 0xFF);
+    }
+  }
+
+  /**
+   * Planar images are read-only because their planes may be shared.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    throw new UnsupportedOperationException("Planar images are read-only.");
+  }
+
+  /**
+   * Planar images are read-only because their planes may be shared.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    throw new UnsupportedOperationException("Planar images are read-only.");
+  }
+}
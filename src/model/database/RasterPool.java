@@ -0,0 +1,99 @@
+package model.database;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RasterPool keeps the packed pixel arrays of images that are no longer used, keyed by their
+ * length, so that the next image of the same size reuses one instead of allocating a new array.
+ * A batch of commands on same-size images then allocates almost no pixel arrays after the first
+ * command. Pooled arrays are held through soft references, so the garbage collector may still
+ * reclaim them when memory runs low, and at most a few arrays of each size are kept.
+ */
+public final class RasterPool {
+
+  /**
+   * The largest number of arrays of the same length that are kept.
+   */
+  public static final int MAX_PER_SIZE = 4;
+
+  private static final Map<Integer, ArrayDeque<SoftReference<int[]>>> POOL = new HashMap<>();
+
+  private RasterPool() {
+  }
+
+  /**
+   * Returns an array of the given length with every element 0, reusing a pooled array if there is
+   * one.
+   *
+   * @param length The length of the array.
+   * @return The zeroed array.
+   */
+  public static int[] acquire(int length) {
+    synchronized (POOL) {
+      ArrayDeque<SoftReference<int[]>> free = POOL.get(length);
+      while (free != null && !free.isEmpty()) {
+        int[] raster = free.pop().get();
+        if (raster != null) {
+          Arrays.fill(raster, 0);
+          return raster;
+        }
+      }
+    }
+    return new int[length];
+  }
+
+  /**
+   * Hands an array back to the pool. The caller must not use the array afterwards. The array is
+   * dropped if the pool already holds the largest number of arrays of its length.
+   *
+   * @param raster The array to pool.
+   */
+  public static void release(int[] raster) {
+    if (raster.length == 0) {
+      return;
+    }
+    synchronized (POOL) {
+      ArrayDeque<SoftReference<int[]>> free =
+              POOL.computeIfAbsent(raster.length, length -> new ArrayDeque<>());
+      free.removeIf(reference -> reference.get() == null);
+      if (free.size() < MAX_PER_SIZE) {
+        free.push(new SoftReference<>(raster));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of arrays of the given length that are pooled and not yet reclaimed.
+   *
+   * @param length The length of the arrays.
+   * @return The number of pooled arrays.
+   */
+  public static int getPooledCount(int length) {
+    synchronized (POOL) {
+      ArrayDeque<SoftReference<int[]>> free = POOL.get(length);
+      if (free == null) {
+        return 0;
+      }
+      int count = 0;
+      for (SoftReference<int[]> reference : free) {
+        if (reference.get() != null) {
+          count++;
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Drops every pooled array.
+   */
+  public static void clear() {
+    synchronized (POOL) {
+      POOL.clear();
+    }
+  }
+}
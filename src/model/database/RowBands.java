@@ -0,0 +1,142 @@
+package model.database;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RowBands runs work over the rows of an image in parallel. The rows are split into bands of
+ * consecutive rows that run as tasks on a ForkJoinPool, so each task reads and writes whole rows
+ * and no two tasks write the same row. Work on images below the parallel threshold, or with a
+ * parallelism of 1, runs on the calling thread. Every row is computed exactly as it would be
+ * sequentially, so the output does not depend on the parallelism.
+ */
+public final class RowBands {
+
+  /**
+   * The default number of pixels from which work is split into bands, 512 x 512.
+   */
+  public static final long DEFAULT_PARALLEL_THRESHOLD = 512L * 512L;
+
+  private static volatile ForkJoinPool pool =
+          new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+  private static volatile long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+  private RowBands() {
+  }
+
+  /**
+   * Work on a band of consecutive rows.
+   */
+  @FunctionalInterface
+  public interface Band {
+
+    /**
+     * Processes the rows from fromY inclusive to toY exclusive. Bands run concurrently, so a band
+     * must only write its own rows and must keep its row buffers to itself.
+     *
+     * @param fromY The first row of the band.
+     * @param toY   The row after the last row of the band.
+     */
+    void run(int fromY, int toY);
+  }
+
+  /**
+   * Returns the number of threads that work on the bands of an image.
+   *
+   * @return The parallelism level.
+   */
+  public static int getParallelism() {
+    return pool.getParallelism();
+  }
+
+  /**
+   * Sets the number of threads that work on the bands of an image. The default is the number of
+   * available processors; 1 runs all work on the calling thread.
+   *
+   * @param parallelism The parallelism level.
+   * @throws IllegalArgumentException If the parallelism is less than 1.
+   */
+  public static void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    }
+    ForkJoinPool previous = pool;
+    pool = new ForkJoinPool(parallelism);
+    previous.shutdown();
+  }
+
+  /**
+   * Returns the number of pixels from which work is split into bands.
+   *
+   * @return The parallel threshold in pixels.
+   */
+  public static long getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  /**
+   * Sets the number of pixels from which work is split into bands. Smaller images are processed
+   * on the calling thread, where the cost of handing out tasks would outweigh the gain.
+   *
+   * @param pixels The parallel threshold in pixels.
+   * @throws IllegalArgumentException If the threshold is negative.
+   */
+  public static void setParallelThreshold(long pixels) {
+    if (pixels < 0) {
+      throw new IllegalArgumentException("Parallel threshold cannot be negative.");
+    }
+    parallelThreshold = pixels;
+  }
+
+  /**
+   * Runs the band over all rows of an image of the given size, split into bands processed in
+   * parallel if the image has at least the parallel threshold of pixels. Returns when every row
+   * has been processed; an exception thrown by a band is rethrown.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param band   The work on a band of rows.
+   */
+  public static void forEachBand(int width, int height, Band band) {
+    ForkJoinPool current = pool;
+    int parallelism = current.getParallelism();
+    if (parallelism == 1 || height < 2 || (long) width * height < parallelThreshold) {
+      band.run(0, height);
+      return;
+    }
+    // A few bands per thread even out the load when some rows are slower than others
+    int minRows = Math.max(1, height / (4 * parallelism));
+    current.invoke(new BandTask(band, 0, height, minRows));
+  }
+
+  /**
+   * Splits a range of rows in halves until it is small enough to run as one band.
+   */
+  private static final class BandTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Band band;
+    private final int fromY;
+    private final int toY;
+    private final int minRows;
+
+    BandTask(Band band, int fromY, int toY, int minRows) {
+      this.band = band;
+      this.fromY = fromY;
+      this.toY = toY;
+      this.minRows = minRows;
+    }
+
+    @Override
+    protected void compute() {
+      if (toY - fromY <= minRows) {
+        band.run(fromY, toY);
+        return;
+      }
+      int middle = (fromY + toY) >>> 1;
+      invokeAll(new BandTask(band, fromY, middle, minRows),
+              new BandTask(band, middle, toY, minRows));
+    }
+  }
+}
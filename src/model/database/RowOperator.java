@@ -0,0 +1,35 @@
+package model.database;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * RowOperator transforms a span of packed 0xRRGGBB pixels in place. Operations that compute each
+ * pixel from that pixel alone hand a whole span to the operator at once, so the operator runs one
+ * tight loop over the span instead of being called once per pixel.
+ */
+@FunctionalInterface
+public interface RowOperator {
+
+  /**
+   * Replaces the pixels of a span by their results.
+   *
+   * @param pixels The array holding the span.
+   * @param offset The index of the first pixel of the span.
+   * @param length The number of pixels in the span.
+   */
+  void apply(int[] pixels, int offset, int length);
+
+  /**
+   * Returns the row operator applying a pixel operator to every pixel of the span.
+   *
+   * @param operator The operator computing each result pixel from the packed pixel.
+   * @return The row operator.
+   */
+  static RowOperator of(IntUnaryOperator operator) {
+    return (pixels, offset, length) -> {
+      for (int i = offset; i < offset + length; i++) {
+        pixels[i] = operator.applyAsInt(pixels[i]);
+      }
+    };
+  }
+}
@@ -0,0 +1,19 @@
+package model.database;
+
+/**
+ * RowVisitor receives the rows of an image one after another, top to bottom, as packed 0xRRGGBB
+ * pixels. Visiting rows reads each row with a single span copy instead of one accessor call per
+ * pixel, and walks the pixels in the order they are stored.
+ */
+@FunctionalInterface
+public interface RowVisitor {
+
+  /**
+   * Visits one row of the image. The array is reused for the next row, so it must not be kept
+   * after the call returns.
+   *
+   * @param y   The row.
+   * @param row The packed RGB values of the row, one per column.
+   */
+  void visit(int y, int[] row);
+}
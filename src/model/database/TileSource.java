@@ -0,0 +1,22 @@
+package model.database;
+
+/**
+ * TileSource computes the pixels of an image on demand. An operation describes its result as a
+ * TileSource, which is then either rendered into an image straight away or handed to a TiledImage
+ * that computes only the tiles that are read. Spans are computed independently of each other, so a
+ * source must not keep state between calls.
+ */
+@FunctionalInterface
+public interface TileSource {
+
+  /**
+   * Computes a horizontal span of packed 0xRRGGBB pixels of row y, starting at column x.
+   *
+   * @param x      The x-coordinate of the first pixel of the span.
+   * @param y      The row of the span.
+   * @param length The number of pixels to compute.
+   * @param dst    The array receiving the packed RGB values.
+   * @param offset The index in dst of the first computed pixel.
+   */
+  void computeSpan(int x, int y, int length, int[] dst, int offset);
+}
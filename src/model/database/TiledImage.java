@@ -0,0 +1,296 @@
+package model.database;
+
+import java.lang.ref.Cleaner;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * TiledImage is a lazily evaluated image. Its pixels are computed by a TileSource one square tile
+ * at a time, the first time a pixel of the tile is read, and the computed tiles are kept in a
+ * bounded cache that drops the least recently used tile when it is full. Pixels that are never
+ * read are never computed. A dropped tile is computed again if it is read again, so the source and
+ * the images it reads must not change; a TiledImage is therefore read-only. Tiles are computed
+ * outside the lock of the cache, so threads reading different tiles compute them at the same
+ * time, and a thread reading a tile that another thread is computing waits for that result.
+ *
+ * <p>The images a TiledImage reads are pinned while it may read them, so that they are neither
+ * recycled nor edited in place. The pins are released when the TiledImage is recycled, or when it
+ * becomes unreachable if it is never recycled.
+ */
+public class TiledImage extends Image {
+
+  /**
+   * The default width and height of a tile.
+   */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  /**
+   * The default number of tiles kept in the cache.
+   */
+  public static final int DEFAULT_CACHE_TILES = 256;
+
+  private final TileSource source;
+  private final int tileSize;
+  private final int tilesAcross;
+  private final Map<Long, int[]> cache;
+  // The tiles being computed, by key; guarded by the cache like the cache itself
+  private final Map<Long, FutureTask<int[]>> computing = new HashMap<>();
+  private final Image[] sources;
+  private final Cleaner.Cleanable sourcePins;
+  private volatile boolean recycled;
+
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  /**
+   * Constructs a TiledImage with the default tile size and cache size.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param source The source computing the pixels.
+   */
+  public TiledImage(int width, int height, TileSource source) {
+    this(width, height, source, DEFAULT_TILE_SIZE, DEFAULT_CACHE_TILES);
+  }
+
+  /**
+   * Constructs a TiledImage with the default tile size and cache size that reads the given
+   * images, which are pinned until it is recycled or unreachable.
+   *
+   * @param width   The width of the image.
+   * @param height  The height of the image.
+   * @param source  The source computing the pixels.
+   * @param sources The images the source reads.
+   */
+  TiledImage(int width, int height, TileSource source, Image[] sources) {
+    this(width, height, source, DEFAULT_TILE_SIZE, DEFAULT_CACHE_TILES, sources);
+  }
+
+  /**
+   * Constructs a TiledImage. The cache always holds at least two rows of tiles, so that reading
+   * the image row by row computes every tile only once.
+   *
+   * @param width      The width of the image.
+   * @param height     The height of the image.
+   * @param source     The source computing the pixels.
+   * @param tileSize   The width and height of a tile.
+   * @param cacheTiles The number of tiles kept in the cache.
+   * @throws IllegalArgumentException If the tile size or the cache size is not positive.
+   */
+  public TiledImage(int width, int height, TileSource source, int tileSize, int cacheTiles) {
+    this(width, height, source, tileSize, cacheTiles, new Image[0]);
+  }
+
+  private TiledImage(int width, int height, TileSource source, int tileSize, int cacheTiles,
+                     Image[] sources) {
+    super(width, height, null);
+    if (tileSize <= 0 || cacheTiles <= 0) {
+      throw new IllegalArgumentException("Tile size and cache size must be positive.");
+    }
+    this.source = source;
+    this.tileSize = tileSize;
+    this.tilesAcross = (width + tileSize - 1) / tileSize;
+    int capacity = Math.max(cacheTiles, 2 * tilesAcross);
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+        return size() > capacity;
+      }
+    };
+    this.sources = sources.clone();
+    for (Image image : this.sources) {
+      image.pin();
+    }
+    // The action must not refer to this image, or it would never become unreachable
+    Image[] pinned = this.sources;
+    this.sourcePins = CLEANER.register(this, () -> {
+      for (Image image : pinned) {
+        image.unpin();
+      }
+    });
+  }
+
+  /**
+   * Returns whether this image reads the given image, directly or through other tiled images, so
+   * that the image must keep its pixels while this image may be read.
+   *
+   * @param image The image to look for.
+   * @return true if this image reads the image.
+   */
+  public boolean reads(Image image) {
+    for (Image source : sources) {
+      if (source == image || source instanceof TiledImage && ((TiledImage) source).reads(image)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Drops the cached tiles and releases the images this image reads, so that they can be recycled
+   * or edited in place again. The image must not be read afterwards. Nothing is done while another
+   * lazily evaluated image still reads this one.
+   */
+  @Override
+  public void recycle() {
+    if (isPinned() || recycled) {
+      return;
+    }
+    recycled = true;
+    synchronized (cache) {
+      cache.clear();
+    }
+    sourcePins.clean();
+  }
+
+  /**
+   * Returns the number of tiles currently held in the cache.
+   *
+   * @return The number of cached tiles.
+   */
+  public int getCachedTileCount() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    checkBounds(x, y);
+    int tileX = x / tileSize;
+    int tileY = y / tileSize;
+    return tile(tileX, tileY)[(y - tileY * tileSize) * tileWidth(tileX) + x - tileX * tileSize];
+  }
+
+  @Override
+  public void getRowSpan(int x, int y, int length, int[] dst, int offset) {
+    checkSpan(x, y, length);
+    int tileY = y / tileSize;
+    int end = x + length;
+    while (x < end) {
+      int tileX = x / tileSize;
+      int tileStart = tileX * tileSize;
+      int tileWidth = tileWidth(tileX);
+      int count = Math.min(end, tileStart + tileWidth) - x;
+      System.arraycopy(tile(tileX, tileY), (y - tileY * tileSize) * tileWidth + x - tileStart,
+              dst, offset, count);
+      x += count;
+      offset += count;
+    }
+  }
+
+  /**
+   * Tiled images are read-only because dropped tiles are computed again from their source.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    throw new UnsupportedOperationException("Tiled images are read-only.");
+  }
+
+  /**
+   * Tiled images are read-only because dropped tiles are computed again from their source.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void setRowSpan(int x, int y, int length, int[] src, int offset) {
+    throw new UnsupportedOperationException("Tiled images are read-only.");
+  }
+
+  /**
+   * Returns the width of the tiles in the given tile column, which is smaller than the tile size
+   * for the last column of an image whose width is not a multiple of it.
+   */
+  private int tileWidth(int tileX) {
+    return Math.min(tileSize, width - tileX * tileSize);
+  }
+
+  /**
+   * Returns the pixels of a tile, computing them if the tile is not cached. The tile is stored row
+   * by row with the width of the tile as stride. The lock of the cache is only held to look up and
+   * insert tiles: the first thread to miss a tile computes it without the lock, and other threads
+   * reading the tile meanwhile wait for its result.
+   */
+  private int[] tile(int tileX, int tileY) {
+    if (recycled) {
+      throw new IllegalStateException("Tiled image was recycled and can no longer be read.");
+    }
+    long key = (long) tileY * tilesAcross + tileX;
+    FutureTask<int[]> task;
+    boolean computes = false;
+    synchronized (cache) {
+      int[] tile = cache.get(key);
+      if (tile != null) {
+        return tile;
+      }
+      task = computing.get(key);
+      if (task == null) {
+        task = new FutureTask<>(() -> computeTile(tileX, tileY));
+        computing.put(key, task);
+        computes = true;
+      }
+    }
+    if (computes) {
+      task.run();
+      int[] tile = result(task, false);
+      synchronized (cache) {
+        computing.remove(key);
+        if (tile != null) {
+          cache.put(key, tile);
+        }
+      }
+    }
+    return result(task, true);
+  }
+
+  /**
+   * Computes the pixels of a tile.
+   */
+  private int[] computeTile(int tileX, int tileY) {
+    int tileWidth = tileWidth(tileX);
+    int tileHeight = Math.min(tileSize, height - tileY * tileSize);
+    int[] tile = new int[tileWidth * tileHeight];
+    for (int row = 0; row < tileHeight; row++) {
+      source.computeSpan(tileX * tileSize, tileY * tileSize + row, tileWidth, tile,
+              row * tileWidth);
+    }
+    return tile;
+  }
+
+  /**
+   * Returns the tile a finished or running computation gives, waiting for it if needed. A
+   * computation that failed gives null if rethrow is false, and otherwise rethrows its exception.
+   */
+  private static int[] result(FutureTask<int[]> task, boolean rethrow) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return task.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (!rethrow) {
+            return null;
+          }
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException("Tile could not be computed.", cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
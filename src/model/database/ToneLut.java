@@ -0,0 +1,184 @@
+package model.database;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * ToneLut is a tone operation compiled into a lookup table: for each of the red, green and blue
+ * channels, the new 8-bit value of each of the 256 old values. An operation that maps every
+ * channel value on its own, like brighten, a levels curve or per-channel offsets, is evaluated
+ * 256 times per channel when it is compiled, and applying it then costs three table reads per
+ * pixel, in one parallel pass over the rows. Consecutive tone operations are composed into a
+ * single table, which gives the same pixels as applying them one after another, since every
+ * table already clamps its values to 0-255.
+ */
+public final class ToneLut {
+
+  private static final int LEVELS = 256;
+
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  private ToneLut(int[] red, int[] green, int[] blue) {
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  /**
+   * Returns the table that maps every value to itself.
+   *
+   * @return The identity table.
+   */
+  public static ToneLut identity() {
+    return of(level -> level);
+  }
+
+  /**
+   * Returns the table applying the same curve to every channel. Curve values outside 0-255 are
+   * clamped.
+   *
+   * @param curve The curve mapping an old channel value to the new one.
+   * @return The compiled table.
+   */
+  public static ToneLut of(IntUnaryOperator curve) {
+    int[] table = compile(curve);
+    return new ToneLut(table, table, table);
+  }
+
+  /**
+   * Returns the table applying a curve of its own to each channel. Curve values outside 0-255 are
+   * clamped.
+   *
+   * @param red   The curve of the red channel.
+   * @param green The curve of the green channel.
+   * @param blue  The curve of the blue channel.
+   * @return The compiled table.
+   */
+  public static ToneLut of(IntUnaryOperator red, IntUnaryOperator green, IntUnaryOperator blue) {
+    return new ToneLut(compile(red), compile(green), compile(blue));
+  }
+
+  /**
+   * Returns the table adding an offset to each channel, as brighten and color correction do.
+   *
+   * @param red   The offset of the red channel.
+   * @param green The offset of the green channel.
+   * @param blue  The offset of the blue channel.
+   * @return The compiled table.
+   */
+  public static ToneLut offsets(int red, int green, int blue) {
+    return of(level -> level + red, level -> level + green, level -> level + blue);
+  }
+
+  private static int[] compile(IntUnaryOperator curve) {
+    int[] table = new int[LEVELS];
+    for (int level = 0; level < LEVELS; level++) {
+      table[level] = Pixel.clamp(curve.applyAsInt(level));
+    }
+    return table;
+  }
+
+  /**
+   * Returns the table that applies this table and then the next one.
+   *
+   * @param next The table applied to the results of this one.
+   * @return The composed table.
+   */
+  public ToneLut andThen(ToneLut next) {
+    int[] newRed = new int[LEVELS];
+    int[] newGreen = new int[LEVELS];
+    int[] newBlue = new int[LEVELS];
+    for (int level = 0; level < LEVELS; level++) {
+      newRed[level] = next.red[red[level]];
+      newGreen[level] = next.green[green[level]];
+      newBlue[level] = next.blue[blue[level]];
+    }
+    return new ToneLut(newRed, newGreen, newBlue);
+  }
+
+  /**
+   * Returns whether the table maps every channel the same way, so that it keeps grey pixels grey.
+   *
+   * @return true if the three channels share one curve.
+   */
+  public boolean isUniform() {
+    for (int level = 0; level < LEVELS; level++) {
+      if (red[level] != green[level] || red[level] != blue[level]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the new value of a channel value.
+   *
+   * @param channel The channel, one of PlanarImage.RED, GREEN or BLUE.
+   * @param level   The old value, 0-255.
+   * @return The new value, 0-255.
+   */
+  public int lookup(int channel, int level) {
+    return channel == PlanarImage.RED ? red[level]
+            : channel == PlanarImage.GREEN ? green[level] : blue[level];
+  }
+
+  /**
+   * Returns the kernel replacing each packed pixel of a span by its mapped pixel.
+   *
+   * @return The row operator of the table.
+   */
+  public RowOperator rowOperator() {
+    // The tables are pre-shifted into place, so a pixel is three reads and two ors
+    int[] shiftedRed = new int[LEVELS];
+    int[] shiftedGreen = new int[LEVELS];
+    for (int level = 0; level < LEVELS; level++) {
+      shiftedRed[level] = red[level] << 16;
+      shiftedGreen[level] = green[level] << 8;
+    }
+    int[] blueTable = blue;
+    return (pixels, offset, length) -> {
+      for (int i = offset; i < offset + length; i++) {
+        int rgb = pixels[i];
+        pixels[i] = shiftedRed[(rgb >> 16) & 0xFF] | shiftedGreen[(rgb >> 8) & 0xFF]
+                | blueTable[rgb & 0xFF];
+      }
+    };
+  }
+
+  /**
+   * Returns the image with the table applied to every pixel. A greyscale image stays greyscale
+   * if the table is uniform; any other 8-bit image is mapped in one pass over its rows, lazily
+   * if the result is large.
+   *
+   * @param image The 8-bit image to map.
+   * @return The mapped image.
+   * @throws IllegalArgumentException If the image is a 16-bit image, which has more than 256
+   *                                  levels.
+   */
+  public Image apply(Image image) {
+    if (image.isHighBitDepth()) {
+      throw new IllegalArgumentException("A tone table only maps 8-bit images.");
+    }
+    if (image instanceof GrayImage && isUniform()) {
+      byte[] plane = ((GrayImage) image).getPlane();
+      GrayImage result = new GrayImage(image.getWidth(), image.getHeight());
+      byte[] resultPlane = result.getPlane();
+      for (int i = 0; i < plane.length; i++) {
+        resultPlane[i] = (byte) red[plane[i] & 0xFF];
+      }
+      return result;
+    }
+    return ImageStorage.mapRows(image, rowOperator());
+  }
+
+  /**
+   * Applies the table to every pixel of a packed RGB image in place.
+   *
+   * @param image The image to change, which must be editable in place.
+   * @throws IllegalArgumentException If the image is not editable in place.
+   */
+  public void applyInPlace(Image image) {
+    ImageStorage.mapRowsInPlace(image, rowOperator());
+  }
+}
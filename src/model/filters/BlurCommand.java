@@ -8,7 +8,7 @@ import model.IImageModel;
 /**
  * BlurCommand is a concrete implementation of AbstractImageCommand, which applies a blur filter to
  * an image. This command can be executed to apply a default blur or a parameterized blur based on
- * the command passed.
+ * the command passed, either a split preview or a blur of a given radius.
  */
 public class BlurCommand extends AbstractImageCommand {
 
@@ -53,6 +53,21 @@ public class BlurCommand extends AbstractImageCommand {
     super(sourceFileName, destFileName, cmand, p, model);
   }
 
+  /**
+   * Constructs a BlurCommand to apply a blur of the given radius to an image.
+   *
+   * @param sourceFileName The name of the source image file.
+   * @param destFileName   The name of the destination file where the blurred image will be stored.
+   * @param radius         The radius of the blur, at least 1.
+   * @param model          The image model responsible for executing the blur operation.
+   */
+  private BlurCommand(String sourceFileName, String destFileName, int radius,
+                      IImageModel model) {
+    super(sourceFileName, destFileName, model);
+    this.cmand = "radius";
+    this.p = String.valueOf(radius);
+  }
+
   /**
    * Creates and returns a new instance of BlurCommandBuilder to build a BlurCommand.
    *
@@ -83,8 +98,9 @@ public class BlurCommand extends AbstractImageCommand {
      * Builds and returns a new BlurCommand instance after validating required parameters.
      *
      * @return A new instance of BlurCommand configured with the specified parameters.
-     * @throws IllegalStateException If any required fields (sourceFileName or destFileName) are
-     *                               missing or not set.
+     * @throws IllegalStateException    If any required fields (sourceFileName or destFileName)
+     *                                  are missing or not set.
+     * @throws IllegalArgumentException If the radius of a blur is not a positive integer.
      */
     @Override
     public BlurCommand build() {
@@ -92,7 +108,13 @@ public class BlurCommand extends AbstractImageCommand {
         throw new IllegalStateException("Source and destination file names are required.");
       }
 
-      if (cmand != null && p != null) {
+      if ("radius".equals(cmand)) {
+        int radius = p == null ? 0 : Integer.parseInt(p);
+        if (radius < 1) {
+          throw new IllegalArgumentException("Blur radius must be a positive integer.");
+        }
+        return new BlurCommand(sourceFileName, destFileName, radius, model);
+      } else if (cmand != null && p != null) {
         return new BlurCommand(sourceFileName, destFileName, cmand, p, model);
       } else if (mask != null) {
         return new BlurCommand(sourceFileName, destFileName, maskedImage, model);
@@ -5,16 +5,21 @@ import java.io.FileNotFoundException;
 import model.AbstractCommandBuilder;
 import model.AbstractImageCommand;
 import model.IImageModel;
+import model.database.BoxSums;
 
 /**
  * SharpenCommand is a concrete implementation of AbstractImageCommand, which sharpens an image and
  * stores the result. It supports both default sharpening and sharpening with a specified
- * parameter.
+ * parameter, as well as sharpening by an amount against a box of a given radius.
  */
 public class SharpenCommand extends AbstractImageCommand {
 
   protected String mask = null;
 
+  private int radius;
+
+  private double amount;
+
   /**
    * Private constructor for creating a SharpenCommand with source and destination file names.
    *
@@ -55,6 +60,24 @@ public class SharpenCommand extends AbstractImageCommand {
     super(sourceFileName, destFileName, cmand, p, model);
   }
 
+  /**
+   * Private constructor for creating a SharpenCommand that sharpens by an amount against the mean
+   * of a box of the given radius.
+   *
+   * @param sourceFileName The name of the source image file for sharpening.
+   * @param destFileName   The name of the destination file to store the sharpened image.
+   * @param radius         The radius of the box, 1 to BoxSums.MAX_RADIUS.
+   * @param amount         The amount of sharpening, at least 0.
+   * @param model          The image model responsible for executing the sharpening filter.
+   */
+  private SharpenCommand(String sourceFileName, String destFileName, int radius, double amount,
+                         IImageModel model) {
+    super(sourceFileName, destFileName, model);
+    this.cmand = "radius";
+    this.radius = radius;
+    this.amount = amount;
+  }
+
   /**
    * Creates and returns a new instance of SharpenCommandBuilder to build a SharpenCommand.
    *
@@ -74,6 +97,10 @@ public class SharpenCommand extends AbstractImageCommand {
    */
   @Override
   protected void processImage() throws Exception {
+    if ("radius".equals(cmand)) {
+      this.model.sharpenRadiusMethod(sourceFileName, destFileName, radius, amount);
+      return;
+    }
     this.model.sharpenMethod(sourceFileName, destFileName, cmand, p, mask, maskedImage);
   }
 
@@ -83,6 +110,20 @@ public class SharpenCommand extends AbstractImageCommand {
    */
   public static class SharpenCommandBuilder extends AbstractCommandBuilder<SharpenCommand> {
 
+    private String amount;
+
+    /**
+     * Sets the amount of a sharpening against a box of a given radius, which is set as the
+     * "radius" command with the radius as its parameter.
+     *
+     * @param amount The amount of sharpening.
+     * @return This builder.
+     */
+    public SharpenCommandBuilder setAmount(String amount) {
+      this.amount = amount;
+      return this;
+    }
+
     /**
      * Builds and returns a new instance of SharpenCommand. Validates that both the source and
      * destination file names are provided.
@@ -91,7 +132,8 @@ public class SharpenCommand extends AbstractImageCommand {
      * @throws IllegalStateException    If any required field (sourceFileName or destFileName) is
      *                                  missing.
      * @throws IllegalArgumentException If the command is not "split" when additional parameters are
-     *                                  provided.
+     *                                  provided, or if the radius or amount of a "radius" command
+     *                                  is out of range.
      */
     @Override
     public SharpenCommand build() {
@@ -99,7 +141,18 @@ public class SharpenCommand extends AbstractImageCommand {
         throw new IllegalStateException("Source and destination file names are required.");
       }
 
-      if (cmand != null && p != null) {
+      if ("radius".equals(cmand)) {
+        int radius = p == null ? 0 : Integer.parseInt(p);
+        if (radius < 1 || radius > BoxSums.MAX_RADIUS) {
+          throw new IllegalArgumentException("Sharpen radius must be between 1 and "
+                  + BoxSums.MAX_RADIUS + ".");
+        }
+        double parsedAmount = amount == null ? -1 : Double.parseDouble(amount);
+        if (!(parsedAmount >= 0) || Double.isInfinite(parsedAmount)) {
+          throw new IllegalArgumentException("Sharpen amount must be a non-negative number.");
+        }
+        return new SharpenCommand(sourceFileName, destFileName, radius, parsedAmount, model);
+      } else if (cmand != null && p != null) {
         return new SharpenCommand(sourceFileName, destFileName, cmand, p, model);
       } else if (mask != null) {
         return new SharpenCommand(sourceFileName, destFileName, maskedImage, model);
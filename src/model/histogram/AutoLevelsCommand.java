@@ -0,0 +1,82 @@
+package model.histogram;
+
+import model.AbstractCommandBuilder;
+import model.AbstractImageCommand;
+import model.IImageModel;
+
+/**
+ * AutoLevelsCommand is a command that stretches the levels of an image so that its darkest samples
+ * become black and its brightest white. This command allows for the plain adjustment or additional
+ * parameterized operations, such as "split" mode.
+ */
+public class AutoLevelsCommand extends AbstractImageCommand {
+
+  /**
+   * Constructs an AutoLevelsCommand with specified source and destination file names.
+   *
+   * @param sourceFileName the name of the source image file
+   * @param destFileName   the name of the destination image file
+   */
+  private AutoLevelsCommand(String sourceFileName, String destFileName, IImageModel model) {
+    super(sourceFileName, destFileName, model);
+  }
+
+  /**
+   * Constructs an AutoLevelsCommand with source and destination file names, command keyword, and a
+   * parameter.
+   *
+   * @param sourceFileName the name of the source image file
+   * @param destFileName   the name of the destination image file
+   * @param cmand          the command keyword, specifying a special operation (e.g., "split")
+   * @param p              a parameter for the command, used in specific modes (e.g., split mode
+   *                       level)
+   */
+  private AutoLevelsCommand(String sourceFileName, String destFileName, String cmand, String p,
+                            IImageModel model) {
+    super(sourceFileName, destFileName, cmand, p, model);
+  }
+
+  /**
+   * Creates and returns a new AutoLevelsCommandBuilder instance.
+   *
+   * @return a new instance of AutoLevelsCommandBuilder for building a AutoLevelsCommand
+   */
+  public static AutoLevelsCommandBuilder createBuilder() {
+    return new AutoLevelsCommandBuilder();
+  }
+
+  /**
+   * This method processes the image for auto levels with split parameter.
+   *
+   * @throws Exception if exception occurs.
+   */
+  @Override
+  protected void processImage() throws Exception {
+    this.model.autoLevelsMethod(sourceFileName, destFileName, cmand, p);
+  }
+
+  /**
+   * Builder class for constructing instances of AutoLevelsCommand. This builder enforces required
+   * fields and validates command and parameter settings.
+   */
+  public static class AutoLevelsCommandBuilder extends
+          AbstractCommandBuilder<AutoLevelsCommand> {
+
+    /**
+     * Builds an AutoLevelsCommand instance with the specified attributes.
+     *
+     * @return a new instance of AutoLevelsCommand
+     * @throws IllegalStateException if required attributes are not set
+     */
+    @Override
+    public AutoLevelsCommand build() {
+      if (sourceFileName == null || destFileName == null) {
+        throw new IllegalStateException("Source and destination file names are required.");
+      }
+      if (cmand != null && p != null) {
+        return new AutoLevelsCommand(sourceFileName, destFileName, cmand, p, model);
+      }
+      return new AutoLevelsCommand(sourceFileName, destFileName, model);
+    }
+  }
+}
@@ -23,12 +23,14 @@ public class ImageComparisonUtils {
       return false;
     }
 
+    int width = image1.getWidth();
+    int[] row1 = new int[width];
+    int[] row2 = new int[width];
     for (int i = 0; i < image1.getHeight(); ++i) {
-      for (int j = 0; j < image1.getWidth(); ++j) {
-        Pixel pixel1 = image1.getPixel(j, i);
-        Pixel pixel2 = image2.getPixel(j, i);
-
-        if (!arePixelsEqual(pixel1, pixel2)) {
+      image1.getRowSpan(0, i, width, row1, 0);
+      image2.getRowSpan(0, i, width, row2, 0);
+      for (int j = 0; j < width; ++j) {
+        if (row1[j] != row2[j]) {
           return false;
         }
       }
@@ -50,10 +52,15 @@ public class ImageComparisonUtils {
       return false;
     }
 
+    int width = image1.getWidth();
+    int[] row1 = new int[width];
+    int[] row2 = new int[width];
     for (int i = 0; i < image1.getHeight(); ++i) {
-      for (int j = 0; j < image1.getWidth(); ++j) {
-        Pixel pixel1 = image1.getPixel(j, i);
-        Pixel pixel2 = image2.getPixel(j, i);
+      image1.getRowSpan(0, i, width, row1, 0);
+      image2.getRowSpan(0, i, width, row2, 0);
+      for (int j = 0; j < width; ++j) {
+        Pixel pixel1 = Pixel.unpack(row1[j]);
+        Pixel pixel2 = Pixel.unpack(row2[j]);
 
         if (!arePixelsEqual(pixel1, pixel2, tolerance)) {
           System.out.println(pixel1.getRed() + " " + pixel1.getGreen() + " " + pixel1.getBlue());
@@ -66,19 +73,6 @@ public class ImageComparisonUtils {
     return true;  // Return true if all pixels match
   }
 
-  /**
-   * Compares two pixels to see if they are equal.
-   *
-   * @param pixel1 the first pixel as a double array [R, G, B]
-   * @param pixel2 the second pixel as a double array [R, G, B]
-   * @return true if the two pixels are identical, false otherwise
-   */
-  private static boolean arePixelsEqual(Pixel pixel1, Pixel pixel2) {
-    return pixel1.getRed() == pixel2.getRed()
-            && pixel1.getGreen() == pixel2.getGreen()
-            && pixel1.getBlue() == pixel2.getBlue();
-  }
-
   /**
    * Compares two pixels to see if they are equal. Method overloading with one more parameter.
    *
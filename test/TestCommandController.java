@@ -1,6 +1,25 @@
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+
 import controller.CommandMappernew;
 import model.ImageModel;
+import model.database.ApproximateHistogram;
+import model.database.CustomImage;
+import model.database.CustomImage2;
+import model.database.CustomImage3;
+import model.database.GrayImage;
+import model.database.Histogram;
+import model.database.Image;
+import model.database.Image16;
+import model.database.ImageStorage;
+import model.database.ImageView;
+import model.database.MappedImage;
+import model.database.Pixel;
+import model.database.RasterPool;
+import model.database.TiledImage;
 
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,6 +42,15 @@ public class TestCommandController {
     cm = new CommandMappernew(model);
   }
 
+  /**
+   * Restores the global settings that tests change to their defaults.
+   */
+  @After
+  public void tearDown() {
+    ImageStorage.setTiledThreshold(ImageStorage.DEFAULT_TILED_THRESHOLD);
+    ImageStorage.setHighBitDepth(false);
+  }
+
   @Test
   public void testLoadJpg() throws Exception {
     String[] args;
@@ -85,4 +113,396 @@ public class TestCommandController {
   }
 
 
+
+  @Test
+  public void testMappedStorage() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("storage", new String[]{"mapped", "mh", "mh-mapped"});
+    Assert.assertTrue(model.getImage("mh-mapped") instanceof MappedImage);
+    Assert.assertTrue(ImageComparisonUtils.equals(model.getImage("mh"),
+            model.getImage("mh-mapped")));
+
+    cm.routeCommand("blur", new String[]{"mh", "mh-blur"});
+    cm.routeCommand("blur", new String[]{"mh-mapped", "mh-mapped-blur"});
+    Assert.assertTrue(model.getImage("mh-mapped-blur") instanceof MappedImage);
+    Assert.assertTrue(ImageComparisonUtils.equals(model.getImage("mh-blur"),
+            model.getImage("mh-mapped-blur")));
+
+    cm.routeCommand("storage", new String[]{"heap", "mh-mapped-blur", "mh-heap-blur"});
+    Assert.assertFalse(model.getImage("mh-heap-blur") instanceof MappedImage);
+  }
+
+  @Test
+  public void testCropSharesUntilSourceIsReplaced() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("crop", new String[]{"10", "20", "30", "40", "mh", "mh-crop"});
+    ImageView cropped = (ImageView) model.getImage("mh-crop");
+    Assert.assertEquals(30, cropped.getWidth());
+    Assert.assertEquals(40, cropped.getHeight());
+    Assert.assertTrue(cropped.isShared());
+    int expected = model.getImage("mh").getRGB(15, 25);
+    Assert.assertEquals(expected, cropped.getRGB(5, 5));
+
+    cm.routeCommand("load", new String[]{"res/koala.jpg", "mh"});
+    Assert.assertFalse(cropped.isShared());
+    Assert.assertEquals(expected, cropped.getRGB(5, 5));
+  }
+
+  @Test
+  public void testBitDepth() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("bit-depth", new String[]{"16", "mh", "mh16"});
+    Assert.assertTrue(model.getImage("mh16") instanceof Image16);
+    Assert.assertTrue(ImageComparisonUtils.equals(model.getImage("mh"),
+            model.getImage("mh16")));
+
+    cm.routeCommand("sepia", new String[]{"mh16", "mh16-sepia"});
+    Assert.assertTrue(model.getImage("mh16-sepia") instanceof Image16);
+    cm.routeCommand("bit-depth", new String[]{"8", "mh16-sepia", "mh8-sepia"});
+    Assert.assertFalse(model.getImage("mh8-sepia").isHighBitDepth());
+
+    cm.routeCommand("bit-depth", new String[]{"16"});
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh-deep"});
+    Assert.assertTrue(model.getImage("mh-deep") instanceof Image16);
+  }
+
+  @Test
+  public void testSplitRecyclesIntermediate() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    Image source = model.getImage("mh");
+    // The blur only covers the left half and the one column right of it that the kernel reads
+    int size = (source.getWidth() * 50 / 100 + 1) * source.getHeight();
+    int full = source.getWidth() * source.getHeight();
+    RasterPool.clear();
+
+    cm.routeCommand("blur", new String[]{"mh", "mh-split", "split", "50"});
+    Assert.assertEquals(1, RasterPool.getPooledCount(size));
+    Assert.assertEquals(0, RasterPool.getPooledCount(full));
+    cm.routeCommand("blur", new String[]{"mh", "mh-split", "split", "50"});
+    Assert.assertEquals(1, RasterPool.getPooledCount(size));
+    Assert.assertEquals(1, RasterPool.getPooledCount(full));
+    cm.routeCommand("blur", new String[]{"mh", "mh-split", "split", "50"});
+    Assert.assertEquals(1, RasterPool.getPooledCount(size));
+    Assert.assertEquals(1, RasterPool.getPooledCount(full));
+  }
+
+  @Test
+  public void testReplacedImageFailsFast() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    Image replaced = model.getImage("mh");
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    try {
+      replaced.getRGB(0, 0);
+      Assert.fail("A recycled image must not be read");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("recycled"));
+    }
+  }
+
+  @Test
+  public void testSameNameEditsInPlace() throws Exception {
+    String[][] commands = {
+        {"blur"}, {"sharpen"}, {"sepia"}, {"luma-component"}, {"intensity-component"},
+        {"value-component"}, {"red-component"}, {"green-component"}, {"blue-component"},
+        {"horizontal-flip"}, {"vertical-flip"}, {"color-correct"}, {"brighten", "10"},
+        {"level-adjust", "20", "100", "230"}
+    };
+    for (String[] command : commands) {
+      cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+      cm.routeCommand("load", new String[]{"res/manhattan-small.png", "edited"});
+      Image edited = model.getImage("edited");
+
+      cm.routeCommand(command[0], arguments(command, "mh", "expected"));
+      cm.routeCommand(command[0], arguments(command, "edited", "edited"));
+
+      Assert.assertSame(command[0], edited, model.getImage("edited"));
+      Assert.assertTrue(command[0], ImageComparisonUtils.equals(model.getImage("expected"),
+              model.getImage("edited")));
+    }
+  }
+
+  @Test
+  public void testBlurRadius() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("blur", new String[]{"mh", "mh-blur"});
+    cm.routeCommand("blur", new String[]{"mh", "mh-blur-4", "radius", "4"});
+
+    Image blurred = model.getImage("mh-blur-4");
+    Assert.assertEquals(model.getImage("mh").getWidth(), blurred.getWidth());
+    Assert.assertFalse(ImageComparisonUtils.equals(model.getImage("mh-blur"), blurred));
+  }
+
+  @Test
+  public void testSharpenRadius() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("sharpen", new String[]{"mh", "mh-flat", "radius", "3", "0"});
+    cm.routeCommand("sharpen", new String[]{"mh", "mh-sharp", "radius", "3", "1.5"});
+
+    Assert.assertTrue(ImageComparisonUtils.equals(model.getImage("mh"),
+            model.getImage("mh-flat")));
+    Assert.assertFalse(ImageComparisonUtils.equals(model.getImage("mh"),
+            model.getImage("mh-sharp")));
+  }
+
+  @Test
+  public void testLazyChainMatchesEagerChain() throws Exception {
+    String[][] commands = {
+        {"brighten", "-10"}, {"sepia"}, {"level-adjust", "20", "100", "230"}, {"luma-component"},
+        {"brighten", "25"}, {"sepia"}, {"red-component"}, {"intensity-component"}
+    };
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    String previous = "mh";
+    for (int i = 0; i < commands.length; i++) {
+      cm.routeCommand(commands[i][0], arguments(commands[i], previous, "eager" + i));
+      previous = "eager" + i;
+    }
+
+    cm.routeCommand("lazy", new String[]{"exact"});
+    previous = "mh";
+    for (int i = 0; i < commands.length; i++) {
+      cm.routeCommand(commands[i][0], arguments(commands[i], previous, "lazy" + i));
+      previous = "lazy" + i;
+    }
+    // The pending images keep reading the image they were created from
+    cm.routeCommand("load", new String[]{"res/koala.jpg", "mh"});
+    cm.routeCommand("brighten", new String[]{"10", "lazy7", "lazy7"});
+    cm.routeCommand("brighten", new String[]{"10", "eager7", "eager7"});
+
+    cm.routeCommand("lazy", new String[]{"force", "lazy3"});
+    Assert.assertTrue(model.getImage("lazy3") instanceof GrayImage);
+    for (int i = commands.length - 1; i >= 0; i--) {
+      Assert.assertTrue(commands[i][0], ImageComparisonUtils.equals(model.getImage("eager" + i),
+              model.getImage("lazy" + i)));
+    }
+
+    cm.routeCommand("sepia", new String[]{"mh", "mh-sepia"});
+    cm.routeCommand("lazy", new String[]{"off"});
+    Assert.assertTrue(ImageComparisonUtils.equals(model.getImage("mh-sepia"),
+            new CustomImage(model.getImage("mh")).sepia(model.getImage("mh"))));
+    try {
+      cm.routeCommand("lazy", new String[]{"force"});
+      Assert.fail("force needs an image name");
+    } catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSplitComputesOnlyTheVisibleSide() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("bit-depth", new String[]{"16", "mh", "mh16"});
+    String[][] commands = {
+        {"blur"}, {"sharpen"}, {"sepia"}, {"luma-component"}, {"intensity-component"},
+        {"value-component"}, {"level-adjust", "20", "100", "230"}
+    };
+    for (String source : new String[]{"mh", "mh16"}) {
+      for (String[] command : commands) {
+        for (String percentage : new String[]{"0", "37", "100"}) {
+          cm.routeCommand(command[0], arguments(command, source, "full"));
+          String[] split = Arrays.copyOf(arguments(command, source, "split"),
+                  command.length + 3);
+          split[command.length + 1] = "split";
+          split[command.length + 2] = percentage;
+          cm.routeCommand(command[0], split);
+
+          Image original = model.getImage(source);
+          Image expected = new CustomImage2(original).splitImg(model.getImage("full"),
+                  original, percentage);
+          Assert.assertTrue(command[0] + " " + percentage, ImageComparisonUtils.equals(
+                  expected, model.getImage("split")));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMaskComputesOnlyTheSelectedPixels() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("load", new String[]{"res/triangle_mask.png", "triangle"});
+    cm.routeCommand("bit-depth", new String[]{"16", "mh", "mh16"});
+    int width = model.getImage("mh").getWidth();
+    int height = model.getImage("mh").getHeight();
+    // A black square at the right edge, where the filters read past the square, and a mask that
+    // keeps every original pixel
+    Image spot = new Image(width, height);
+    Image open = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        boolean inSpot = x >= width - 7 && y >= height / 2 && y < height / 2 + 7;
+        spot.setRGB(x, y, inSpot ? 0 : 0xFFFFFF);
+        open.setRGB(x, y, 0xFFFFFF);
+      }
+    }
+    model.storeImage("spot", spot);
+    model.storeImage("open", open);
+    String[] commands = {"blur", "sharpen", "sepia", "luma-component", "intensity-component",
+        "value-component", "red-component", "green-component", "blue-component"};
+    for (String source : new String[]{"mh", "mh16"}) {
+      for (String mask : new String[]{"triangle", "spot", "open"}) {
+        Image original = model.getImage(source);
+        for (String command : commands) {
+          cm.routeCommand(command, new String[]{source, "full"});
+          cm.routeCommand(command, new String[]{source, mask, "masked"});
+
+          Image expected = new CustomImage3(original).maskImg(model.getImage("full"),
+                  model.getImage(mask), original);
+          Assert.assertTrue(command + " " + mask, ImageComparisonUtils.equals(expected,
+                  model.getImage("masked")));
+        }
+        model.blurMethod(source, "full", "radius", "3", null, null);
+        model.blurMethod(source, "masked", "radius", "3", "mask", mask);
+        Image expected = new CustomImage3(original).maskImg(model.getImage("full"),
+                model.getImage(mask), original);
+        Assert.assertTrue("radius " + mask, ImageComparisonUtils.equals(expected,
+                model.getImage("masked")));
+      }
+    }
+  }
+
+  @Test
+  public void testMaskIsRebuiltWhenItsImageChanges() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("load", new String[]{"res/triangle_mask.png", "mask"});
+    cm.routeCommand("sepia", new String[]{"mh", "full"});
+    cm.routeCommand("sepia", new String[]{"mh", "mask", "masked"});
+    Assert.assertFalse(ImageComparisonUtils.equals(model.getImage("full"),
+            model.getImage("masked")));
+
+    // Darkening the mask in place selects every pixel
+    cm.routeCommand("brighten", new String[]{"-255", "mask", "mask"});
+    cm.routeCommand("sepia", new String[]{"mh", "mask", "masked"});
+    Assert.assertTrue(ImageComparisonUtils.equals(model.getImage("full"),
+            model.getImage("masked")));
+
+    // Replacing the mask with a white image selects none
+    cm.routeCommand("brighten", new String[]{"255", "mask", "white"});
+    cm.routeCommand("sepia", new String[]{"mh", "white", "masked"});
+    cm.routeCommand("brighten", new String[]{"255", "mask", "mask"});
+    cm.routeCommand("sepia", new String[]{"mh", "mask", "masked"});
+    Assert.assertTrue(ImageComparisonUtils.equals(model.getImage("mh"),
+            model.getImage("masked")));
+  }
+
+  @Test
+  public void testHistogramIsRecomputedWhenItsImageChanges() throws Exception {
+    cm.routeCommand("load", new String[]{"res/manhattan-small.png", "mh"});
+    cm.routeCommand("color-correct", new String[]{"mh", "corrected"});
+    cm.routeCommand("histogram", new String[]{"mh", "histogram"});
+    Image original = model.getImage("mh");
+    CustomImage2 operations = new CustomImage2(original);
+    Assert.assertTrue(ImageComparisonUtils.equals(operations.colorCorrectionCommand(original),
+            model.getImage("corrected")));
+
+    // Brightening in place changes the peaks that color correction and the histogram use
+    cm.routeCommand("level-adjust", new String[]{"30", "90", "200", "mh", "mh"});
+    Assert.assertSame(original, model.getImage("mh"));
+    cm.routeCommand("color-correct", new String[]{"mh", "corrected"});
+    cm.routeCommand("histogram", new String[]{"mh", "adjusted-histogram"});
+    cm.routeCommand("auto-levels", new String[]{"mh", "auto"});
+    Assert.assertTrue(ImageComparisonUtils.equals(operations.colorCorrectionCommand(original),
+            model.getImage("corrected")));
+    Assert.assertFalse(ImageComparisonUtils.equals(model.getImage("histogram"),
+            model.getImage("adjusted-histogram")));
+    Histogram histogram = Histogram.of(original);
+    Assert.assertTrue(ImageComparisonUtils.equals(operations.autoLevels(original, histogram),
+            model.getImage("auto")));
+
+    cm.routeCommand("auto-levels", new String[]{"mh", "auto-split", "split", "40"});
+    Assert.assertTrue(ImageComparisonUtils.equals(operations.splitImg(model.getImage("auto"),
+            original, "40"), model.getImage("auto-split")));
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testSharpenRadiusMissingImage() throws Exception {
+    model.sharpenRadiusMethod("no-such-image", "sharpened", 2, 1.0);
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testColorCorrectMissingImage() throws Exception {
+    model.colorCorrectMethod("no-such-image", "corrected", null, null);
+  }
+
+  @Test
+  public void testTiledResultStoredOverItsSourceIsComputed() throws Exception {
+    Image source = hashedImage(6, 4);
+    Image expected = new CustomImage(source).brighten(10, source);
+    model.storeImage("pinned", source);
+    ImageStorage.setTiledThreshold(0);
+    cm.routeCommand("blur", new String[]{"pinned", "pinned-blur"});
+    cm.routeCommand("brighten", new String[]{"10", "pinned", "pinned"});
+    Image brightened = model.getImage("pinned");
+    Assert.assertFalse(brightened instanceof TiledImage);
+    Assert.assertTrue(ImageComparisonUtils.equals(expected, brightened));
+    // Replacing the blurred image releases the last image that reads the source
+    Assert.assertFalse(ImageStorage.isEditableInPlace(source));
+    model.storeImage("pinned-blur", new Image(1, 1));
+    Assert.assertTrue(ImageStorage.isEditableInPlace(source));
+  }
+
+  @Test
+  public void testApproximateHistogramPreviews() throws Exception {
+    Image image = new Image(600, 400);
+    for (int y = 0; y < 400; y++) {
+      for (int x = 0; x < 600; x++) {
+        int hash = (x * 7919 + y * 104729) & 0xFFFF;
+        boolean peak = (x + y) % 3 == 0;
+        image.setRGB(x, y, Pixel.pack(peak ? 100 : hash & 0xFF, peak ? 150 : hash >> 8,
+                peak ? 60 : (hash >> 4) & 0xFF));
+      }
+    }
+    model.storeImage("big", image);
+    CustomImage2 operations = new CustomImage2(image);
+    Histogram sampled = operations.previewHistogram(image, ApproximateHistogram.DEFAULT_SAMPLES,
+            ApproximateHistogram.DEFAULT_TOLERANCE);
+    Assert.assertTrue(sampled.getPixelCount() < 600 * 400);
+
+    cm.routeCommand("histogram-mode", new String[]{"approximate"});
+    cm.routeCommand("histogram", new String[]{"big", "sampled-histogram"});
+    cm.routeCommand("color-correct", new String[]{"big", "preview", "split", "50"});
+    Assert.assertTrue(drawnAs(operations.createHistogram(sampled),
+            model.getImage("sampled-histogram")));
+    Image corrected = operations.colorCorrectionCommand(image);
+    Assert.assertTrue(ImageComparisonUtils.equals(operations.splitImg(corrected, image, "50"),
+            model.getImage("preview")));
+
+    // Without split, and with approximate histograms off, every pixel is counted
+    cm.routeCommand("color-correct", new String[]{"big", "corrected"});
+    Assert.assertTrue(ImageComparisonUtils.equals(corrected, model.getImage("corrected")));
+    cm.routeCommand("histogram-mode", new String[]{"exact"});
+    cm.routeCommand("histogram", new String[]{"big", "exact-histogram"});
+    Assert.assertTrue(drawnAs(operations.createHistogram(Histogram.of(image)),
+            model.getImage("exact-histogram")));
+  }
+
+  /**
+   * Returns an image whose pixels are a hash of their coordinates, so that neighbouring pixels
+   * and rows differ in every channel.
+   */
+  private static Image hashedImage(int width, int height) {
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 7919 + y * 104729) & 0xFFFFFF);
+      }
+    }
+    return image;
+  }
+
+  private static boolean drawnAs(BufferedImage drawn, Image image) {
+    for (int y = 0; y < drawn.getHeight(); y++) {
+      for (int x = 0; x < drawn.getWidth(); x++) {
+        if (((drawn.getRGB(x, y) ^ image.getRGB(x, y)) & 0xFFFFFF) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static String[] arguments(String[] command, String source, String destination) {
+    String[] arguments = Arrays.copyOfRange(command, 1, command.length + 2);
+    arguments[command.length - 1] = source;
+    arguments[command.length] = destination;
+    return arguments;
+  }
 }
@@ -1153,6 +1153,46 @@ public class TestModelController {
                     "Color-Correct Command Image Saved");
   }
 
+  @Test
+  public void testControllerAutoLevelsSimple() {
+    String inputData = "auto-levels inputName outputName";
+    IImageModel mockModel = new MockModel();
+    ImageProcessorController controller = new ImageProcessorController(new StringReader(inputData),
+            mockModel);
+    controller.start();
+    String actualLog = ((MockModel) mockModel).getLog().trim();
+    assertEquals(actualLog,
+            "Called Auto-Levels method!\n" +
+                    "Auto-Levels Command Image Saved");
+  }
+
+  @Test
+  public void testControllerAutoLevelsSplit() {
+    String inputData = "auto-levels inputName outputName split 40";
+    IImageModel mockModel = new MockModel();
+    ImageProcessorController controller = new ImageProcessorController(new StringReader(inputData),
+            mockModel);
+    controller.start();
+    String actualLog = ((MockModel) mockModel).getLog().trim();
+    assertEquals(actualLog,
+            "Called Auto-Levels method!\n" +
+                    "Called Auto-Levelsmethod along with split!\n" +
+                    "Auto-Levels Command Image Saved");
+  }
+  @Test
+  public void testControllerHistogramMode() {
+    String inputData = "histogram-mode approximate\nhistogram-mode exact";
+    IImageModel mockModel = new MockModel();
+    ImageProcessorController controller = new ImageProcessorController(new StringReader(inputData),
+            mockModel);
+    controller.start();
+    String actualLog = ((MockModel) mockModel).getLog().trim();
+    assertEquals(actualLog,
+            "Called histogramModeMethod with approximate: true\n" +
+                    "Called histogramModeMethod with approximate: false");
+  }
+
+
   @Test
   public void testControllerLevelAdjustSplit() {
     String inputData = "level-adjust 100 200 255 mh mh-c-a-split split 40";
@@ -1,16 +1,52 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.database.AffineColorTransform;
+import model.database.ApproximateHistogram;
+import model.database.BinaryMask;
+import model.database.ChannelView;
+import model.database.ColorKernels;
+import model.database.Convolution;
 import model.database.CustomImage;
+import model.database.FixedPoint;
 import model.database.ICustomImage;
 import model.database.ICustomImage2;
 import model.database.ICustomImage3;
+import model.database.GrayImage;
+import model.database.Histogram;
 import model.database.Image;
+import model.database.ImageStorage;
+import model.database.Image16;
+import model.database.ImageView;
+import model.database.LazyImage;
+import model.database.MappedImage;
 import model.database.CustomImage3;
 import model.database.CustomImage2;
-
+import model.database.Pixel;
+import model.database.PlanarImage;
+import model.database.RasterPool;
+import model.database.RowBands;
+import model.database.RowOperator;
+import model.database.TiledImage;
+import model.database.ToneLut;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -21,6 +57,9 @@ import utils.ImageComparisonUtils;
  */
 public class TestModelLogic {
 
+  // The default parallelism, which tearDown restores
+  private static final int PARALLELISM = RowBands.getParallelism();
+
   private Image originalImage;
   private ICustomImage customImage;
   private ICustomImage2 customImage2;
@@ -81,6 +120,34 @@ public class TestModelLogic {
     customImage3 = new CustomImage3(originalImage);
   }
 
+  /**
+   * Restores the global settings that tests change to their defaults.
+   */
+  @After
+  public void tearDown() {
+    if (RowBands.getParallelism() != PARALLELISM) {
+      RowBands.setParallelism(PARALLELISM);
+    }
+    RowBands.setParallelThreshold(RowBands.DEFAULT_PARALLEL_THRESHOLD);
+    ImageStorage.setTiledThreshold(ImageStorage.DEFAULT_TILED_THRESHOLD);
+    ImageStorage.setHighBitDepth(false);
+    ColorKernels.setBatchEnabled(true);
+  }
+
+  /**
+   * Returns an image whose pixels are a hash of their coordinates, so that neighbouring pixels
+   * and rows differ in every channel.
+   */
+  private static Image hashedImage(int width, int height) {
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 7919 + y * 104729) & 0xFFFFFF);
+      }
+    }
+    return image;
+  }
+
   @Test
   public void testBrighten() throws IOException {
 
@@ -1006,6 +1073,29 @@ public class TestModelLogic {
     assertTrue(ImageComparisonUtils.equals(adjustImage, expectedImage));
   }
 
+  @Test
+  public void compressTransformsRowsAndColumnsInParallel() {
+    Image image = hashedImage(300, 200);
+    CustomImage2 operations = new CustomImage2(image);
+    RowBands.setParallelism(1);
+    Image sequential = operations.compress(image, 60);
+    RowBands.setParallelism(Math.max(2, PARALLELISM));
+    RowBands.setParallelThreshold(0);
+    Image parallel = operations.compress(image, 60);
+    Image lossless = operations.compress(image, 0);
+    assertTrue(ImageComparisonUtils.equals(sequential, parallel));
+    // Without thresholding the inverse transform gives back the pixels, up to truncation
+    for (int y = 0; y < 200; y++) {
+      for (int x = 0; x < 300; x++) {
+        int expected = image.getRGB(x, y);
+        int actual = lossless.getRGB(x, y);
+        assertTrue(Math.abs(Pixel.red(expected) - Pixel.red(actual)) <= 1);
+        assertTrue(Math.abs(Pixel.green(expected) - Pixel.green(actual)) <= 1);
+        assertTrue(Math.abs(Pixel.blue(expected) - Pixel.blue(actual)) <= 1);
+      }
+    }
+  }
+
   @Test(expected = Exception.class)
   public void testCompressErrorHighValue() throws IOException {
 
@@ -1151,6 +1241,228 @@ public class TestModelLogic {
     assertTrue(ImageComparisonUtils.equals(downScaleImage, expectedImage));
   }
 
+  @Test
+  public void maskBoundsHoldTheProcessedPixels() {
+    Image mask = new Image(6, 5);
+    for (int y = 0; y < 5; y++) {
+      for (int x = 0; x < 6; x++) {
+        mask.setRGB(x, y, 0xFFFFFF);
+      }
+    }
+    assertNull(BinaryMask.of(mask).getBounds(2));
+
+    mask.setRGB(2, 1, 0);
+    mask.setRGB(3, 2, 0x00FF00);
+    BinaryMask binaryMask = BinaryMask.of(mask);
+    assertArrayEquals(new int[]{2, 1, 2, 2}, binaryMask.getBounds(0));
+    assertArrayEquals(new int[]{1, 0, 4, 4}, binaryMask.getBounds(1));
+    assertArrayEquals(new int[]{0, 0, 6, 5}, binaryMask.getBounds(3));
+
+    // Filtering only the bounds gives the pixels of filtering the whole image
+    Image original = new Image(6, 5);
+    Random random = new Random(21);
+    for (int y = 0; y < 5; y++) {
+      for (int x = 0; x < 6; x++) {
+        original.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    int[] bounds = binaryMask.getBounds(1);
+    Image region = customImage.blur(ImageView.crop(original, bounds[0], bounds[1], bounds[2],
+            bounds[3]));
+    assertTrue(ImageComparisonUtils.equals(
+            customImage3.maskImg(customImage.blur(original), mask, original),
+            customImage3.maskImg(region, bounds[0], bounds[1], binaryMask, original)));
+    assertTrue(ImageComparisonUtils.equals(
+            customImage3.maskImg(customImage.sepia(original), mask, original),
+            customImage3.maskImg(ColorKernels.sepia(), binaryMask, original)));
+  }
+
+  @Test
+  public void binaryMaskMatchesTheMaskImage() {
+    int width = 150;
+    int height = 7;
+    Image image = new Image(width, height);
+    Random random = new Random(22);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        // Long runs of either kind, with a single channel deciding now and then
+        int rgb = random.nextInt(8) == 0 ? random.nextInt(0x1000000) : 0xFFFFFF;
+        image.setRGB(x, y, (x / 20 + y) % 2 == 0 ? rgb : 0x00FF00);
+      }
+    }
+    BinaryMask mask = BinaryMask.of(image);
+    long selected = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        assertEquals(BinaryMask.selects(image.getRGB(x, y)), mask.isSelected(x, y));
+        selected += mask.isSelected(x, y) ? 1 : 0;
+      }
+    }
+    assertEquals(selected, mask.getSelectedCount());
+
+    // The runs of every span cover it in order and agree with the pixels
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x += 13) {
+        int length = Math.min(41, width - x);
+        int[] position = {x};
+        boolean[] last = new boolean[1];
+        int row = y;
+        int from = x;
+        mask.forEachRun(x, y, length, (start, end, isSelected) -> {
+          assertEquals(position[0], start);
+          assertTrue(end > start);
+          if (start > from) {
+            assertTrue(last[0] != isSelected);
+          }
+          for (int i = start; i < end; i++) {
+            assertEquals(mask.isSelected(i, row), isSelected);
+          }
+          position[0] = end;
+          last[0] = isSelected;
+        });
+        assertEquals(x + length, position[0]);
+      }
+    }
+
+    // A large mask of few runs takes far less memory than its image
+    Image large = new Image(1000, 1000);
+    for (int y = 0; y < 1000; y++) {
+      for (int x = 0; x < 1000; x++) {
+        large.setRGB(x, y, x < 400 || y < 300 ? 0 : 0xFFFFFF);
+      }
+    }
+    assertTrue(BinaryMask.of(large).getByteCount() * 24 < 4L * 1000 * 1000);
+  }
+
+  @Test
+  public void histogramCountsEveryPixelInParallel() {
+    int width = 300;
+    int height = 211;
+    Image image = new Image(width, height);
+    Random random = new Random(23);
+    int[][] expected = new int[3][256];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        // Mostly mid levels, so that the ends of the channels are sparse
+        int red = 40 + random.nextInt(120);
+        int green = random.nextInt(256);
+        int blue = 100 + random.nextInt(60);
+        image.setRGB(x, y, Pixel.pack(red, green, blue));
+        expected[0][red]++;
+        expected[1][green]++;
+        expected[2][blue]++;
+      }
+    }
+    RowBands.setParallelThreshold(0);
+    Histogram histogram = Histogram.of(image);
+
+    assertEquals((long) width * height, histogram.getPixelCount());
+    for (int channel = 0; channel < 3; channel++) {
+      assertArrayEquals(expected[channel], histogram.getCounts(channel));
+      long[] cumulative = histogram.getCumulative(channel);
+      assertEquals((long) width * height, cumulative[255]);
+      int peak = 0;
+      for (int level = 0; level < 256; level++) {
+        if (expected[channel][level] > expected[channel][peak]) {
+          peak = level;
+        }
+      }
+      assertEquals(peak, histogram.getPeak(channel, 0, 255));
+      assertEquals(expected[channel][peak], histogram.getMaxCount(channel, 0, 255));
+    }
+    assertEquals(40, histogram.getMin(PlanarImage.RED));
+    assertEquals(159, histogram.getMax(PlanarImage.RED));
+    assertEquals(100, histogram.getPercentile(PlanarImage.BLUE, 0));
+    assertEquals(159, histogram.getPercentile(PlanarImage.BLUE, 1));
+    int[] window = histogram.getCounts(PlanarImage.GREEN, 11, 245);
+    assertEquals(0, window[10]);
+    assertEquals(expected[1][11], window[11]);
+    assertEquals(0, window[246]);
+  }
+
+  @Test
+  public void autoLevelsStretchesTheUsedLevels() throws FileNotFoundException {
+    Image image = new Image(64, 32);
+    for (int y = 0; y < 32; y++) {
+      for (int x = 0; x < 64; x++) {
+        int level = 60 + (y * 64 + x) % 120;
+        image.setRGB(x, y, Pixel.pack(level, level / 2 + 40, 255 - level));
+      }
+    }
+    CustomImage2 operations = new CustomImage2(image);
+    Histogram histogram = Histogram.of(image);
+    int[] levels = operations.autoLevelsPoints(histogram);
+    assertArrayEquals(new int[]{60, 127, 195}, levels);
+    assertTrue(ImageComparisonUtils.equals(operations.adjustColorCommand(image, 60, 127, 195),
+            operations.autoLevels(image, histogram)));
+
+    // A flat image cannot be stretched and keeps its pixels
+    Image flat = new Image(8, 8);
+    for (int y = 0; y < 8; y++) {
+      for (int x = 0; x < 8; x++) {
+        flat.setRGB(x, y, Pixel.pack(90, 90, 91));
+      }
+    }
+    assertNull(operations.autoLevelsPoints(Histogram.of(flat)));
+    assertTrue(ImageComparisonUtils.equals(flat, operations.autoLevels(flat,
+            Histogram.of(flat))));
+  }
+
+  @Test
+  public void approximateHistogramBoundsHoldTheExactPeak() throws FileNotFoundException {
+    Image image = new Image(600, 400);
+    for (int y = 0; y < 400; y++) {
+      for (int x = 0; x < 600; x++) {
+        int hash = (x * 7919 + y * 104729) & 0xFFFF;
+        // A third of the pixels share a level in each channel; the rest are spread out
+        boolean peak = (x + y) % 3 == 0;
+        image.setRGB(x, y, Pixel.pack(peak ? 100 : hash & 0xFF, peak ? 150 : hash >> 8,
+                peak ? 60 : (hash >> 4) & 0xFF));
+      }
+    }
+    Histogram exact = Histogram.of(image);
+    ApproximateHistogram sampled = ApproximateHistogram.sample(image, 1 << 12);
+    assertFalse(sampled.isExact());
+    assertTrue(sampled.getSampleCount() <= 1 << 12);
+    assertTrue(sampled.getSampleCount() > 1 << 11);
+    for (int channel = 0; channel < 3; channel++) {
+      int[] bound = sampled.getPeakBound(channel, 0, 255);
+      int peak = exact.getPeak(channel, 0, 255);
+      assertTrue(bound[0] <= peak && peak <= bound[1]);
+      assertEquals(peak, sampled.getHistogram().getPeak(channel, 0, 255));
+    }
+    CustomImage2 operations = new CustomImage2(image);
+    Histogram preview = operations.previewHistogram(image, 1 << 12, 4);
+    assertEquals(sampled.getSampleCount(), preview.getPixelCount());
+    assertTrue(ImageComparisonUtils.equals(operations.colorCorrectionCommand(image, exact),
+            operations.colorCorrectionCommand(image, preview)));
+
+    // An image with no more pixels than samples is counted exactly
+    ApproximateHistogram small = ApproximateHistogram.sample(image, 600 * 400);
+    assertTrue(small.isExact());
+    assertArrayEquals(exact.getCounts(PlanarImage.RED), small.getHistogram().getCounts(0));
+  }
+
+  @Test
+  public void previewHistogramFallsBackWhenThePeakIsUncertain() {
+    Image image = new Image(600, 400);
+    for (int y = 0; y < 400; y++) {
+      for (int x = 0; x < 600; x++) {
+        // Two levels far apart hold almost the same number of pixels
+        int level = x < 300 ? 40 : 200;
+        image.setRGB(x, y, Pixel.pack(level, level, level));
+      }
+    }
+    image.setRGB(0, 0, Pixel.pack(40, 40, 40));
+    ApproximateHistogram sampled = ApproximateHistogram.sample(image, 1 << 12);
+    int[] bound = sampled.getPeakBound(PlanarImage.RED, 10, 246);
+    assertTrue(bound[1] - bound[0] > 4);
+    Histogram preview = new CustomImage2(image).previewHistogram(image, 1 << 12, 4);
+    assertEquals(600L * 400, preview.getPixelCount());
+    assertArrayEquals(Histogram.of(image).getCounts(PlanarImage.RED),
+            preview.getCounts(PlanarImage.RED));
+  }
+
   @Test
   public void maskBlurImage() throws IOException {
     Image blurOutput = customImage.blur(originalImage);
@@ -1554,4 +1866,681 @@ public class TestModelLogic {
 
     assertTrue(ImageComparisonUtils.equals(finalImage, originalImage));
   }
+
+  @Test
+  public void testPackedPixelAccess() {
+    assertEquals(0x0A141E, originalImage.getRGB(0, 2));
+    assertEquals(30, originalImage.getPixel(0, 2).getBlue());
+
+    Image image = new Image(3, 2);
+    image.setPixel(1, 1, 300, -5, 128);
+    assertEquals(0xFF0080, image.getRGB(1, 1));
+
+    image.setRowSpan(0, 0, 3, new int[]{0x010203, 0x040506, 0x070809}, 0);
+    int[] row = new int[4];
+    image.getRowSpan(1, 0, 2, row, 2);
+    assertArrayEquals(new int[]{0, 0, 0x040506, 0x070809}, row);
+    assertEquals(8, image.getPixel(2, 0).getGreen());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testRowSpanOutOfBounds() {
+    originalImage.getRowSpan(3, 0, 3, new int[3], 0);
+  }
+
+  @Test
+  public void testRGBSplitCombineSharesPlanes() throws FileNotFoundException {
+    Image[] split = customImage.rgbsplit(originalImage);
+    Image combined = customImage.rgbcombine(split[0], split[1], split[2], "combined");
+
+    assertTrue(ImageComparisonUtils.equals(combined, originalImage));
+    assertTrue(combined instanceof PlanarImage);
+    PlanarImage planar = (PlanarImage) combined;
+    assertTrue(planar.getPlane(PlanarImage.RED) == ((ChannelView) split[0]).getPlane());
+    assertTrue(planar.getPlane(PlanarImage.GREEN) == ((ChannelView) split[1]).getPlane());
+    assertTrue(planar.getPlane(PlanarImage.BLUE) == ((ChannelView) split[2]).getPlane());
+
+    Image[] again = new CustomImage(combined).rgbsplit(combined);
+    assertTrue(((ChannelView) again[1]).getPlane() == planar.getPlane(PlanarImage.GREEN));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testChannelViewIsReadOnly() {
+    customImage.getRedImage(originalImage).setPixel(0, 0, 1, 1, 1);
+  }
+
+  @Test
+  public void testGreyOperationsStayGrey() {
+    Image luma = customImage.calculateLuma(originalImage);
+    assertTrue(luma instanceof GrayImage);
+    Image expanded = ((GrayImage) luma).toRgb();
+    assertTrue(ImageComparisonUtils.equals(luma, expanded));
+
+    Image blurred = customImage.blur(luma);
+    assertTrue(blurred instanceof GrayImage);
+    assertTrue(ImageComparisonUtils.equals(blurred, customImage.blur(expanded)));
+
+    Image sharpened = customImage.sharpen(luma);
+    assertTrue(sharpened instanceof GrayImage);
+    assertTrue(ImageComparisonUtils.equals(sharpened, customImage.sharpen(expanded)));
+
+    Image brightened = customImage.brighten(200, luma);
+    assertTrue(brightened instanceof GrayImage);
+    assertTrue(ImageComparisonUtils.equals(brightened, customImage.brighten(200, expanded)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGreyImageRejectsColor() {
+    new GrayImage(2, 2).setPixel(0, 0, 10, 20, 30);
+  }
+
+  @Test
+  public void testTiledImageComputesOnlyReadTiles() {
+    List<Integer> computed = new ArrayList<>();
+    TiledImage tiled = new TiledImage(600, 300, (x, y, length, dst, offset) -> {
+      computed.add(x);
+      for (int i = 0; i < length; i++) {
+        dst[offset + i] = ((x + i) & 0xFF) * 0x010101;
+      }
+    });
+
+    int[] row = new int[100];
+    tiled.getRowSpan(250, 10, 10, row, 0);
+    assertEquals(0xFFFFFF, row[5]);
+    assertEquals(0x000000, row[6]);
+    assertEquals(2, tiled.getCachedTileCount());
+    assertEquals(512, computed.size());
+    assertEquals(0x585858, tiled.getRGB(344, 299));
+    assertEquals(3, tiled.getCachedTileCount());
+  }
+
+  @Test
+  public void testTiledImageComputesTilesConcurrently() throws Exception {
+    // Each tile waits until the other tile is being computed, which needs both at the same time
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    AtomicInteger rows = new AtomicInteger();
+    TiledImage tiled = new TiledImage(4, 2, (x, y, length, dst, offset) -> {
+      rows.incrementAndGet();
+      if (y == 0) {
+        bothStarted.countDown();
+        try {
+          assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      for (int i = 0; i < length; i++) {
+        dst[offset + i] = x + i;
+      }
+    }, 2, 4);
+
+    ExecutorService threads = Executors.newFixedThreadPool(3);
+    try {
+      Future<Integer> left = threads.submit(() -> tiled.getRGB(1, 1));
+      Future<Integer> right = threads.submit(() -> tiled.getRGB(3, 0));
+      Future<Integer> rightAgain = threads.submit(() -> tiled.getRGB(2, 1));
+      assertEquals(1, (int) left.get(20, TimeUnit.SECONDS));
+      assertEquals(3, (int) right.get(20, TimeUnit.SECONDS));
+      assertEquals(2, (int) rightAgain.get(20, TimeUnit.SECONDS));
+    } finally {
+      threads.shutdownNow();
+    }
+    // Every row of both tiles is computed once
+    assertEquals(4, rows.get());
+    assertEquals(2, tiled.getCachedTileCount());
+  }
+
+  @Test
+  public void testLazySplitReadsProcessedOnlyLeftOfSplit() {
+    List<Integer> computed = new ArrayList<>();
+    TiledImage processed = new TiledImage(5, 5, (x, y, length, dst, offset) -> {
+      computed.add(x);
+      originalImage.getRowSpan(x, y, length, dst, offset);
+    }, 1, 1);
+
+    ImageStorage.setTiledThreshold(0);
+    Image split = customImage2.splitImg(processed, bwImage, "40");
+    assertTrue(split instanceof TiledImage);
+    assertTrue(ImageComparisonUtils.equals(split,
+            ImageStorage.convert(split, ImageStorage.Mode.HEAP)));
+    assertEquals(0x0A141E, split.getRGB(0, 2));
+    assertEquals(bwImage.getRGB(4, 4), split.getRGB(4, 4));
+    for (int x : computed) {
+      assertTrue(x < 2);
+    }
+  }
+
+  @Test
+  public void testRecycledTiledImageReleasesItsSources() {
+    Image source = ImageStorage.mapPixels(originalImage, rgb -> rgb);
+    ImageStorage.setTiledThreshold(0);
+    Image inverted = ImageStorage.mapPixels(source, rgb -> rgb ^ 0xFFFFFF);
+    Image copied = ImageStorage.mapPixels(source, rgb -> rgb);
+    assertTrue(inverted instanceof TiledImage);
+    assertTrue(((TiledImage) inverted).reads(source));
+    assertFalse(ImageStorage.isEditableInPlace(source));
+    inverted.recycle();
+    assertFalse(ImageStorage.isEditableInPlace(source));
+    copied.recycle();
+    assertTrue(ImageStorage.isEditableInPlace(source));
+    try {
+      inverted.getRGB(0, 0);
+      fail("A recycled tiled image must not be read");
+    } catch (IllegalStateException expected) {
+      // The pixels of a recycled tiled image are gone
+    }
+  }
+
+  @Test
+  public void testFlipViewIsCopyOnWrite() {
+    Image flipped = customImage.fliph(originalImage);
+    assertTrue(flipped instanceof ImageView);
+    assertTrue(((ImageView) flipped).isShared());
+    assertEquals(0x0A141E, flipped.getRGB(4, 2));
+
+    originalImage.setPixel(0, 2, 1, 2, 3);
+    assertTrue(!((ImageView) flipped).isShared());
+    assertEquals(0x0A141E, flipped.getRGB(4, 2));
+
+    flipped.setPixel(4, 2, 7, 8, 9);
+    assertEquals(0x070809, flipped.getRGB(4, 2));
+    assertEquals(0x010203, originalImage.getRGB(0, 2));
+  }
+
+  @Test
+  public void testCropOfFlipReadsSourceDirectly() {
+    Image flipped = customImage.flipv(customImage.fliph(originalImage));
+    Image cropped = customImage3.crop(flipped, 1, 2, 3, 2);
+    assertEquals(3, cropped.getWidth());
+    assertEquals(2, cropped.getHeight());
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 3; x++) {
+        assertEquals(originalImage.getRGB(3 - x, 2 - y), cropped.getRGB(x, y));
+      }
+    }
+    int[] row = new int[3];
+    cropped.getRowSpan(0, 1, 3, row, 0);
+    assertArrayEquals(new int[]{originalImage.getRGB(3, 1), originalImage.getRGB(2, 1),
+        originalImage.getRGB(1, 1)}, row);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropOutsideImage() {
+    customImage3.crop(originalImage, 3, 3, 3, 1);
+  }
+
+  @Test
+  public void testSampleRoundTrip() {
+    for (int value = 0; value < 256; value++) {
+      assertEquals(value, Image16.quantize(Image16.expand(value)));
+    }
+    assertEquals(0, Image16.clamp(-3.0));
+    assertEquals(Image16.MAX_SAMPLE, Image16.clamp(70000.0));
+    assertEquals(1, Image16.quantize(Image16.expand(1) - 128));
+  }
+
+  @Test
+  public void testHighBitDepthChainRoundsOnce() {
+    // A grey ramp whose sepia stays below 255 in every channel
+    Image ramp = new Image(189, 1);
+    for (int x = 0; x < 189; x++) {
+      ramp.setPixel(x, 0, x, x, x);
+    }
+    Image deep = ImageStorage.convertDepth(ramp, true);
+    assertTrue(deep instanceof Image16);
+    assertEquals(ramp.getRGB(100, 0), deep.getRGB(100, 0));
+
+    CustomImage chain = new CustomImage(ramp);
+    Image shallowResult = chain.calculateLuma(chain.sepia(ramp));
+    Image deepResult = chain.calculateLuma(chain.sepia(deep));
+    assertTrue(deepResult instanceof Image16);
+
+    int shallowError = 0;
+    int deepError = 0;
+    for (int x = 0; x < 189; x++) {
+      double exact = (0.2126 * 1.351 + 0.7152 * 1.203 + 0.0722 * 0.937) * x;
+      int expected = (int) Math.round(exact);
+      int deepValue = deepResult.getRGB(x, 0) & 0xFF;
+      assertTrue(Math.abs(deepValue - expected) <= 1);
+      deepError += Math.abs(deepValue - expected);
+      shallowError += Math.abs((shallowResult.getRGB(x, 0) & 0xFF) - expected);
+    }
+    assertTrue(deepError < shallowError);
+  }
+
+  @Test
+  public void testHighBitDepthInputs() {
+    ImageStorage.setHighBitDepth(true);
+    assertTrue(ImageStorage.createInput(4, 3) instanceof Image16);
+    ImageStorage.setHighBitDepth(false);
+    assertTrue(!(ImageStorage.createInput(4, 3) instanceof Image16));
+
+    Image deep = ImageStorage.convertDepth(originalImage, true);
+    Image flipped = customImage.flipv(deep);
+    assertTrue(flipped.isHighBitDepth());
+    Image split = customImage2.splitImg(customImage.brighten(10, deep), originalImage, "40");
+    assertTrue(split instanceof Image16);
+    assertTrue(ImageComparisonUtils.equals(
+            customImage2.splitImg(customImage.brighten(10, originalImage), originalImage, "40"),
+            split));
+  }
+
+  @Test
+  public void testHighBitDepthStaysOnTheHeap() {
+    Image deep = ImageStorage.convertDepth(originalImage, true);
+    assertTrue(ImageStorage.convert(deep, ImageStorage.Mode.HEAP) == deep);
+    try {
+      ImageStorage.convert(deep, ImageStorage.Mode.MAPPED);
+      fail("A 16-bit image must not be rounded into mapped storage");
+    } catch (IllegalArgumentException e) {
+      assertTrue(deep.isHighBitDepth());
+    }
+  }
+
+  @Test
+  public void testGreyAndPlanarResultsOfMappedImagesStayMapped() throws Exception {
+    Image mapped = ImageStorage.convert(originalImage, ImageStorage.Mode.MAPPED);
+    Image luma = customImage.calculateLuma(mapped);
+    assertTrue(luma instanceof MappedImage);
+    assertTrue(ImageComparisonUtils.equals(customImage.calculateLuma(originalImage), luma));
+
+    Image[] channels = new CustomImage(mapped).rgbsplit(mapped);
+    Image[] heapChannels = customImage.rgbsplit(originalImage);
+    for (int c = 0; c < 3; c++) {
+      assertTrue(channels[c] instanceof MappedImage);
+      assertTrue(ImageComparisonUtils.equals(heapChannels[c], channels[c]));
+    }
+    Image combined = customImage.rgbcombine(channels[0], channels[1], channels[2], "combined");
+    assertTrue(combined instanceof MappedImage);
+    assertTrue(ImageComparisonUtils.equals(originalImage, combined));
+  }
+
+  @Test
+  public void testImageTooLargeForTheHeapIsRejected() {
+    try {
+      new GrayImage(65536, 65536);
+      fail("A plane of 2^32 pixels must not overflow");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("65536 x 65536"));
+    }
+    try {
+      new Image(50000, 50000);
+      fail("An array of 2.5 billion pixels must not overflow");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("mapped storage"));
+    }
+  }
+
+  @Test
+  public void testForEachRowVisitsRowsInOrder() {
+    List<Integer> rows = new ArrayList<>();
+    originalImage.forEachRow((y, row) -> {
+      rows.add(y);
+      assertEquals(originalImage.getWidth(), row.length);
+      for (int x = 0; x < row.length; x++) {
+        assertEquals(originalImage.getRGB(x, y), row[x]);
+      }
+    });
+    assertEquals(originalImage.getHeight(), rows.size());
+    assertEquals(Integer.valueOf(originalImage.getHeight() - 1), rows.get(rows.size() - 1));
+
+    Image mapped = ImageStorage.mapPixels(originalImage, rgb -> rgb ^ 0xFFFFFF);
+    assertEquals(originalImage.getRGB(2, 1) ^ 0xFFFFFF, mapped.getRGB(2, 1));
+  }
+
+  @Test
+  public void testRecycledRasterIsReusedZeroed() {
+    RasterPool.clear();
+    Image image = new Image(7, 3);
+    image.setPixel(1, 1, 50, 60, 70);
+    Image view = ImageView.flipHorizontal(image);
+    image.recycle();
+    assertEquals(1, RasterPool.getPooledCount(21));
+    assertEquals(0x323C46, view.getRGB(5, 1));
+
+    Image reused = new Image(3, 7);
+    assertEquals(0, RasterPool.getPooledCount(21));
+    assertEquals(0, reused.getRGB(1, 2));
+  }
+
+  @Test
+  public void testParallelBandsMatchSequential() {
+    Image image = hashedImage(37, 61);
+    CustomImage customImage = new CustomImage(image);
+    RowBands.setParallelism(1);
+    Image sequential = customImage.sepia(customImage.brighten(-20, image));
+    Image sequentialLuma = customImage.calculateLuma(image);
+    RowBands.setParallelism(4);
+    RowBands.setParallelThreshold(0);
+    Image parallel = customImage.sepia(customImage.brighten(-20, image));
+    assertTrue(ImageComparisonUtils.equals(sequential, parallel));
+    assertTrue(ImageComparisonUtils.equals(sequentialLuma, customImage.calculateLuma(image)));
+  }
+
+  @Test
+  public void testConvolutionPathsAgree() {
+    Convolution blur = new Convolution(new double[][]{
+            {1.0 / 16, 1.0 / 8, 1.0 / 16},
+            {1.0 / 8, 1.0 / 4, 1.0 / 8},
+            {1.0 / 16, 1.0 / 8, 1.0 / 16}
+    });
+    Image pixel = new Image(1, 1);
+    pixel.setRGB(0, 0, 0x808040);
+    // Only the centre tap lies inside a 1 x 1 image
+    assertEquals(0x202010, blur.apply(pixel).getRGB(0, 0));
+
+    Image image = hashedImage(9, 7);
+    Image eager = blur.apply(image);
+    Image edited = ImageStorage.mapPixels(image, rgb -> rgb);
+    blur.applyInPlace(edited);
+    assertTrue(ImageComparisonUtils.equals(eager, edited));
+    ImageStorage.setTiledThreshold(0);
+    assertTrue(ImageComparisonUtils.equals(eager, blur.apply(image)));
+  }
+
+  @Test
+  public void testSeparableBlurMatchesDirectSum() {
+    double[][] kernel = {
+            {1.0 / 16, 1.0 / 8, 1.0 / 16},
+            {1.0 / 8, 1.0 / 4, 1.0 / 8},
+            {1.0 / 16, 1.0 / 8, 1.0 / 16}
+    };
+    Convolution blur = new Convolution(kernel);
+    assertTrue(blur.isFixedPoint());
+    assertTrue(blur.isSeparable());
+    Convolution sharpen = new Convolution(new double[][]{
+            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
+            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+            {-1.0 / 8, 1.0 / 4, 1, 1.0 / 4, -1.0 / 8},
+            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
+    });
+    assertTrue(sharpen.isFixedPoint());
+    assertFalse(sharpen.isSeparable());
+
+    Random random = new Random(7);
+    Image image = new Image(23, 17);
+    Image16 deepImage = new Image16(23, 17);
+    int[] samples = new int[3 * 23];
+    for (int y = 0; y < 17; y++) {
+      for (int x = 0; x < 23; x++) {
+        image.setRGB(x, y, random.nextInt(0x1000000));
+      }
+      for (int i = 0; i < samples.length; i++) {
+        samples[i] = random.nextInt(Image16.MAX_SAMPLE + 1);
+      }
+      deepImage.setRowSamples(0, y, 23, samples, 0);
+    }
+    Image blurred = blur.apply(image);
+    Image deepBlurred = blur.apply(deepImage);
+    for (int y = 0; y < 17; y++) {
+      for (int x = 0; x < 23; x++) {
+        for (int channel = 0; channel < 3; channel++) {
+          double sum = 0;
+          double deepSum = 0;
+          for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+              if (x + i >= 0 && x + i < 23 && y + j >= 0 && y + j < 17) {
+                sum += ((image.getRGB(x + i, y + j) >> (16 - 8 * channel)) & 0xFF)
+                        * kernel[j + 1][i + 1];
+                deepSum += deepImage.getSample(x + i, y + j, channel) * kernel[j + 1][i + 1];
+              }
+            }
+          }
+          assertEquals((int) Math.min(sum, 255),
+                  (blurred.getRGB(x, y) >> (16 - 8 * channel)) & 0xFF);
+          assertEquals(Image16.clamp(deepSum),
+                  ((Image16) deepBlurred).getSample(x, y, channel));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBoxBlurKeepsFlatInterior() {
+    Image image = new Image(20, 20);
+    for (int y = 0; y < 20; y++) {
+      for (int x = 0; x < 20; x++) {
+        image.setRGB(x, y, 0x64C832);
+      }
+    }
+    Image blurred = customImage.blur(2, image);
+    // Three passes of radius 2 reach 6 pixels, so the centre only sees the flat color
+    assertEquals(0x64C832, blurred.getRGB(10, 10));
+    assertTrue(Pixel.red(blurred.getRGB(0, 0)) < 0x64);
+  }
+
+  @Test
+  public void testBoxSharpenMatchesKernel() {
+    Convolution kernel = new Convolution(new double[][]{
+            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
+            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+            {-1.0 / 8, 1.0 / 4, 1, 1.0 / 4, -1.0 / 8},
+            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
+    });
+    Random random = new Random(11);
+    Image image = new Image(19, 13);
+    GrayImage grayImage = new GrayImage(19, 13);
+    Image16 deepImage = new Image16(19, 13);
+    int[] samples = new int[3 * 19];
+    for (int y = 0; y < 13; y++) {
+      for (int x = 0; x < 19; x++) {
+        image.setRGB(x, y, random.nextInt(0x1000000));
+        grayImage.setRGB(x, y, random.nextInt(256) * 0x010101);
+      }
+      for (int i = 0; i < samples.length; i++) {
+        samples[i] = random.nextInt(Image16.MAX_SAMPLE + 1);
+      }
+      deepImage.setRowSamples(0, y, 19, samples, 0);
+    }
+    for (Image source : new Image[]{image, grayImage, deepImage}) {
+      Image expected = kernel.apply(source);
+      Image sharpened = customImage.sharpen(source);
+      assertTrue(ImageComparisonUtils.equals(expected, sharpened));
+      int[] expectedRow = new int[3 * 19];
+      int[] sharpenedRow = new int[3 * 19];
+      for (int y = 0; y < 13; y++) {
+        expected.getRowSamples(0, y, 19, expectedRow, 0);
+        sharpened.getRowSamples(0, y, 19, sharpenedRow, 0);
+        assertArrayEquals(expectedRow, sharpenedRow);
+      }
+    }
+    Image expected = kernel.apply(image);
+    customImage.sharpenInPlace(image);
+    assertTrue(ImageComparisonUtils.equals(expected, image));
+
+    assertTrue(ImageComparisonUtils.equals(image, customImage.sharpen(3, 0, image)));
+    Image strong = customImage.sharpen(3, 2.5, image);
+    assertEquals(image.getWidth(), strong.getWidth());
+  }
+
+  @Test
+  public void testBatchColorKernelsMatchScalar() {
+    RowOperator[][] kernels = new RowOperator[2][];
+    ColorKernels.setBatchEnabled(false);
+    kernels[0] = new RowOperator[]{ColorKernels.sepia(), ColorKernels.luma(),
+            ColorKernels.intensity(), ColorKernels.value()};
+    ColorKernels.setBatchEnabled(true);
+    kernels[1] = new RowOperator[]{ColorKernels.sepia(), ColorKernels.luma(),
+            ColorKernels.intensity(), ColorKernels.value()};
+    // Every 24-bit color, a block at a time, with the span starting inside the array
+    int block = 1 << 16;
+    int[] scalar = new int[block + 3];
+    int[] batch = new int[block + 3];
+    for (int k = 0; k < kernels[0].length; k++) {
+      for (int start = 0; start < 1 << 24; start += block) {
+        for (int i = 0; i < block; i++) {
+          scalar[i + 3] = start + i;
+          batch[i + 3] = start + i;
+        }
+        kernels[0][k].apply(scalar, 3, block);
+        kernels[1][k].apply(batch, 3, block);
+        assertArrayEquals(scalar, batch);
+      }
+    }
+
+    Image image = hashedImage(23, 19);
+    CustomImage customImage = new CustomImage(image);
+    Image inPlace = ImageStorage.mapPixels(image, rgb -> rgb);
+    customImage.calculateIntensityInPlace(inPlace);
+    Image intensity = customImage.calculateIntensity(image);
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        int rgb = image.getRGB(x, y);
+        int expected = (Pixel.red(rgb) + Pixel.green(rgb) + Pixel.blue(rgb)) / 3;
+        assertEquals(expected * 0x010101, intensity.getRGB(x, y));
+        assertEquals(expected * 0x010101, inPlace.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testFixedPointMatchesDouble() {
+    Random random = new Random(16);
+    for (int k = 0; k < 200; k++) {
+      double w0 = random.nextDouble() * 4 - 1;
+      double w1 = random.nextDouble() * 4 - 1;
+      double w2 = random.nextDouble() * 4 - 1;
+      FixedPoint.Linear linear = new FixedPoint.Linear(w0, w1, w2);
+      for (int i = 0; i < 2000; i++) {
+        int c0 = random.nextInt(256);
+        int c1 = random.nextInt(256);
+        int c2 = random.nextInt(256);
+        assertEquals((int) (w0 * c0 + w1 * c1 + w2 * c2), linear.apply(c0, c1, c2));
+      }
+    }
+    // Sums that are exactly whole numbers, where only the double formula knows how it rounds
+    FixedPoint.Linear tenths = new FixedPoint.Linear(0.1, 0.2, 0.7);
+    for (int c = 0; c < 256; c++) {
+      assertEquals((int) (0.1 * c + 0.2 * c + 0.7 * c), tenths.apply(c, c, c));
+    }
+
+    // The level curves of adjustColorCommand, and curves with large or negative coefficients
+    for (int k = 0; k < 300; k++) {
+      double a = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(6) - 4);
+      double b = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(5) - 1);
+      double c = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(6));
+      FixedPoint.Quadratic quadratic = new FixedPoint.Quadratic(a, b, c);
+      for (int x = 0; x < 256; x++) {
+        assertEquals((int) (a * Math.pow(x, 2) + b * x + c), quadratic.apply(x));
+      }
+    }
+    FixedPoint.Quadratic identity = new FixedPoint.Quadratic(0, 1, 0);
+    for (int x = 0; x < 256; x++) {
+      assertEquals(x, identity.apply(x));
+    }
+  }
+
+  @Test
+  public void testComposedToneLutMatchesSequentialOps() throws FileNotFoundException {
+    Image image = hashedImage(29, 17);
+    CustomImage2 customImage = new CustomImage2(image);
+    Image sequential = customImage.colorCorrectionCommand(
+            customImage.adjustColorCommand(customImage.brighten(-30, image), 20, 100, 230));
+
+    Image brightened = customImage.brighten(-30, image);
+    ToneLut composed = customImage.brightenLut(-30)
+            .andThen(customImage.levelsLut(20, 100, 230))
+            .andThen(customImage.colorCorrectionLut(
+                    customImage.adjustColorCommand(brightened, 20, 100, 230)));
+    assertTrue(ImageComparisonUtils.equals(sequential, composed.apply(image)));
+
+    Image inPlace = ImageStorage.mapPixels(image, rgb -> rgb);
+    composed.applyInPlace(inPlace);
+    assertTrue(ImageComparisonUtils.equals(sequential, inPlace));
+
+    assertTrue(ToneLut.identity().andThen(customImage.brightenLut(12)).isUniform());
+    assertFalse(ToneLut.offsets(1, 2, 3).isUniform());
+    assertEquals(255, customImage.brightenLut(100).lookup(PlanarImage.GREEN, 200));
+    assertEquals(0, ToneLut.offsets(0, 0, -10).lookup(PlanarImage.BLUE, 5));
+
+    GrayImage grey = new GrayImage(4, 3);
+    grey.getPlane()[5] = (byte) 250;
+    Image brightenedGrey = customImage.brighten(10, grey);
+    assertTrue(brightenedGrey instanceof GrayImage);
+    assertEquals(0xFFFFFF, brightenedGrey.getRGB(1, 1));
+    assertEquals(0x0A0A0A, brightenedGrey.getRGB(0, 0));
+  }
+
+  @Test
+  public void testLazyImageFusesPointwiseOperations() {
+    Image image = hashedImage(31, 13);
+    CustomImage2 customImage = new CustomImage2(image);
+    LazyImage expression = LazyImage.of(image)
+            .then(customImage.brightenLut(-20))
+            .then(customImage.levelsLut(20, 100, 230))
+            .then(customImage.brightenLut(15));
+    assertEquals(1, expression.getOperationCount());
+    expression = expression.then(ColorKernels.sepia(), false).then(customImage.brightenLut(5));
+    assertEquals(3, expression.getOperationCount());
+    Image result = expression.materialize();
+
+    Image expected = image;
+    try {
+      expected = customImage.brighten(-20, expected);
+      expected = customImage.adjustColorCommand(expected, 20, 100, 230);
+      expected = customImage.brighten(5, customImage.sepia(customImage.brighten(15, expected)));
+    } catch (FileNotFoundException e) {
+      throw new AssertionError(e);
+    }
+    assertTrue(ImageComparisonUtils.equals(expected, result));
+
+    Image grey = expression.then(ColorKernels.toGrey(ColorKernels.luma()), true)
+            .then(customImage.brightenLut(30)).materialize();
+    assertTrue(grey instanceof GrayImage);
+    assertTrue(ImageComparisonUtils.equals(
+            customImage.brighten(30, customImage.calculateLuma(expected)), grey));
+    assertTrue(LazyImage.of(image).materialize() == image);
+  }
+
+  @Test
+  public void testAffineColorTransformsCollapse() throws FileNotFoundException {
+    Image image = new Image(27, 11);
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        // Channels of 40-167, so no step of the chain below clamps
+        image.setRGB(x, y, ((x * 7919 + y * 104729) & 0x7F7F7F) + 0x282828);
+      }
+    }
+    CustomImage customImage = new CustomImage(image);
+    assertTrue(ImageComparisonUtils.equals(customImage.sepia(image),
+            customImage.sepiaTransform().apply(image)));
+    assertTrue(ImageComparisonUtils.equals(customImage.calculateIntensity(image),
+            customImage.intensityTransform().apply(image)));
+    assertTrue(ImageComparisonUtils.equals(customImage.brighten(-50, image),
+            customImage.brightenTransform(-50).apply(image)));
+    assertTrue(customImage.lumaTransform().isGrey());
+    assertFalse(customImage.sepiaTransform().isGrey());
+
+    AffineColorTransform collapsed = customImage.brightenTransform(10)
+            .andThen(customImage.sepiaTransform()).andThen(customImage.lumaTransform());
+    assertEquals(0.2126 * 0.393 + 0.7152 * 0.349 + 0.0722 * 0.272, collapsed.get(1, 0), 1e-12);
+    double sepiaRows = 0.2126 * (0.393 + 0.769 + 0.189) + 0.7152 * (0.349 + 0.686 + 0.168)
+            + 0.0722 * (0.272 + 0.534 + 0.131);
+    assertEquals(10 * sepiaRows, collapsed.get(2, 3), 1e-9);
+    assertTrue(collapsed.isGrey());
+    assertEquals(null, collapsed.toToneLut());
+
+    Image sequential = customImage.calculateLuma(customImage.sepia(customImage.brighten(10,
+            image)));
+    LazyImage fused = LazyImage.of(image, false).then(customImage.brightenTransform(10))
+            .then(customImage.sepiaTransform()).then(customImage.lumaTransform());
+    assertEquals(1, fused.getOperationCount());
+    Image result = fused.materialize();
+    assertTrue(result instanceof GrayImage);
+    assertTrue(ImageComparisonUtils.equals(collapsed.apply(image), result));
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        // Only the truncations between the steps are skipped
+        int difference = (result.getRGB(x, y) & 0xFF) - (sequential.getRGB(x, y) & 0xFF);
+        assertTrue(difference >= 0 && difference <= 1);
+      }
+    }
+
+    LazyImage exact = LazyImage.of(image).then(customImage.brightenTransform(10))
+            .then(customImage.sepiaTransform()).then(customImage.lumaTransform());
+    assertEquals(3, exact.getOperationCount());
+    assertTrue(ImageComparisonUtils.equals(sequential, exact.materialize()));
+  }
 }
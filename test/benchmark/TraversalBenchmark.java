@@ -0,0 +1,168 @@
+package benchmark;
+
+import java.util.function.LongSupplier;
+
+import model.database.ColorKernels;
+import model.database.CustomImage;
+import model.database.Image;
+import model.database.ImageStorage;
+import model.database.Pixel;
+import model.database.RowBands;
+
+/**
+ * Compares ways of reading and processing every pixel of 4K and 8K images, before and after the
+ * move to packed rows. Before is a copy of the old layout, a Pixel object for every pixel in a
+ * [width][height] array, walked with y outer and x inner as the operations used to walk it. After
+ * is the packed row-major image, read one pixel at a time with getRGB and a row at a time with
+ * forEachRow. Brighten is timed the same way, with the old getPixel/setPixel loop on the old layout
+ * against mapPixels, and also on one thread against parallel row bands; the scalar sepia and luma
+ * kernels are timed against the batch kernels. The old layout takes about 40 bytes a pixel, so run
+ * it with a heap of at least 4 GB, for example
+ * {@code java -Xmx4g -cp <classes> benchmark.TraversalBenchmark}.
+ */
+public class TraversalBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  /**
+   * Runs the benchmark and prints the best time of each traversal.
+   *
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    // Results are computed up front, so that the timings include the work
+    ImageStorage.setTiledThreshold(Long.MAX_VALUE);
+    run("4K", 3840, 2160);
+    run("8K", 7680, 4320);
+  }
+
+  private static void run(String name, int width, int height) {
+    Image image = new Image(width, height);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        row[x] = (x * 31 + y * 17) & 0xFFFFFF;
+      }
+      image.setRowSpan(0, y, width, row, 0);
+    }
+
+    System.out.println(name + " (" + width + " x " + height + ")");
+    PixelGrid before = PixelGrid.of(image);
+    time("  before: Pixel[][]     ", () -> before.sum());
+    time("  after: getRGB         ", () -> sumRgbByRow(image));
+    time("  after: forEachRow     ", () -> sumRows(image));
+    time("  brighten, before      ", () -> before.brighten(10).getPixel(0, 0).getRed());
+    CustomImage customImage = new CustomImage(image);
+    int parallelism = RowBands.getParallelism();
+    RowBands.setParallelism(1);
+    time("  brighten, mapPixels   ", () -> customImage.brighten(10, image).getRGB(0, 0));
+    ColorKernels.setBatchEnabled(false);
+    time("  sepia, scalar         ", () -> customImage.sepia(image).getRGB(0, 0));
+    time("  luma, scalar          ", () -> customImage.calculateLuma(image).getRGB(0, 0));
+    ColorKernels.setBatchEnabled(true);
+    time("  sepia, batch          ", () -> customImage.sepia(image).getRGB(0, 0));
+    time("  luma, batch           ", () -> customImage.calculateLuma(image).getRGB(0, 0));
+    RowBands.setParallelism(parallelism);
+    time("  brighten, " + parallelism + " threads ",
+            () -> customImage.brighten(10, image).getRGB(0, 0));
+  }
+
+  private static long sumRgbByRow(Image image) {
+    long sum = 0;
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        int rgb = image.getRGB(x, y);
+        sum += Pixel.red(rgb) + Pixel.green(rgb) + Pixel.blue(rgb);
+      }
+    }
+    return sum;
+  }
+
+  private static long sumRows(Image image) {
+    long[] sum = new long[1];
+    image.forEachRow((y, row) -> {
+      long rowSum = 0;
+      for (int rgb : row) {
+        rowSum += Pixel.red(rgb) + Pixel.green(rgb) + Pixel.blue(rgb);
+      }
+      sum[0] += rowSum;
+    });
+    return sum[0];
+  }
+
+  /**
+   * A copy of the layout images had before packed rows: one Pixel object for every pixel, in an
+   * array of columns, read and written through getPixel and setPixel.
+   */
+  private static final class PixelGrid {
+
+    private final int width;
+    private final int height;
+    private final Pixel[][] pixels;
+
+    private PixelGrid(int width, int height) {
+      this.width = width;
+      this.height = height;
+      this.pixels = new Pixel[width][height];
+    }
+
+    static PixelGrid of(Image image) {
+      PixelGrid grid = new PixelGrid(image.getWidth(), image.getHeight());
+      for (int x = 0; x < grid.width; x++) {
+        for (int y = 0; y < grid.height; y++) {
+          grid.pixels[x][y] = Pixel.unpack(image.getRGB(x, y));
+        }
+      }
+      return grid;
+    }
+
+    Pixel getPixel(int x, int y) {
+      if (x < 0 || x >= width || y < 0 || y >= height) {
+        throw new IndexOutOfBoundsException("Pixel coordinates out of bounds.");
+      }
+      return pixels[x][y].getPixel();
+    }
+
+    void setPixel(int x, int y, int red, int green, int blue) {
+      if (x < 0 || x >= width || y < 0 || y >= height) {
+        throw new IndexOutOfBoundsException("Pixel coordinates out of bounds.");
+      }
+      pixels[x][y] = new Pixel(red, green, blue);
+    }
+
+    long sum() {
+      long sum = 0;
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          Pixel pixel = getPixel(x, y);
+          sum += pixel.getRed() + pixel.getGreen() + pixel.getBlue();
+        }
+      }
+      return sum;
+    }
+
+    PixelGrid brighten(int increment) {
+      PixelGrid result = new PixelGrid(width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          Pixel pixel = getPixel(x, y);
+          result.setPixel(x, y, Pixel.clamp(pixel.getRed() + increment),
+                  Pixel.clamp(pixel.getGreen() + increment),
+                  Pixel.clamp(pixel.getBlue() + increment));
+        }
+      }
+      return result;
+    }
+  }
+
+  private static void time(String label, LongSupplier task) {
+    long best = Long.MAX_VALUE;
+    long result = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      result += task.getAsLong();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.println(label + " " + best / 1_000_000 + " ms (" + (result & 0xFF) + ")");
+  }
+}
@@ -6,6 +6,7 @@ import java.util.Map;
 
 import model.IImageModel;
 import model.database.Image;
+import model.database.ImageStorage;
 
 /**
  * This test class implements mock tests for the model. It implements IImageModel class.
@@ -76,6 +77,20 @@ public class MockModel implements IImageModel {
     logWritter("Blur", cmand, mask);
   }
 
+  /**
+   * Logs a sharpening against a box of the given radius.
+   *
+   * @param sourceFileName The name of the source image.
+   * @param destFileName   The name to save the processed image.
+   * @param radius         The radius of the box.
+   * @param amount         The amount of sharpening.
+   */
+  @Override
+  public void sharpenRadiusMethod(String sourceFileName, String destFileName, int radius,
+                                  double amount) {
+    logAction("Called sharpenRadiusMethod with radius: " + radius + ", amount: " + amount);
+  }
+
   /**
    * Calculates the intensity of an image and applies optional transformations.
    *
@@ -211,6 +226,21 @@ public class MockModel implements IImageModel {
     logWritter("Color-Correct", cmand);
   }
 
+  /**
+   * Stretches the levels of an image and optionally splits it.
+   *
+   * @param sourceFileName the name of the source image file
+   * @param destFileName   the name of the destination image file
+   * @param cmand          the command to execute (e.g., "split")
+   * @param p              parameter used for the "split" command
+   * @throws FileNotFoundException if the source file is not found
+   */
+  @Override
+  public void autoLevelsMethod(String sourceFileName, String destFileName, String cmand, String p)
+          throws FileNotFoundException {
+    logWritter("Auto-Levels", cmand);
+  }
+
   /**
    * Creates a histogram representation of an image and stores it in a destination file.
    *
@@ -383,6 +413,80 @@ public class MockModel implements IImageModel {
             + destinationName);
   }
 
+  /**
+   * Logs the crop request without cropping any image.
+   *
+   * @param imageName       the name of the source image
+   * @param destinationName the name for the cropped image
+   * @param x               the x-coordinate of the top left corner of the region
+   * @param y               the y-coordinate of the top left corner of the region
+   * @param width           the width of the region
+   * @param height          the height of the region
+   */
+  @Override
+  public void cropMethod(String imageName, String destinationName, int x, int y, int width,
+                         int height) {
+    logAction("Called cropMethod with imageName: " + imageName + ", destinationName: "
+            + destinationName + ", region: " + x + " " + y + " " + width + " " + height);
+  }
+
+  /**
+   * Logs the storage selection without changing any storage.
+   *
+   * @param mode            the storage, on the heap or in a memory-mapped scratch file
+   * @param imageName       the name of the source image, or null to set the default storage
+   * @param destinationName the name for the converted image, or null
+   */
+  @Override
+  public void storageMethod(ImageStorage.Mode mode, String imageName, String destinationName) {
+    logAction("Called storageMethod with mode: " + mode + ", imageName: " + imageName
+            + ", destinationName: " + destinationName);
+  }
+
+  /**
+   * Logs the bit depth selection without converting any image.
+   *
+   * @param highBitDepth    true for 16 bits per channel, false for 8 bits
+   * @param imageName       the name of the source image, or null to set the default bit depth
+   * @param destinationName the name for the converted image, or null
+   */
+  @Override
+  public void bitDepthMethod(boolean highBitDepth, String imageName, String destinationName) {
+    logAction("Called bitDepthMethod with highBitDepth: " + highBitDepth + ", imageName: "
+            + imageName + ", destinationName: " + destinationName);
+  }
+
+  /**
+   * Logs the lazy evaluation selection.
+   *
+   * @param lazy          true to defer pointwise commands, false to compute them straight away
+   * @param exactClamping true to keep the truncation and clamping of every command
+   */
+  @Override
+  public void lazyMethod(boolean lazy, boolean exactClamping) {
+    logAction("Called lazyMethod with lazy: " + lazy + ", exactClamping: " + exactClamping);
+  }
+
+  /**
+   * Logs the request to compute a pending image.
+   *
+   * @param imageName the name of the image
+   */
+  @Override
+  public void materializeMethod(String imageName) {
+    logAction("Called materializeMethod with imageName: " + imageName);
+  }
+
+  /**
+   * Logs the change of the way histograms for previews are counted.
+   *
+   * @param approximate whether histograms for previews are sampled
+   */
+  @Override
+  public void histogramModeMethod(boolean approximate) {
+    logAction("Called histogramModeMethod with approximate: " + approximate);
+  }
+
   /**
    * Retrieves the log content.
    *